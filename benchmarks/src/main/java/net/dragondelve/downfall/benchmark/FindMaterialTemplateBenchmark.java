@@ -0,0 +1,91 @@
+// Copyright 2023 Prokhor Kalinin
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package net.dragondelve.downfall.benchmark;
+
+import net.dragondelve.downfall.realm.Material;
+import net.dragondelve.downfall.realm.template.VisualMaterialTemplate;
+import net.dragondelve.downfall.util.Configurator;
+import net.dragondelve.downfall.util.DownfallUtil;
+import net.dragondelve.downfall.util.Rules;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures Configurator.findMaterialTemplate for rules loaded from XML, which are indexed by TemplateRegistry,
+ * and for compiled rules, which are binary searched in a memory-mapped file.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FindMaterialTemplateBenchmark {
+    private static final int LOOKUP_COUNT = 1024;
+
+    @Param({"10", "1000", "100000"})
+    public int templateCount;
+
+    @Param({"xml", "compiled"})
+    public String rulesFormat;
+
+    private Path workDirectory;
+    private Material[] materials;
+    private int next = 0;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        workDirectory = SyntheticData.createWorkDirectory();
+        Rules rules = SyntheticData.generateRules(templateCount);
+        String extension = "compiled".equals(rulesFormat) ? DownfallUtil.COMPILED_RULES_EXTENSION : ".xml";
+        String pathname = workDirectory.resolve("rules" + extension).toString();
+        Configurator.getInstance().applyRules(rules, pathname);
+        Configurator.getInstance().saveRules(pathname);
+        Configurator.getInstance().loadAndApplyRules(pathname);
+
+        Random random = new Random(SyntheticData.SEED);
+        materials = new Material[LOOKUP_COUNT];
+        for (int i = 0; i < LOOKUP_COUNT; i++)
+            materials[i] = new Material(1 + random.nextInt(templateCount), 1);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Configurator.getInstance().flushConfiguration();
+        SyntheticData.deleteWorkDirectory(workDirectory);
+    }
+
+    @Benchmark
+    public VisualMaterialTemplate findMaterialTemplate() {
+        next = (next + 1) & (LOOKUP_COUNT - 1);
+        return Configurator.getInstance().findMaterialTemplate(materials[next]);
+    }
+}
@@ -0,0 +1,64 @@
+// Copyright 2023 Prokhor Kalinin
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package net.dragondelve.downfall.benchmark;
+
+import net.dragondelve.downfall.util.PathRelativisor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures PathRelativisor.relativize for a pathname inside user.dir and for one in a sibling directory of user.dir.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PathRelativisorBenchmark {
+    @Param({"inside", "outside"})
+    public String location;
+
+    private String pathname;
+
+    @Setup
+    public void setUp() {
+        File userDir = new File(System.getProperty("user.dir"));
+        if ("inside".equals(location))
+            pathname = new File(userDir, "save" + File.separator + "testsave.xml").getAbsolutePath();
+        else if (userDir.getAbsoluteFile().getParentFile() != null)
+            pathname = new File(userDir.getAbsoluteFile().getParentFile(), "elsewhere" + File.separator + "testsave.xml").getAbsolutePath();
+        else
+            pathname = new File(File.separator + "elsewhere", "testsave.xml").getAbsolutePath();
+
+    }
+
+    @Benchmark
+    public String relativize() {
+        return new PathRelativisor(pathname).relativize();
+    }
+}
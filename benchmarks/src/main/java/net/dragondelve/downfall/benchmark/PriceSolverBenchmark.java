@@ -0,0 +1,88 @@
+// Copyright 2023 Prokhor Kalinin
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package net.dragondelve.downfall.benchmark;
+
+import net.dragondelve.downfall.simulation.PriceSolution;
+import net.dragondelve.downfall.simulation.PriceSolver;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures PriceSolver.solve on the supply and demand of every actor, which sums them up per material and then iterates the prices.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PriceSolverBenchmark {
+    @Param({"5000"})
+    public int materialCount;
+
+    @Param({"500"})
+    public int actorCount;
+
+    @Param({"1", "4"})
+    public int parallelism;
+
+    private ForkJoinPool pool;
+    private PriceSolver solver;
+    private long[][] supply;
+    private long[][] demand;
+    private double[] referencePrices;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(SyntheticData.SEED);
+        supply = new long[actorCount][materialCount];
+        demand = new long[actorCount][materialCount];
+        for (int actor = 0; actor < actorCount; actor++) {
+            for (int material = 0; material < materialCount; material++) {
+                supply[actor][material] = random.nextInt(100);
+                demand[actor][material] = random.nextInt(100 + material % 200);
+            }
+        }
+        referencePrices = new double[materialCount];
+        for (int material = 0; material < materialCount; material++)
+            referencePrices[material] = 1 + random.nextInt(100);
+        pool = new ForkJoinPool(parallelism);
+        solver = new PriceSolver(pool);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public PriceSolution solve() {
+        return solver.solve(supply, demand, referencePrices);
+    }
+}
@@ -0,0 +1,87 @@
+// Copyright 2023 Prokhor Kalinin
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package net.dragondelve.downfall.benchmark;
+
+import net.dragondelve.downfall.util.Configurator;
+import net.dragondelve.downfall.util.DownfallUtil;
+import net.dragondelve.downfall.util.Rules;
+import net.dragondelve.downfall.util.TemplateLookup;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures loading and saving rules through Configurator, both as XML and as compiled rules.
+ * Loading compiled rules only maps the file, the cost of materializing templates is paid by later lookups.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RulesPersistenceBenchmark {
+    @Param({"10", "1000", "100000"})
+    public int templateCount;
+
+    @Param({"xml", "compiled"})
+    public String rulesFormat;
+
+    private Path workDirectory;
+    private String loadPathname;
+    private String savePathname;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        workDirectory = SyntheticData.createWorkDirectory();
+        String extension = "compiled".equals(rulesFormat) ? DownfallUtil.COMPILED_RULES_EXTENSION : ".xml";
+        loadPathname = workDirectory.resolve("load" + extension).toString();
+        savePathname = workDirectory.resolve("save" + extension).toString();
+        Rules rules = SyntheticData.generateRules(templateCount);
+        Configurator.getInstance().applyRules(rules, loadPathname);
+        Configurator.getInstance().saveRules(loadPathname);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Configurator.getInstance().flushConfiguration();
+        SyntheticData.deleteWorkDirectory(workDirectory);
+    }
+
+    @Benchmark
+    public TemplateLookup loadAndApplyRules() {
+        Configurator.getInstance().loadAndApplyRules(loadPathname);
+        return Configurator.getInstance().getTemplateLookup();
+    }
+
+    @Benchmark
+    public void saveRules() {
+        Configurator.getInstance().saveRules(savePathname);
+    }
+}
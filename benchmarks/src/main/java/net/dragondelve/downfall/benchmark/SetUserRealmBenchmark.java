@@ -0,0 +1,65 @@
+// Copyright 2023 Prokhor Kalinin
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package net.dragondelve.downfall.benchmark;
+
+import net.dragondelve.downfall.realm.Realm;
+import net.dragondelve.downfall.util.Configurator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures Configurator.setUserRealm, which copies a loaded realm into the realm the UI is bound to.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SetUserRealmBenchmark {
+    @Param({"10", "1000", "100000"})
+    public int templateCount;
+
+    private Realm realm;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        realm = SyntheticData.generateRealm(SyntheticData.generateRules(templateCount));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        Configurator.getInstance().flushConfiguration();
+    }
+
+    @Benchmark
+    public Realm setUserRealm() {
+        Configurator.getInstance().setUserRealm(realm);
+        return Configurator.getInstance().getUserRealm();
+    }
+}
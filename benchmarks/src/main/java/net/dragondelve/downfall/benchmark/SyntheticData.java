@@ -0,0 +1,129 @@
+// Copyright 2023 Prokhor Kalinin
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package net.dragondelve.downfall.benchmark;
+
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import net.dragondelve.downfall.realm.Building;
+import net.dragondelve.downfall.realm.Material;
+import net.dragondelve.downfall.realm.Realm;
+import net.dragondelve.downfall.realm.Tag;
+import net.dragondelve.downfall.realm.template.VisualBuildingTemplate;
+import net.dragondelve.downfall.realm.template.VisualMaterialTemplate;
+import net.dragondelve.downfall.util.DownfallUtil;
+import net.dragondelve.downfall.util.Rules;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * Generates synthetic rulesets and realms of a given size for benchmarks.
+ * Generation is seeded, so the same size always produces the same data and runs stay comparable.
+ */
+public final class SyntheticData {
+    public static final long SEED = 0x5EED;
+
+    /**
+     * Private constructor to make this class non instantiable.
+     */
+    private SyntheticData() {
+        super();
+    }
+
+    /**
+     * Generates rules with a given number of material templates, a quarter as many building templates and up to 100 tags.
+     * Material template ids run from 1 to templateCount and every building converts one or two materials into another one.
+     *
+     * @param templateCount number of material templates to be generated.
+     * @return generated rules.
+     */
+    public static Rules generateRules(int templateCount) {
+        Random random = new Random(SEED);
+        List<VisualMaterialTemplate> materialTemplates = new ArrayList<>(templateCount);
+        for (int id = 1; id <= templateCount; id++)
+            materialTemplates.add(new VisualMaterialTemplate("Material " + id, id, 1 + random.nextInt(100), 1 + random.nextInt(100), random.nextBoolean(), random.nextInt(10) == 0, DownfallUtil.DEFAULT_MATERIAL_GFX_PATHNAME));
+
+        int buildingCount = Math.max(1, templateCount / 4);
+        List<VisualBuildingTemplate> buildingTemplates = new ArrayList<>(buildingCount);
+        for (int id = 1; id <= buildingCount; id++) {
+            List<Material> inputs = new ArrayList<>();
+            for (int i = 0; i < 1 + random.nextInt(2); i++)
+                inputs.add(new Material(1 + random.nextInt(templateCount), 1 + random.nextInt(5)));
+            List<Material> outputs = List.of(new Material(1 + random.nextInt(templateCount), 1 + random.nextInt(5)));
+            List<Material> construction = List.of(new Material(1 + random.nextInt(templateCount), 1 + random.nextInt(20)));
+            buildingTemplates.add(new VisualBuildingTemplate(id, "Building " + id, inputs, outputs, 10 + random.nextInt(100), construction, 1 + random.nextInt(5), random.nextBoolean(), DownfallUtil.DEFAULT_BUILDING_GFX_PATHNAME));
+        }
+
+        int tagCount = Math.min(templateCount, 100);
+        List<Tag> tags = new ArrayList<>(tagCount);
+        for (int id = 1; id <= tagCount; id++)
+            tags.add(new Tag(id, "Tag " + id, random.nextBoolean()));
+
+        Rules rules = new Rules();
+        rules.setMaterialTemplates(materialTemplates);
+        rules.setBuildingTemplates(buildingTemplates);
+        rules.setActorTags(tags);
+        return rules;
+    }
+
+    /**
+     * Generates a realm that stocks every material template of the given rules and owns one building of every building template.
+     *
+     * @param rules rules the realm is generated for.
+     * @return generated realm.
+     */
+    public static Realm generateRealm(Rules rules) {
+        Random random = new Random(SEED);
+        ObservableList<Material> stockpile = FXCollections.observableArrayList();
+        rules.getMaterialTemplates().forEach(template -> stockpile.add(new Material(template.getId(), random.nextInt(1000))));
+        ObservableList<Building> buildings = FXCollections.observableArrayList();
+        rules.getBuildingTemplates().forEach(template -> buildings.add(new Building(template.getId(), random.nextBoolean())));
+        ObservableList<Tag> tags = FXCollections.observableArrayList();
+        rules.getActorTags().forEach(tag -> {
+            if (random.nextInt(4) == 0)
+                tags.add(tag);
+        });
+        return new Realm(1, "Synthetic Realm", 10000, stockpile, buildings, tags, 5, 5, 5, 5, 0, 50.0, DownfallUtil.DEFAULT_MATERIAL_GFX_PATHNAME, DownfallUtil.DEFAULT_MATERIAL_GFX_PATHNAME);
+    }
+
+    /**
+     * Creates a temporary directory for files written by benchmarks.
+     *
+     * @return path to a new empty directory.
+     * @throws IOException if the directory cannot be created.
+     */
+    public static Path createWorkDirectory() throws IOException {
+        return Files.createTempDirectory("downfall-benchmark");
+    }
+
+    /**
+     * Deletes a directory created with createWorkDirectory together with its content.
+     *
+     * @param directory directory to be deleted.
+     * @throws IOException if the directory cannot be deleted.
+     */
+    public static void deleteWorkDirectory(Path directory) throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator)
+                Files.delete(path);
+        }
+    }
+}
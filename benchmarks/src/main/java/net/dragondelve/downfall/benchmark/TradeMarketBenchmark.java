@@ -0,0 +1,106 @@
+// Copyright 2023 Prokhor Kalinin
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package net.dragondelve.downfall.benchmark;
+
+import net.dragondelve.downfall.realm.Realm;
+import net.dragondelve.downfall.realm.template.VisualMaterialTemplate;
+import net.dragondelve.downfall.simulation.Trade;
+import net.dragondelve.downfall.simulation.TradeMarket;
+import net.dragondelve.downfall.util.Rules;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Measures a turn of trading on a TradeMarket: every actor submits its orders from a thread of the pool, then the market is settled.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TradeMarketBenchmark {
+    @Param({"200"})
+    public int actorCount;
+
+    @Param({"1000"})
+    public int ordersPerActor;
+
+    @Param({"1", "4"})
+    public int parallelism;
+
+    private Rules rules;
+    private int[] exportable;
+    private ForkJoinPool pool;
+    private TradeMarket market;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        rules = SyntheticData.generateRules(1000);
+        exportable = rules.getMaterialTemplates().stream().filter(VisualMaterialTemplate::isExportable).mapToInt(VisualMaterialTemplate::getId).toArray();
+        pool = new ForkJoinPool(parallelism);
+    }
+
+    /**
+     * Generates the actors again before every iteration, so every iteration starts from the same stockpiles and treasuries.
+     */
+    @Setup(Level.Iteration)
+    public void setUpMarket() {
+        List<Realm> actors = new ArrayList<>(actorCount);
+        for (int id = 1; id <= actorCount; id++) {
+            Realm realm = SyntheticData.generateRealm(rules);
+            realm.setId(id);
+            actors.add(realm);
+        }
+        market = new TradeMarket(rules, actors, pool);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public List<Trade> submitAndSettle() {
+        pool.submit(() -> IntStream.range(0, actorCount).parallel().forEach(actor -> {
+            Random random = new Random(actor);
+            for (int order = 0; order < ordersPerActor; order++) {
+                int material = exportable[random.nextInt(exportable.length)];
+                if (random.nextBoolean())
+                    market.buy(market.getActors().get(actor), material, 1 + random.nextInt(50), random.nextInt(120));
+                else
+                    market.sell(market.getActors().get(actor), material, 1 + random.nextInt(50), random.nextInt(120));
+            }
+        })).join();
+        return market.settle();
+    }
+}
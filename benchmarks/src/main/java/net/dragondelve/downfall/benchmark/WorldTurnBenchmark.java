@@ -0,0 +1,98 @@
+// Copyright 2023 Prokhor Kalinin
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package net.dragondelve.downfall.benchmark;
+
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import net.dragondelve.downfall.realm.Actor;
+import net.dragondelve.downfall.realm.Realm;
+import net.dragondelve.downfall.realm.World;
+import net.dragondelve.downfall.simulation.PriorityAllocationPolicy;
+import net.dragondelve.downfall.simulation.ProductionEngine;
+import net.dragondelve.downfall.simulation.WorldTurnExecutor;
+import net.dragondelve.downfall.simulation.WorldTurnReport;
+import net.dragondelve.downfall.util.Rules;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures WorldTurnExecutor.advanceTurn, which runs the production of every actor of a world in parallel.
+ * Compare the scores of the same actorCount across parallelism values to see how a turn scales with the number of cores.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WorldTurnBenchmark {
+    @Param({"100", "1000"})
+    public int actorCount;
+
+    @Param({"1", "2", "4", "8"})
+    public int parallelism;
+
+    @Param({"1000"})
+    public int templateCount;
+
+    private Rules rules;
+    private ForkJoinPool pool;
+    private WorldTurnExecutor executor;
+    private World world;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        rules = SyntheticData.generateRules(templateCount);
+        pool = new ForkJoinPool(parallelism);
+        executor = new WorldTurnExecutor(new ProductionEngine(rules), pool, PriorityAllocationPolicy::new);
+    }
+
+    /**
+     * Generates the world again before every iteration, so every iteration starts from full stockpiles.
+     */
+    @Setup(Level.Iteration)
+    public void setUpWorld() {
+        ObservableList<Actor> actors = FXCollections.observableArrayList();
+        for (int id = 1; id <= actorCount; id++) {
+            Realm realm = SyntheticData.generateRealm(rules);
+            realm.setId(id);
+            actors.add(realm);
+        }
+        world = new World(0, actors);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public WorldTurnReport advanceTurn() {
+        return executor.advanceTurn(world);
+    }
+}
@@ -0,0 +1,237 @@
+// Copyright 2023 Prokhor Kalinin
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package net.dragondelve.downfall;
+
+import net.dragondelve.downfall.realm.Realm;
+import net.dragondelve.downfall.realm.Savegame;
+import net.dragondelve.downfall.simulation.MarketValuation;
+import net.dragondelve.downfall.simulation.ProductionReport;
+import net.dragondelve.downfall.simulation.TurnProcessor;
+import net.dragondelve.downfall.simulation.TurnResult;
+import net.dragondelve.downfall.util.CompiledRules;
+import net.dragondelve.downfall.util.Configurator;
+import net.dragondelve.downfall.util.DownfallUtil;
+import net.dragondelve.downfall.util.Rules;
+import net.dragondelve.downfall.util.SavegameCodec;
+import net.dragondelve.downfall.util.StreamingRulesLoader;
+
+import javax.xml.stream.XMLStreamException;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs a savegame for a number of turns without a user interface, for long simulations on machines without a display.
+ * Reads conf.xml, a savegame and its rules, advances the user realm turn by turn like the Next Turn action does,
+ * then writes the resulting savegame and a summary of metrics. Never starts the JavaFX toolkit, only JavaFX properties and collections are used.
+ * <p>
+ * Nothing but the output files is ever written. Unlike the program, the runner neither remembers the rules in conf.xml nor replaces rules
+ * that cannot be read with the default rules, a run with unreadable rules fails before anything is written.
+ * <p>
+ * Usage: --save PATH --out PATH [--rules PATH] [--turns N] [--metrics PATH]
+ * <p>
+ * The savegame defaults to the last savegame of conf.xml and the rules to the rules referenced by the savegame.
+ * The metrics are printed to standard output as key=value lines and also written to the metrics file if one is given.
+ */
+public final class DownfallHeadless {
+    private static final int EXIT_SUCCESS = 0;
+    private static final int EXIT_FAILURE = 1;
+    private static final int EXIT_USAGE = 2;
+    private static final String USAGE = "Usage: --save PATH --out PATH [--rules PATH] [--turns N] [--metrics PATH]";
+
+    /**
+     * Private constructor to make this class non instantiable.
+     */
+    private DownfallHeadless() {
+        super();
+    }
+
+    /**
+     * Runs a savegame headless and exits with 0 on success, 1 if a file could not be read or written and 2 for invalid arguments.
+     *
+     * @param args program arguments, see the class description.
+     */
+    public static void main(String[] args) {
+        System.exit(run(args, System.out, System.err));
+    }
+
+    /**
+     * Runs a savegame headless.
+     *
+     * @param args program arguments, see the class description.
+     * @param out  stream the metrics are printed to.
+     * @param err  stream errors and the usage are printed to.
+     * @return exit code, 0 on success, 1 if a file could not be read or written and 2 for invalid arguments.
+     */
+    public static int run(String[] args, PrintStream out, PrintStream err) {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (int i = 0; i < args.length; i += 2) {
+            if (!args[i].startsWith("--") || i + 1 >= args.length) {
+                err.println(USAGE);
+                return EXIT_USAGE;
+            }
+            options.put(args[i].substring(2), args[i + 1]);
+        }
+        int turns;
+        try {
+            turns = Integer.parseInt(options.getOrDefault("turns", "1"));
+        } catch (NumberFormatException e) {
+            err.println("Number of turns is not a number: " + options.get("turns"));
+            return EXIT_USAGE;
+        }
+        if (turns < 0 || !options.containsKey("out") || !options.keySet().stream().allMatch(key -> key.matches("save|out|rules|turns|metrics"))) {
+            err.println(USAGE);
+            return EXIT_USAGE;
+        }
+
+        Configurator configurator = Configurator.getInstance();
+        try {
+            configurator.readConfiguration();
+            String savePathname = options.getOrDefault("save", configurator.getLastSavegamePathname());
+            Savegame savegame = readSavegame(savePathname);
+            String rulesPathname = options.getOrDefault("rules", savegame.getPathToRules());
+            if (rulesPathname == null || rulesPathname.isEmpty())
+                rulesPathname = configurator.getLastRulesPathname();
+            // savegames written on Windows reference their rules with backslashes
+            rulesPathname = rulesPathname.replace('\\', File.separatorChar);
+            if (!new File(rulesPathname).isFile())
+                throw new IOException("Rules file not found: " + rulesPathname);
+            if (rulesPathname.endsWith(DownfallUtil.COMPILED_RULES_EXTENSION))
+                configurator.applyCompiledRules(CompiledRules.open(new File(rulesPathname)));
+            else
+                configurator.applyRules(readRules(rulesPathname));
+            configurator.setUserRealm(savegame.getUserRealm(), savegame.getConstructionQueue());
+
+            Map<String, Object> metrics = simulate(configurator, turns);
+
+            Savegame result = new Savegame(rulesPathname, configurator.getUserRealm());
+            result.setConstructionQueue(configurator.getConstructionQueue().toQueuedConstructions());
+            writeSavegame(result, options.get("out"));
+            metrics.forEach((key, value) -> out.println(key + "=" + value));
+            if (options.containsKey("metrics"))
+                writeMetrics(metrics, options.get("metrics"));
+            return EXIT_SUCCESS;
+        } catch (IOException | RuntimeException e) {
+            err.println("Headless run failed: " + e.getMessage());
+            Logger.getLogger(DownfallUtil.DEFAULT_LOGGER).log(Level.WARNING, "Headless run failed", e);
+            return EXIT_FAILURE;
+        }
+    }
+
+    /**
+     * Advances the user realm of the configurator and collects metrics of the run.
+     *
+     * @param configurator configurator whose rules are applied and whose user realm is loaded.
+     * @param turns        number of turns to be run.
+     * @return metrics of the run in the order they are reported.
+     */
+    private static Map<String, Object> simulate(Configurator configurator, int turns) {
+        Realm realm = configurator.getUserRealm();
+        MarketValuation valuation = configurator.getMarketValuation();
+        TurnProcessor processor = new TurnProcessor(configurator.getRulesView(), configurator.getRulesIndex(), realm, configurator.getConstructionQueue());
+
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("turns", turns);
+        metrics.put("startTreasury", realm.getTreasury());
+        metrics.put("startNetWorth", valuation.getNetWorth());
+
+        long runningBuildings = 0;
+        long stalledBuildings = 0;
+        long completedBuildings = 0;
+        long spoiledMaterials = 0;
+        long start = System.nanoTime();
+        for (int turn = 1; turn <= turns; turn++) {
+            TurnResult result = processor.advanceTurn();
+            ProductionReport report = result.getProductionReport();
+            runningBuildings += report.getRunningBuildings();
+            stalledBuildings += report.getStalledBuildings();
+            completedBuildings += result.getCompletedProjects().stream().mapToLong(project -> project.getQuantity()).sum();
+            spoiledMaterials += result.getSpoilageReport().getTotalLost();
+            Logger.getLogger(DownfallUtil.DEFAULT_LOGGER).log(Level.FINE, "Headless turn " + turn + " of " + turns + " completed");
+        }
+        long elapsed = System.nanoTime() - start;
+
+        metrics.put("endTreasury", realm.getTreasury());
+        metrics.put("endNetWorth", valuation.getNetWorth());
+        metrics.put("endStockpileValue", valuation.getStockpileValue());
+        metrics.put("runningBuildings", runningBuildings);
+        metrics.put("stalledBuildings", stalledBuildings);
+        metrics.put("completedBuildings", completedBuildings);
+        metrics.put("spoiledMaterials", spoiledMaterials);
+        metrics.put("elapsedMillis", elapsed / 1_000_000);
+        metrics.put("millisPerTurn", turns == 0 ? 0.0 : elapsed / 1e6 / turns);
+        return metrics;
+    }
+
+    /**
+     * @param pathname pathname to a savegame file, its format is chosen by its extension.
+     * @return savegame that was read.
+     * @throws IOException if the file could not be read or does not contain a valid savegame.
+     */
+    private static Savegame readSavegame(String pathname) throws IOException {
+        try (InputStream in = new BufferedInputStream(new FileInputStream(pathname))) {
+            return SavegameCodec.forPathname(pathname).read(in);
+        }
+    }
+
+    /**
+     * @param pathname pathname to a rules XML file.
+     * @return rules that were read.
+     * @throws IOException if the file could not be read or does not contain valid rules.
+     */
+    private static Rules readRules(String pathname) throws IOException {
+        try {
+            return new StreamingRulesLoader().load(new File(pathname));
+        } catch (XMLStreamException | IllegalArgumentException e) {
+            throw new IOException("Rules could not be read: " + pathname, e);
+        }
+    }
+
+    /**
+     * @param savegame savegame to be written.
+     * @param pathname pathname to a savegame file, its format is chosen by its extension.
+     * @throws IOException if the file could not be written.
+     */
+    private static void writeSavegame(Savegame savegame, String pathname) throws IOException {
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(pathname))) {
+            SavegameCodec.forPathname(pathname).write(savegame, out, element -> {});
+        }
+    }
+
+    /**
+     * @param metrics  metrics of the run.
+     * @param pathname pathname to a file the metrics are written to as key=value lines.
+     * @throws IOException if the file could not be written.
+     */
+    private static void writeMetrics(Map<String, Object> metrics, String pathname) throws IOException {
+        try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(Paths.get(pathname), StandardCharsets.UTF_8))) {
+            metrics.forEach((key, value) -> writer.println(key + "=" + value));
+        }
+    }
+}
@@ -14,17 +14,24 @@
 
 package net.dragondelve.downfall;
 
+import java.util.Arrays;
+
 /**
  * A simple class whose only purpose is to have a main method which calls the actual main method of the program
  * This enables building of jars that will properly include and reference the javaFX runtime components
+ * Passing --headless as the first argument runs DownfallHeadless instead, which never starts the javaFX toolkit.
  */
 public class DownfallLaunch {
     /**
-     * Calls the main method of
+     * Calls the main method of DownfallMain, or of DownfallHeadless if the first argument is --headless
      *
-     * @param args program arguments that will be passed to DownfallMain where they will be ignored.
+     * @param args program arguments that will be passed to DownfallMain where they will be ignored,
+     *             or the remaining arguments that will be passed to DownfallHeadless.
      */
     public static void main(String[] args) {
-        DownfallMain.main(args);
+        if (args.length > 0 && args[0].equals("--headless"))
+            DownfallHeadless.main(Arrays.copyOfRange(args, 1, args.length));
+        else
+            DownfallMain.main(args);
     }
 }
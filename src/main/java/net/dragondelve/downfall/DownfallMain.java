@@ -19,9 +19,12 @@ import javafx.fxml.FXMLLoader;
 import javafx.scene.Scene;
 import javafx.stage.Stage;
 import javafx.stage.StageStyle;
+import net.dragondelve.downfall.realm.Savegame;
 import net.dragondelve.downfall.ui.main.DownfallMainController;
 import net.dragondelve.downfall.util.Configurator;
 import net.dragondelve.downfall.util.DownfallUtil;
+import net.dragondelve.downfall.util.JAXBContextPool;
+import net.dragondelve.downfall.util.Rules;
 
 /**
  * Main application class of Downfall.
@@ -44,6 +47,7 @@ public final class DownfallMain extends Application {
      */
     @Override
     public void start(Stage stage) throws Exception {
+        JAXBContextPool.getInstance().warmUp(Rules.class, Savegame.class);
         Configurator configurator = Configurator.getInstance();
         configurator.loadConfiguration();
         configurator.loadAndApplyRules();
@@ -53,7 +57,7 @@ public final class DownfallMain extends Application {
 
         stage.setOnCloseRequest(e -> {
             configurator.saveRules();
-            configurator.saveConfiguration();
+            configurator.flushConfiguration();
         });
 
         stage.setWidth(1260);
@@ -68,4 +72,13 @@ public final class DownfallMain extends Application {
         stage.setScene(scene);
         stage.show();
     }
+
+    /**
+     * stop method of the client application. Makes sure that configuration changes still waiting to be written are not lost,
+     * since the stage can also be closed without a close request.
+     */
+    @Override
+    public void stop() {
+        Configurator.getInstance().flushConfiguration();
+    }
 }
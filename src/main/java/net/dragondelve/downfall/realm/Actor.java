@@ -14,14 +14,21 @@
 
 package net.dragondelve.downfall.realm;
 
+import jakarta.xml.bind.Unmarshaller;
 import jakarta.xml.bind.annotation.XmlElement;
 import jakarta.xml.bind.annotation.XmlElementWrapper;
+import jakarta.xml.bind.annotation.XmlTransient;
 import javafx.beans.property.IntegerProperty;
 import javafx.beans.property.SimpleIntegerProperty;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.beans.property.StringProperty;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
+import net.dragondelve.downfall.simulation.DenseStockpile;
+import net.dragondelve.downfall.simulation.IdIndex;
+import net.dragondelve.downfall.simulation.ObservableStockpile;
+
+import java.util.List;
 
 /**
  * Actor is a basis common for all entities that can build or store or act on the board in any way shape or form.
@@ -31,8 +38,16 @@ public abstract class Actor {
     private final StringProperty name = new SimpleStringProperty();
     private final IntegerProperty treasury = new SimpleIntegerProperty();
     private ObservableList<Material> stockpile = FXCollections.observableArrayList();
-    private ObservableList<Building> ownedBuildings = FXCollections.observableArrayList();
+    private ObservableList<BuildingCount> buildingCounts = FXCollections.observableArrayList();
     private ObservableList<Tag> tags = FXCollections.observableArrayList();
+    private ObservableStockpile denseStockpile;
+
+    /**
+     * Only used to read savegames written before buildings were counted, converted to buildingCounts right after unmarshalling.
+     */
+    @XmlElementWrapper(name = "owned-buildings")
+    @XmlElement(name = "building")
+    private List<Building> legacyOwnedBuildings;
 
     /**
      * Default constructor. Does not provide default values
@@ -42,7 +57,7 @@ public abstract class Actor {
     }
 
     /**
-     * Using this constructor stockpile, ownedBuildings, and tags remain empty lists.
+     * Using this constructor stockpile, buildingCounts, and tags remain empty lists.
      *
      * @param id       Unique actor identifier. Should be unique for every save file
      * @param name     A human-readable name of the actor as a property.
@@ -69,7 +84,7 @@ public abstract class Actor {
         this.name.set(name);
         this.treasury.set(treasury);
         this.stockpile = stockpile;
-        this.ownedBuildings = ownedBuildings;
+        setOwnedBuildings(ownedBuildings);
         this.tags = tags;
     }
 
@@ -174,28 +189,70 @@ public abstract class Actor {
      *
      * @param stockpile list of all materials in actor's stockpile
      */
-    public void setStockpile(ObservableList<Material> stockpile) {
+    public synchronized void setStockpile(ObservableList<Material> stockpile) {
+        if (denseStockpile != null) {
+            denseStockpile.dispose();
+            denseStockpile = null;
+        }
         this.stockpile = stockpile;
     }
 
+    /**
+     * Gives the simulation the stockpile of this actor as a DenseStockpile. The dense stockpile is the model the simulation works on and is kept in sync with
+     * getStockpile() by a single ObservableStockpile that lives as long as the stockpile list, so turns only write changed amounts back to the list.
+     * The adapter is created on first use and replaced if a different material index is asked for or the stockpile list has been replaced.
+     *
+     * @param materials index of the material template ids, usually the one of Configurator.getRulesIndex().
+     * @return adapter that holds the dense stockpile of this actor.
+     */
+    public synchronized ObservableStockpile getDenseStockpile(IdIndex materials) {
+        if (denseStockpile == null || denseStockpile.getStockpile().getMaterials() != materials || denseStockpile.getMaterials() != stockpile) {
+            if (denseStockpile != null)
+                denseStockpile.dispose();
+            denseStockpile = new ObservableStockpile(new DenseStockpile(materials), stockpile);
+        }
+        return denseStockpile;
+    }
+
     /**
      * Lightweight accessor method
      *
-     * @return List of all owned buildings
+     * @return List of all owned buildings counted by template
      */
-    @XmlElementWrapper(name = "owned-buildings")
-    @XmlElement(name = "building")
-    public ObservableList<Building> getOwnedBuildings() {
-        return ownedBuildings;
+    @XmlElementWrapper(name = "building-counts")
+    @XmlElement(name = "building-count")
+    public ObservableList<BuildingCount> getBuildingCounts() {
+        return buildingCounts;
     }
 
     /**
      * Lightweight mutator method
      *
+     * @param buildingCounts List of all owned buildings counted by template
+     */
+    public void setBuildingCounts(ObservableList<BuildingCount> buildingCounts) {
+        this.buildingCounts = buildingCounts;
+    }
+
+    /**
+     * Materializes one Building per owned building for views that need them one by one. Should not be used for large realms.
+     * The returned list is a new unmodifiable snapshot every time and changing its buildings is not reflected in the actor,
+     * use setOwnedBuildings or getBuildingCounts to change the owned buildings.
+     *
+     * @return new unmodifiable list of all owned buildings
+     */
+    @XmlTransient
+    public ObservableList<Building> getOwnedBuildings() {
+        return FXCollections.unmodifiableObservableList(BuildingCount.materialize(buildingCounts));
+    }
+
+    /**
+     * Replaces all owned buildings by the given ones, which are counted by template.
+     *
      * @param ownedBuildings List of all owned buildings
      */
     public void setOwnedBuildings(ObservableList<Building> ownedBuildings) {
-        this.ownedBuildings = ownedBuildings;
+        buildingCounts.setAll(BuildingCount.aggregate(ownedBuildings));
     }
 
     /**
@@ -217,4 +274,17 @@ public abstract class Actor {
     public void setTags(ObservableList<Tag> tags) {
         this.tags = tags;
     }
+
+    /**
+     * Called by JAXB after this actor has been unmarshalled. Adds the buildings of savegames written before buildings were counted to the building counts.
+     *
+     * @param unmarshaller unmarshaller that read this actor.
+     * @param parent       object that contains this actor.
+     */
+    void afterUnmarshal(Unmarshaller unmarshaller, Object parent) {
+        if (legacyOwnedBuildings == null)
+            return;
+        buildingCounts.addAll(BuildingCount.aggregate(legacyOwnedBuildings));
+        legacyOwnedBuildings = null;
+    }
 }
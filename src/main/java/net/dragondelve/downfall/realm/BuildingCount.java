@@ -0,0 +1,182 @@
+// Copyright 2023 Prokhor Kalinin
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package net.dragondelve.downfall.realm;
+
+import jakarta.xml.bind.annotation.XmlElement;
+import javafx.beans.property.IntegerProperty;
+import javafx.beans.property.SimpleIntegerProperty;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * BuildingCount represents all buildings of one BuildingTemplate that an Actor owns, split into operating and idle ones.
+ * It replaces one Building per instance, so owning many buildings of the same template costs the same as owning one.
+ * References its template by ID.
+ * This class if fully annotated for JAXB
+ */
+public class BuildingCount {
+    private final IntegerProperty id = new SimpleIntegerProperty(-1);
+    private final IntegerProperty operating = new SimpleIntegerProperty(0);
+    private final IntegerProperty idle = new SimpleIntegerProperty(0);
+
+    /**
+     * Default Constructor. Generates an invalid BuildingCount with id = -1 and no buildings.
+     */
+    public BuildingCount() {
+        super();
+    }
+
+    /**
+     * @param id        id of the building template associated with these buildings.
+     * @param operating number of buildings that are operating.
+     * @param idle      number of buildings that are not operating.
+     */
+    public BuildingCount(Integer id, Integer operating, Integer idle) {
+        this.id.set(id);
+        this.operating.set(operating);
+        this.idle.set(idle);
+    }
+
+    /**
+     * Sums up buildings of the same template. Counts keep the order in which their templates first appear in the list.
+     *
+     * @param buildings buildings, one per instance.
+     * @return list of counts with one entry per template.
+     */
+    public static List<BuildingCount> aggregate(List<Building> buildings) {
+        Map<Integer, BuildingCount> counts = new LinkedHashMap<>();
+        for (Building building : buildings) {
+            BuildingCount count = counts.computeIfAbsent(building.getId(), id -> new BuildingCount(id, 0, 0));
+            if (building.isOperating())
+                count.setOperating(count.getOperating() + 1);
+            else
+                count.setIdle(count.getIdle() + 1);
+        }
+        return new ArrayList<>(counts.values());
+    }
+
+    /**
+     * Creates one Building per instance that is counted. Operating buildings of a template come before idle ones.
+     *
+     * @param counts counts to be materialized.
+     * @return new list of buildings.
+     */
+    public static ObservableList<Building> materialize(List<BuildingCount> counts) {
+        List<Building> buildings = new ArrayList<>();
+        for (BuildingCount count : counts) {
+            for (int i = 0; i < count.getOperating(); i++)
+                buildings.add(new Building(count.getId(), true));
+            for (int i = 0; i < count.getIdle(); i++)
+                buildings.add(new Building(count.getId(), false));
+        }
+        return FXCollections.observableArrayList(buildings);
+    }
+
+    /**
+     * Lightweight accessor method
+     *
+     * @return id of the building template associated with these buildings as a property.
+     */
+    public IntegerProperty idProperty() {
+        return id;
+    }
+
+    /**
+     * Lightweight accessor method
+     *
+     * @return number of buildings that are operating as a property.
+     */
+    public IntegerProperty operatingProperty() {
+        return operating;
+    }
+
+    /**
+     * Lightweight accessor method
+     *
+     * @return number of buildings that are not operating as a property.
+     */
+    public IntegerProperty idleProperty() {
+        return idle;
+    }
+
+    /**
+     * Lightweight accessor method
+     *
+     * @return id of the building template associated with these buildings.
+     */
+    @XmlElement(name = "id")
+    public Integer getId() {
+        return id.get();
+    }
+
+    /**
+     * Lightweight mutator method
+     *
+     * @param id id of the building template associated with these buildings.
+     */
+    public void setId(Integer id) {
+        this.id.set(id);
+    }
+
+    /**
+     * Lightweight accessor method
+     *
+     * @return number of buildings that are operating.
+     */
+    @XmlElement(name = "operating")
+    public Integer getOperating() {
+        return operating.get();
+    }
+
+    /**
+     * Lightweight mutator method
+     *
+     * @param operating number of buildings that are operating.
+     */
+    public void setOperating(Integer operating) {
+        this.operating.set(operating);
+    }
+
+    /**
+     * Lightweight accessor method
+     *
+     * @return number of buildings that are not operating.
+     */
+    @XmlElement(name = "idle")
+    public Integer getIdle() {
+        return idle.get();
+    }
+
+    /**
+     * Lightweight mutator method
+     *
+     * @param idle number of buildings that are not operating.
+     */
+    public void setIdle(Integer idle) {
+        this.idle.set(idle);
+    }
+
+    /**
+     * @return number of all buildings, operating or not.
+     */
+    public Integer getTotal() {
+        return operating.get() + idle.get();
+    }
+}
@@ -0,0 +1,174 @@
+// Copyright 2023 Prokhor Kalinin
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package net.dragondelve.downfall.realm;
+
+import jakarta.xml.bind.annotation.XmlElement;
+import jakarta.xml.bind.annotation.XmlElementWrapper;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * QueuedConstruction is a number of buildings of one BuildingTemplate that were under construction when a Savegame was written,
+ * together with the materials and the treasury that were reserved for them, so that they are neither lost nor paid for again when the savegame is loaded.
+ * References its template by ID.
+ * This class if fully annotated for JAXB
+ */
+public class QueuedConstruction {
+    private Integer buildingTemplateId = -1;
+    private int quantity = 0;
+    private int turnsLeft = 0;
+    private boolean operatesImmediately = false;
+    private List<Material> reservedMaterials = new ArrayList<>();
+    private long reservedTreasury = 0;
+
+    /**
+     * Default Constructor. Generates an invalid QueuedConstruction with buildingTemplateId = -1 and no buildings.
+     */
+    public QueuedConstruction() {
+        super();
+    }
+
+    /**
+     * @param buildingTemplateId  id of the building template that is constructed.
+     * @param quantity            number of buildings that are constructed.
+     * @param turnsLeft           number of turns until the buildings are completed.
+     * @param operatesImmediately true if the buildings operate as soon as they are completed, false if they are idle.
+     * @param reservedMaterials   materials reserved for the construction.
+     * @param reservedTreasury    treasury reserved for the construction.
+     */
+    public QueuedConstruction(Integer buildingTemplateId, int quantity, int turnsLeft, boolean operatesImmediately, List<Material> reservedMaterials, long reservedTreasury) {
+        this.buildingTemplateId = buildingTemplateId;
+        this.quantity = quantity;
+        this.turnsLeft = turnsLeft;
+        this.operatesImmediately = operatesImmediately;
+        this.reservedMaterials = new ArrayList<>(reservedMaterials);
+        this.reservedTreasury = reservedTreasury;
+    }
+
+    /**
+     * Lightweight accessor method.
+     *
+     * @return id of the building template that is constructed.
+     */
+    @XmlElement(name = "building-template-id")
+    public Integer getBuildingTemplateId() {
+        return buildingTemplateId;
+    }
+
+    /**
+     * Lightweight mutator method.
+     *
+     * @param buildingTemplateId id of the building template that is constructed.
+     */
+    public void setBuildingTemplateId(Integer buildingTemplateId) {
+        this.buildingTemplateId = buildingTemplateId;
+    }
+
+    /**
+     * Lightweight accessor method.
+     *
+     * @return number of buildings that are constructed.
+     */
+    @XmlElement(name = "quantity")
+    public int getQuantity() {
+        return quantity;
+    }
+
+    /**
+     * Lightweight mutator method.
+     *
+     * @param quantity number of buildings that are constructed.
+     */
+    public void setQuantity(int quantity) {
+        this.quantity = quantity;
+    }
+
+    /**
+     * Lightweight accessor method.
+     *
+     * @return number of turns until the buildings are completed.
+     */
+    @XmlElement(name = "turns-left")
+    public int getTurnsLeft() {
+        return turnsLeft;
+    }
+
+    /**
+     * Lightweight mutator method.
+     *
+     * @param turnsLeft number of turns until the buildings are completed.
+     */
+    public void setTurnsLeft(int turnsLeft) {
+        this.turnsLeft = turnsLeft;
+    }
+
+    /**
+     * Lightweight accessor method.
+     *
+     * @return true if the buildings operate as soon as they are completed, false if they are idle.
+     */
+    @XmlElement(name = "operates-immediately")
+    public boolean isOperatesImmediately() {
+        return operatesImmediately;
+    }
+
+    /**
+     * Lightweight mutator method.
+     *
+     * @param operatesImmediately true if the buildings operate as soon as they are completed, false if they are idle.
+     */
+    public void setOperatesImmediately(boolean operatesImmediately) {
+        this.operatesImmediately = operatesImmediately;
+    }
+
+    /**
+     * Lightweight accessor method.
+     *
+     * @return materials reserved for the construction.
+     */
+    @XmlElementWrapper(name = "reserved-materials")
+    @XmlElement(name = "material")
+    public List<Material> getReservedMaterials() {
+        return reservedMaterials;
+    }
+
+    /**
+     * Lightweight mutator method.
+     *
+     * @param reservedMaterials materials reserved for the construction.
+     */
+    public void setReservedMaterials(List<Material> reservedMaterials) {
+        this.reservedMaterials = reservedMaterials;
+    }
+
+    /**
+     * Lightweight accessor method.
+     *
+     * @return treasury reserved for the construction.
+     */
+    @XmlElement(name = "reserved-treasury")
+    public long getReservedTreasury() {
+        return reservedTreasury;
+    }
+
+    /**
+     * Lightweight mutator method.
+     *
+     * @param reservedTreasury treasury reserved for the construction.
+     */
+    public void setReservedTreasury(long reservedTreasury) {
+        this.reservedTreasury = reservedTreasury;
+    }
+}
@@ -15,18 +15,23 @@
 package net.dragondelve.downfall.realm;
 
 import jakarta.xml.bind.annotation.XmlElement;
+import jakarta.xml.bind.annotation.XmlElementWrapper;
 import jakarta.xml.bind.annotation.XmlRootElement;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
- * a Save class that holds the information about a user's Realm and the Ruleset on which the Realm was created.
+ * a Save class that holds the information about a user's Realm, the buildings it has under construction and the Ruleset on which the Realm was created.
  */
 @XmlRootElement(name = "downfall-save")
 public final class Savegame {
     private String pathToRules = "";
     private Realm userRealm = new Realm();
+    private List<QueuedConstruction> constructionQueue = new ArrayList<>();
 
     /**
-     * Default constructor. Default values are "" pathToRules, and an empty Realm
+     * Default constructor. Default values are "" pathToRules, an empty Realm and an empty construction queue
      */
     public Savegame() {
         super();
@@ -78,4 +83,24 @@ public final class Savegame {
     public void setUserRealm(Realm userRealm) {
         this.userRealm = userRealm;
     }
+
+    /**
+     * Lightweight accessor method.
+     *
+     * @return buildings of the user's realm that were under construction, in the order they are completed.
+     */
+    @XmlElementWrapper(name = "construction-queue")
+    @XmlElement(name = "construction")
+    public List<QueuedConstruction> getConstructionQueue() {
+        return constructionQueue;
+    }
+
+    /**
+     * Lightweight mutator method.
+     *
+     * @param constructionQueue buildings of the user's realm that were under construction, in the order they are completed.
+     */
+    public void setConstructionQueue(List<QueuedConstruction> constructionQueue) {
+        this.constructionQueue = constructionQueue;
+    }
 }
@@ -0,0 +1,90 @@
+// Copyright 2023 Prokhor Kalinin
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package net.dragondelve.downfall.realm;
+
+import javafx.beans.property.IntegerProperty;
+import javafx.beans.property.SimpleIntegerProperty;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+
+/**
+ * World is a data model class that holds every actor taking part in a game, the user's realm as well as any number of AI realms, and the number of the current turn.
+ * The order of the actors is the order in which effects that involve several actors are applied, so it should not change between turns.
+ */
+public final class World {
+    private final IntegerProperty turn = new SimpleIntegerProperty();
+    private ObservableList<Actor> actors = FXCollections.observableArrayList();
+
+    /**
+     * Default constructor. The world starts at turn 0 without any actors.
+     */
+    public World() {
+        super();
+    }
+
+    /**
+     * @param turn   number of the current turn.
+     * @param actors list of all actors of the world.
+     */
+    public World(Integer turn, ObservableList<Actor> actors) {
+        super();
+        this.turn.set(turn);
+        this.actors = actors;
+    }
+
+    /**
+     * Lightweight accessor method.
+     *
+     * @return number of the current turn as a property.
+     */
+    public IntegerProperty turnProperty() {
+        return turn;
+    }
+
+    /**
+     * Lightweight accessor method.
+     *
+     * @return number of the current turn.
+     */
+    public Integer getTurn() {
+        return turn.get();
+    }
+
+    /**
+     * Lightweight mutator method.
+     *
+     * @param turn number of the current turn.
+     */
+    public void setTurn(Integer turn) {
+        this.turn.set(turn);
+    }
+
+    /**
+     * Lightweight accessor method.
+     *
+     * @return list of all actors of the world.
+     */
+    public ObservableList<Actor> getActors() {
+        return actors;
+    }
+
+    /**
+     * Lightweight mutator method.
+     *
+     * @param actors list of all actors of the world.
+     */
+    public void setActors(ObservableList<Actor> actors) {
+        this.actors = actors;
+    }
+}
@@ -0,0 +1,34 @@
+// Copyright 2023 Prokhor Kalinin
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package net.dragondelve.downfall.simulation;
+
+/**
+ * Interface for any class that decides how many of the operating buildings of every template run in a turn of a ProductionEngine
+ * when several templates compete for the same scarce inputs.
+ * An allocation has to be feasible: the inputs of all running buildings together must not exceed the non-negative part of the stock of any material,
+ * and no template may run more buildings than are operating. Implementations are called once per turn and should be linear in the number of templates and their inputs,
+ * apart from ordering the templates that compete for a scarce input.
+ */
+public interface AllocationPolicy {
+    /**
+     * Decides how many buildings of every template run. Must not change the stock.
+     *
+     * @param engine    engine that runs the turn, provides the inputs and outputs of every template.
+     * @param stock     amount of each material by material index before anything is consumed.
+     * @param operating number of operating buildings of each template by building index.
+     * @param running   number of buildings of each template that run by building index. Overwritten.
+     */
+    void allocate(ProductionEngine engine, long[] stock, int[] operating, int[] running);
+}
@@ -0,0 +1,317 @@
+// Copyright 2023 Prokhor Kalinin
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package net.dragondelve.downfall.simulation;
+
+import net.dragondelve.downfall.realm.Material;
+import net.dragondelve.downfall.realm.template.VisualBuildingTemplate;
+import net.dragondelve.downfall.util.RulesView;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Expands construction orders into the raw materials they need through the production chain of a ruleset.
+ * A building needs its construction materials and its construction cost for every turn of its construction. A material that is produced by a building template
+ * is expanded into the inputs of the first template in the rules that produces it, scaled by the amount that template produces per turn,
+ * until only raw materials are left: materials that no template produces and materials that can be made from themselves, which are not expanded to keep the expansion finite.
+ * <p>
+ * The raw requirements of one unit of every material and of one building of every template are computed on first use and memoized, so every further query
+ * is a sum of memoized sparse vectors. ConstructionPlan uses them to keep the totals of an order up to date while its quantities are edited.
+ * Requirements are fractional, as a template may produce more of a material than is needed, and are rounded up when they are reported.
+ * <p>
+ * Amounts are read from the rules when the bill of materials is compiled, it has to be compiled again after the rules have been changed.
+ */
+public final class BillOfMaterials {
+    private final RulesIndex index;
+    private final int materialCount;
+    private final int buildingCount;
+    private final boolean[] raw;
+    private final int[] producers;
+    private final List<Map<Integer, Long>> inputs;
+    private final long[] outputAmounts;
+    private final List<Map<Integer, Long>> constructionMaterials;
+    private final long[] constructionCosts;
+    private final int[] constructionTimes;
+
+    private final int[][] materialRequirementIndices;
+    private final double[][] materialRequirementAmounts;
+    private final int[][] buildingRequirementIndices;
+    private final double[][] buildingRequirementAmounts;
+    private final double[] scratch;
+    private final boolean[] touched;
+    private final int[] touchedIndices;
+    private int touchedCount = 0;
+
+    /**
+     * Compiles the building templates of the given rules. If several templates share an id the first one is used, just like in TemplateRegistry.
+     *
+     * @param rules rules the bill of materials is compiled from.
+     * @param graph production graph of the rules, usually Configurator.getProductionGraph(). Used to find the materials that can be made from themselves.
+     */
+    public BillOfMaterials(RulesView rules, ProductionGraph graph) {
+        index = graph.getIndex();
+        IdIndex materials = index.getMaterials();
+        IdIndex buildings = index.getBuildings();
+
+        Map<Integer, VisualBuildingTemplate> templatesByIndex = new LinkedHashMap<>();
+        for (VisualBuildingTemplate template : rules.getBuildingTemplates())
+            templatesByIndex.putIfAbsent(buildings.add(template.getId()), template);
+        buildingCount = buildings.size();
+
+        inputs = new ArrayList<>(buildingCount);
+        constructionMaterials = new ArrayList<>(buildingCount);
+        constructionCosts = new long[buildingCount];
+        constructionTimes = new int[buildingCount];
+        Map<Integer, Integer> producerOf = new LinkedHashMap<>();
+        Map<Integer, Long> producedAmounts = new LinkedHashMap<>();
+        for (int building = 0; building < buildingCount; building++) {
+            VisualBuildingTemplate template = templatesByIndex.get(building);
+            inputs.add(template == null ? Map.of() : mergeMaterials(template.getInputMaterials(), materials));
+            constructionMaterials.add(template == null ? Map.of() : mergeMaterials(template.getConstructionMaterials(), materials));
+            if (template == null)
+                continue;
+            constructionCosts[building] = Math.max(template.getDefConstructionCost(), 0);
+            constructionTimes[building] = Math.max(template.getDefConstructionTime(), 1);
+            for (Map.Entry<Integer, Long> output : mergeMaterials(template.getOutputMaterials(), materials).entrySet()) {
+                if (producerOf.putIfAbsent(output.getKey(), building) == null)
+                    producedAmounts.put(output.getKey(), output.getValue());
+            }
+        }
+        materialCount = materials.size();
+
+        raw = new boolean[materialCount];
+        producers = new int[materialCount];
+        outputAmounts = new long[materialCount];
+        for (int material = 0; material < materialCount; material++) {
+            Integer producer = producerOf.get(material);
+            raw[material] = producer == null || graph.getUpstreamMaterials(material).get(material);
+            producers[material] = producer == null ? -1 : producer;
+            outputAmounts[material] = producedAmounts.getOrDefault(material, 0L);
+        }
+
+        materialRequirementIndices = new int[materialCount][];
+        materialRequirementAmounts = new double[materialCount][];
+        buildingRequirementIndices = new int[buildingCount][];
+        buildingRequirementAmounts = new double[buildingCount][];
+        scratch = new double[materialCount];
+        touched = new boolean[materialCount];
+        touchedIndices = new int[materialCount];
+    }
+
+    /**
+     * Lightweight accessor method.
+     *
+     * @return dense indices of the materials and building templates of the rules.
+     */
+    public RulesIndex getIndex() {
+        return index;
+    }
+
+    /**
+     * Lightweight accessor method.
+     *
+     * @return number of materials known to the bill of materials, which is the length of all arrays indexed by material index.
+     */
+    public int getMaterialCount() {
+        return materialCount;
+    }
+
+    /**
+     * Lightweight accessor method.
+     *
+     * @return number of building templates known to the bill of materials.
+     */
+    public int getBuildingCount() {
+        return buildingCount;
+    }
+
+    /**
+     * @param material index of a material.
+     * @return true if the material is not expanded any further.
+     */
+    public boolean isRaw(int material) {
+        return raw[material];
+    }
+
+    /**
+     * @param templateId id of a material template.
+     * @return raw materials needed for one unit of the material by material id, in the order of their indices.
+     */
+    public Map<Integer, Double> getMaterialRequirements(Integer templateId) {
+        int material = index.getMaterialIndex(templateId);
+        if (material < 0 || material >= materialCount)
+            return Map.of(templateId, 1.0);
+        expandMaterial(material);
+        return toMap(materialRequirementIndices[material], materialRequirementAmounts[material]);
+    }
+
+    /**
+     * @param templateId id of a building template.
+     * @return raw materials needed to construct one building of the template by material id, in the order of their indices.
+     */
+    public Map<Integer, Double> getBuildingRequirements(Integer templateId) {
+        int building = index.getBuildingIndex(templateId);
+        if (building < 0 || building >= buildingCount)
+            return Map.of();
+        expandBuilding(building);
+        return toMap(buildingRequirementIndices[building], buildingRequirementAmounts[building]);
+    }
+
+    /**
+     * @param building index of a building template.
+     * @return total construction cost of one building of the template over all turns of its construction.
+     */
+    public long getConstructionCost(int building) {
+        return constructionCosts[building] * constructionTimes[building];
+    }
+
+    /**
+     * Adds the raw requirements of a number of buildings to dense totals. Does not allocate once the requirements of the template have been memoized.
+     *
+     * @param building index of a building template.
+     * @param quantity number of buildings, negative to remove them from the totals.
+     * @param totals   raw material totals by material index, at least getMaterialCount() long.
+     */
+    public void addBuildingRequirements(int building, long quantity, double[] totals) {
+        expandBuilding(building);
+        int[] indices = buildingRequirementIndices[building];
+        double[] amounts = buildingRequirementAmounts[building];
+        for (int i = 0; i < indices.length; i++)
+            totals[indices[i]] += quantity * amounts[i];
+    }
+
+    /**
+     * Memoizes the raw requirements of one unit of a material. Inputs are expanded before the material itself,
+     * which terminates because materials that can be made from themselves are raw.
+     *
+     * @param material index of a material.
+     */
+    private void expandMaterial(int material) {
+        if (materialRequirementIndices[material] != null)
+            return;
+        if (raw[material]) {
+            materialRequirementIndices[material] = new int[]{material};
+            materialRequirementAmounts[material] = new double[]{1.0};
+            return;
+        }
+        int producer = producers[material];
+        for (Integer input : inputs.get(producer).keySet())
+            expandMaterial(input);
+
+        double perUnit = 1.0 / outputAmounts[material];
+        for (Map.Entry<Integer, Long> input : inputs.get(producer).entrySet())
+            accumulate(materialRequirementIndices[input.getKey()], materialRequirementAmounts[input.getKey()], input.getValue() * perUnit);
+        drainScratch(material, true);
+    }
+
+    /**
+     * Memoizes the raw requirements of one building of a template.
+     *
+     * @param building index of a building template.
+     */
+    private void expandBuilding(int building) {
+        if (buildingRequirementIndices[building] != null)
+            return;
+        for (Integer material : constructionMaterials.get(building).keySet())
+            expandMaterial(material);
+
+        for (Map.Entry<Integer, Long> material : constructionMaterials.get(building).entrySet())
+            accumulate(materialRequirementIndices[material.getKey()], materialRequirementAmounts[material.getKey()], (double) material.getValue() * constructionTimes[building]);
+        drainScratch(building, false);
+    }
+
+    /**
+     * Adds a scaled sparse vector to the scratch totals and remembers which totals it touched, so that draining them costs time proportional to their number.
+     *
+     * @param indices material indices of the vector.
+     * @param amounts amounts of the vector.
+     * @param factor  factor the amounts are multiplied with.
+     */
+    private void accumulate(int[] indices, double[] amounts, double factor) {
+        for (int i = 0; i < indices.length; i++) {
+            if (!touched[indices[i]]) {
+                touched[indices[i]] = true;
+                touchedIndices[touchedCount++] = indices[i];
+            }
+            scratch[indices[i]] += factor * amounts[i];
+        }
+    }
+
+    /**
+     * Moves the non-zero touched scratch totals into a memoized sparse vector in the order of their indices and clears them.
+     *
+     * @param target     index of the material or building template the vector belongs to.
+     * @param isMaterial true if target is a material index, false if it is a building index.
+     */
+    private void drainScratch(int target, boolean isMaterial) {
+        Arrays.sort(touchedIndices, 0, touchedCount);
+        int count = 0;
+        for (int i = 0; i < touchedCount; i++) {
+            if (scratch[touchedIndices[i]] != 0)
+                count++;
+        }
+        int[] indices = new int[count];
+        double[] amounts = new double[count];
+        int position = 0;
+        for (int i = 0; i < touchedCount; i++) {
+            int material = touchedIndices[i];
+            if (scratch[material] != 0) {
+                indices[position] = material;
+                amounts[position++] = scratch[material];
+            }
+            scratch[material] = 0;
+            touched[material] = false;
+        }
+        touchedCount = 0;
+        if (isMaterial) {
+            materialRequirementIndices[target] = indices;
+            materialRequirementAmounts[target] = amounts;
+        } else {
+            buildingRequirementIndices[target] = indices;
+            buildingRequirementAmounts[target] = amounts;
+        }
+    }
+
+    /**
+     * @param indices material indices of a sparse vector.
+     * @param amounts amounts of the vector.
+     * @return the vector by material id.
+     */
+    private Map<Integer, Double> toMap(int[] indices, double[] amounts) {
+        Map<Integer, Double> map = new LinkedHashMap<>();
+        for (int i = 0; i < indices.length; i++)
+            map.put(index.getMaterialId(indices[i]), amounts[i]);
+        return map;
+    }
+
+    /**
+     * Sums up materials of the same template, indexing materials that are not known yet, and drops non-positive amounts.
+     *
+     * @param templateMaterials materials of a building template.
+     * @param materials         index of the material template ids.
+     * @return amount of each material by material index.
+     */
+    private static Map<Integer, Long> mergeMaterials(List<Material> templateMaterials, IdIndex materials) {
+        Map<Integer, Long> merged = new LinkedHashMap<>();
+        for (Material material : templateMaterials) {
+            if (material.getAmount() > 0)
+                merged.merge(materials.add(material.getTemplateId()), (long) material.getAmount(), Long::sum);
+        }
+        return merged;
+    }
+}
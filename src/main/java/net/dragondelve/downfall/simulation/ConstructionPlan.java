@@ -0,0 +1,120 @@
+// Copyright 2023 Prokhor Kalinin
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package net.dragondelve.downfall.simulation;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Construction order whose raw material requirements are kept up to date while its quantities are edited.
+ * Changing the quantity of a building template only adds the difference times the memoized requirements of one building of the template to the totals,
+ * so what-if edits in a planner do not expand the order again.
+ */
+public final class ConstructionPlan {
+    private static final double ROUNDING_TOLERANCE = 1e-9;
+
+    private final BillOfMaterials billOfMaterials;
+    private final Map<Integer, Integer> quantities = new LinkedHashMap<>();
+    private final double[] totals;
+    private long constructionCost = 0;
+
+    /**
+     * Creates an empty construction order.
+     *
+     * @param billOfMaterials bill of materials of the current rules.
+     */
+    public ConstructionPlan(BillOfMaterials billOfMaterials) {
+        this.billOfMaterials = billOfMaterials;
+        this.totals = new double[billOfMaterials.getMaterialCount()];
+    }
+
+    /**
+     * Changes the number of buildings of a template in the order. Building templates unknown to the bill of materials need nothing.
+     *
+     * @param buildingTemplateId id of a building template.
+     * @param quantity           number of buildings to be constructed, 0 removes the template from the order.
+     * @throws IllegalArgumentException if quantity is negative.
+     */
+    public void setQuantity(Integer buildingTemplateId, int quantity) {
+        if (quantity < 0)
+            throw new IllegalArgumentException("Quantity must not be negative: " + quantity);
+        Integer previous = quantity == 0 ? quantities.remove(buildingTemplateId) : quantities.put(buildingTemplateId, quantity);
+        long difference = (long) quantity - (previous == null ? 0 : previous);
+        int building = billOfMaterials.getIndex().getBuildingIndex(buildingTemplateId);
+        if (difference == 0 || building < 0 || building >= billOfMaterials.getBuildingCount())
+            return;
+        billOfMaterials.addBuildingRequirements(building, difference, totals);
+        constructionCost += difference * billOfMaterials.getConstructionCost(building);
+    }
+
+    /**
+     * @param buildingTemplateId id of a building template.
+     * @return number of buildings of the template in the order.
+     */
+    public int getQuantity(Integer buildingTemplateId) {
+        return quantities.getOrDefault(buildingTemplateId, 0);
+    }
+
+    /**
+     * Lightweight accessor method.
+     *
+     * @return number of buildings of every template in the order by building template id.
+     */
+    public Map<Integer, Integer> getQuantities() {
+        return Collections.unmodifiableMap(quantities);
+    }
+
+    /**
+     * @param materialTemplateId id of a material template.
+     * @return amount of the raw material needed by the whole order, rounded up.
+     */
+    public long getRawRequirement(Integer materialTemplateId) {
+        int material = billOfMaterials.getIndex().getMaterialIndex(materialTemplateId);
+        return material < 0 || material >= totals.length ? 0 : roundUp(totals[material]);
+    }
+
+    /**
+     * @return amount of every raw material needed by the whole order by material template id, rounded up. Materials that are not needed are left out.
+     */
+    public Map<Integer, Long> getRawRequirements() {
+        Map<Integer, Long> requirements = new LinkedHashMap<>();
+        for (int material = 0; material < totals.length; material++) {
+            long amount = roundUp(totals[material]);
+            if (amount > 0)
+                requirements.put(billOfMaterials.getIndex().getMaterialId(material), amount);
+        }
+        return requirements;
+    }
+
+    /**
+     * Lightweight accessor method.
+     *
+     * @return construction cost of the whole order over all turns of construction.
+     */
+    public long getConstructionCost() {
+        return constructionCost;
+    }
+
+    /**
+     * Rounds a fractional requirement up, ignoring the error that builds up while quantities are added and removed.
+     *
+     * @param amount fractional amount.
+     * @return amount rounded up.
+     */
+    private static long roundUp(double amount) {
+        return (long) Math.ceil(amount - ROUNDING_TOLERANCE);
+    }
+}
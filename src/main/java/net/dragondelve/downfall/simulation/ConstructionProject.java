@@ -0,0 +1,114 @@
+// Copyright 2023 Prokhor Kalinin
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package net.dragondelve.downfall.simulation;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * A number of buildings of the same template that are under construction together. Holds the materials and the treasury
+ * that were reserved for them when the construction was started, so they can be returned if the construction is cancelled.
+ */
+public final class ConstructionProject {
+    private final Integer buildingTemplateId;
+    private final int quantity;
+    private final int completionTurn;
+    private final long sequence;
+    private final boolean operatesImmediately;
+    private final Map<Integer, Long> reservedMaterials;
+    private final long reservedTreasury;
+
+    /**
+     * @param buildingTemplateId  id of the building template that is constructed.
+     * @param quantity            number of buildings that are constructed.
+     * @param completionTurn      turn of the construction queue in which the buildings are completed.
+     * @param sequence            number that orders projects completed in the same turn by the time they were started.
+     * @param operatesImmediately true if the buildings operate as soon as they are completed, false if they are idle.
+     * @param reservedMaterials   materials reserved for the construction by material template id.
+     * @param reservedTreasury    treasury reserved for the construction.
+     */
+    ConstructionProject(Integer buildingTemplateId, int quantity, int completionTurn, long sequence, boolean operatesImmediately, Map<Integer, Long> reservedMaterials, long reservedTreasury) {
+        this.buildingTemplateId = buildingTemplateId;
+        this.quantity = quantity;
+        this.completionTurn = completionTurn;
+        this.sequence = sequence;
+        this.operatesImmediately = operatesImmediately;
+        this.reservedMaterials = Collections.unmodifiableMap(reservedMaterials);
+        this.reservedTreasury = reservedTreasury;
+    }
+
+    /**
+     * Lightweight accessor method.
+     *
+     * @return id of the building template that is constructed.
+     */
+    public Integer getBuildingTemplateId() {
+        return buildingTemplateId;
+    }
+
+    /**
+     * Lightweight accessor method.
+     *
+     * @return number of buildings that are constructed.
+     */
+    public int getQuantity() {
+        return quantity;
+    }
+
+    /**
+     * Lightweight accessor method.
+     *
+     * @return turn of the construction queue in which the buildings are completed.
+     */
+    public int getCompletionTurn() {
+        return completionTurn;
+    }
+
+    /**
+     * Lightweight accessor method.
+     *
+     * @return true if the buildings operate as soon as they are completed, false if they are idle.
+     */
+    public boolean isOperatesImmediately() {
+        return operatesImmediately;
+    }
+
+    /**
+     * Lightweight accessor method.
+     *
+     * @return materials reserved for the construction by material template id.
+     */
+    public Map<Integer, Long> getReservedMaterials() {
+        return reservedMaterials;
+    }
+
+    /**
+     * Lightweight accessor method.
+     *
+     * @return treasury reserved for the construction.
+     */
+    public long getReservedTreasury() {
+        return reservedTreasury;
+    }
+
+    /**
+     * Lightweight accessor method.
+     *
+     * @return number that orders projects completed in the same turn by the time they were started.
+     */
+    long getSequence() {
+        return sequence;
+    }
+}
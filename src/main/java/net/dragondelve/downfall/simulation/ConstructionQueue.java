@@ -0,0 +1,219 @@
+// Copyright 2023 Prokhor Kalinin
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package net.dragondelve.downfall.simulation;
+
+import net.dragondelve.downfall.realm.Actor;
+import net.dragondelve.downfall.realm.BuildingCount;
+import net.dragondelve.downfall.realm.Material;
+import net.dragondelve.downfall.realm.QueuedConstruction;
+import net.dragondelve.downfall.realm.template.BuildingTemplate;
+import net.dragondelve.downfall.util.DownfallUtil;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Buildings of an Actor that are under construction. Starting a construction reserves the construction materials and the construction cost of every turn
+ * of construction from the stockpile and the treasury of the actor at once, and the buildings are added to the building counts of the actor
+ * once defConstructionTime turns have passed, operating if their template operates immediately and idle otherwise.
+ * <p>
+ * Projects are kept in a priority queue ordered by their completion turn, so advancing a turn only looks at the projects that are completed in it
+ * and costs O(log n) per completed project, no matter how many projects are under construction.
+ * What was reserved is not part of the stockpile or the treasury anymore, so the projects are written to savegames with toQueuedConstructions() and restored with restore().
+ * Should be used on the JavaFX Application Thread if the actor is displayed.
+ */
+public final class ConstructionQueue {
+    private final Actor actor;
+    private final IdIndex materials;
+    private final PriorityQueue<ConstructionProject> projects = new PriorityQueue<>(Comparator.comparingInt(ConstructionProject::getCompletionTurn).thenComparingLong(ConstructionProject::getSequence));
+    private int turn = 0;
+    private long nextSequence = 0;
+
+    /**
+     * Creates an empty construction queue.
+     *
+     * @param actor     actor whose buildings are constructed.
+     * @param materials index of the material template ids used to read the stockpile of the actor, usually the one of Configurator.getRulesIndex().
+     */
+    public ConstructionQueue(Actor actor, IdIndex materials) {
+        this.actor = actor;
+        this.materials = materials;
+    }
+
+    /**
+     * Starts the construction of a number of buildings if the actor can afford all of them. Nothing is reserved if it cannot.
+     * A construction time below one turn is treated as one turn.
+     *
+     * @param template template of the buildings.
+     * @param quantity number of buildings.
+     * @return the started project or null if the stockpile or the treasury of the actor are insufficient.
+     * @throws IllegalArgumentException if quantity is not positive.
+     */
+    public ConstructionProject start(BuildingTemplate template, int quantity) {
+        if (quantity <= 0)
+            throw new IllegalArgumentException("Quantity must be positive: " + quantity);
+        int turns = Math.max(template.getDefConstructionTime(), 1);
+        long cost = (long) Math.max(template.getDefConstructionCost(), 0) * turns * quantity;
+        if (cost > actor.getTreasury())
+            return null;
+
+        Map<Integer, Long> reserved = new LinkedHashMap<>();
+        for (Material material : template.getConstructionMaterials()) {
+            if (material.getAmount() > 0)
+                reserved.merge(material.getTemplateId(), (long) material.getAmount() * turns * quantity, Long::sum);
+        }
+        ObservableStockpile stockpile = actor.getDenseStockpile(materials);
+        for (Map.Entry<Integer, Long> material : reserved.entrySet()) {
+            if (stockpile.getStockpile().getById(material.getKey()) < material.getValue())
+                return null;
+        }
+        reserved.forEach((id, amount) -> stockpile.getStockpile().addById(id, -amount));
+        stockpile.refresh();
+        actor.setTreasury((int) (actor.getTreasury() - cost));
+
+        ConstructionProject project = new ConstructionProject(template.getId(), quantity, turn + turns, nextSequence++, template.getOperatesImmediately(), reserved, cost);
+        projects.add(project);
+        return project;
+    }
+
+    /**
+     * Cancels a project and returns everything that was reserved for it to the actor.
+     *
+     * @param project project of this queue.
+     * @return true if the project was cancelled, false if it is not under construction in this queue.
+     */
+    public boolean cancel(ConstructionProject project) {
+        if (!projects.remove(project))
+            return false;
+        ObservableStockpile stockpile = actor.getDenseStockpile(materials);
+        project.getReservedMaterials().forEach((id, amount) -> stockpile.getStockpile().addById(id, amount));
+        stockpile.refresh();
+        actor.setTreasury((int) Math.min(Integer.MAX_VALUE, actor.getTreasury() + project.getReservedTreasury()));
+        return true;
+    }
+
+    /**
+     * Advances the queue by one turn and adds the buildings of every project completed in it to the building counts of the actor.
+     *
+     * @return projects completed in this turn in the order they were started.
+     */
+    public List<ConstructionProject> advanceTurn() {
+        turn++;
+        List<ConstructionProject> completed = new ArrayList<>();
+        while (!projects.isEmpty() && projects.peek().getCompletionTurn() <= turn)
+            completed.add(projects.poll());
+        if (completed.isEmpty())
+            return completed;
+
+        Map<Integer, int[]> added = new LinkedHashMap<>();
+        for (ConstructionProject project : completed)
+            added.computeIfAbsent(project.getBuildingTemplateId(), id -> new int[2])[project.isOperatesImmediately() ? 0 : 1] += project.getQuantity();
+        for (BuildingCount count : actor.getBuildingCounts()) {
+            int[] counts = added.remove(count.getId());
+            if (counts != null) {
+                count.setOperating(count.getOperating() + counts[0]);
+                count.setIdle(count.getIdle() + counts[1]);
+            }
+        }
+        List<BuildingCount> newCounts = new ArrayList<>();
+        added.forEach((id, counts) -> newCounts.add(new BuildingCount(id, counts[0], counts[1])));
+        actor.getBuildingCounts().addAll(newCounts);
+
+        Logger.getLogger(DownfallUtil.DEFAULT_LOGGER).log(Level.FINE, completed.size() + " construction projects completed in turn " + turn);
+        return completed;
+    }
+
+    /**
+     * Lightweight accessor method.
+     *
+     * @return index of the material template ids used to read the stockpile of the actor.
+     */
+    public IdIndex getMaterials() {
+        return materials;
+    }
+
+    /**
+     * Lightweight accessor method.
+     *
+     * @return number of turns this queue has been advanced by.
+     */
+    public int getTurn() {
+        return turn;
+    }
+
+    /**
+     * @return all projects under construction ordered by their completion turn.
+     */
+    public List<ConstructionProject> getProjects() {
+        List<ConstructionProject> sorted = new ArrayList<>(projects);
+        sorted.sort(projects.comparator());
+        return sorted;
+    }
+
+    /**
+     * Lightweight accessor method.
+     *
+     * @return number of projects under construction.
+     */
+    public int size() {
+        return projects.size();
+    }
+
+    /**
+     * Discards all projects without returning what was reserved for them, used when the actor is replaced by a loaded one.
+     */
+    public void clear() {
+        projects.clear();
+    }
+
+    /**
+     * Describes all projects under construction so that they can be written to a Savegame.
+     *
+     * @return a QueuedConstruction for every project ordered by their completion turn, counting turns from the current turn of this queue.
+     */
+    public List<QueuedConstruction> toQueuedConstructions() {
+        List<QueuedConstruction> constructions = new ArrayList<>();
+        for (ConstructionProject project : getProjects()) {
+            // a reservation never exceeds the stock it was taken from, which is an int in the stockpile list
+            List<Material> reserved = new ArrayList<>();
+            project.getReservedMaterials().forEach((id, amount) -> reserved.add(new Material(id, (int) Math.min(amount, Integer.MAX_VALUE))));
+            constructions.add(new QueuedConstruction(project.getBuildingTemplateId(), project.getQuantity(), project.getCompletionTurn() - turn,
+                    project.isOperatesImmediately(), reserved, project.getReservedTreasury()));
+        }
+        return constructions;
+    }
+
+    /**
+     * Replaces all projects with the ones read from a Savegame. Their materials and treasury were reserved before they were saved, so nothing is taken from the actor again.
+     *
+     * @param constructions projects under construction as returned by toQueuedConstructions(), in the order they were started.
+     */
+    public void restore(List<QueuedConstruction> constructions) {
+        projects.clear();
+        for (QueuedConstruction construction : constructions) {
+            Map<Integer, Long> reserved = new LinkedHashMap<>();
+            for (Material material : construction.getReservedMaterials())
+                reserved.merge(material.getTemplateId(), (long) material.getAmount(), Long::sum);
+            projects.add(new ConstructionProject(construction.getBuildingTemplateId(), construction.getQuantity(), turn + Math.max(construction.getTurnsLeft(), 1),
+                    nextSequence++, construction.isOperatesImmediately(), reserved, construction.getReservedTreasury()));
+        }
+    }
+}
@@ -0,0 +1,165 @@
+// Copyright 2023 Prokhor Kalinin
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package net.dragondelve.downfall.simulation;
+
+import net.dragondelve.downfall.realm.Material;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Stockpile that keeps the amount of every material in a dense long array indexed by the material's index in an IdIndex.
+ * Unlike a list of Materials there is exactly one amount per material and none of the operations by index allocate,
+ * so it is meant to be used by the simulation. ObservableStockpile exposes it to JavaFX as a list of Materials, Actor.getDenseStockpile() keeps one of them for every actor.
+ * Not thread safe.
+ */
+public final class DenseStockpile {
+    private final IdIndex materials;
+    private long[] amounts;
+
+    /**
+     * Creates an empty stockpile.
+     *
+     * @param materials index of the material template ids. Materials that are not in the index yet are added to it when they are stocked by id.
+     */
+    public DenseStockpile(IdIndex materials) {
+        this.materials = materials;
+        this.amounts = new long[materials.size()];
+    }
+
+    /**
+     * Lightweight accessor method.
+     *
+     * @return index of the material template ids used by this stockpile.
+     */
+    public IdIndex getMaterials() {
+        return materials;
+    }
+
+    /**
+     * @param index index of a material.
+     * @return amount of the material.
+     */
+    public long get(int index) {
+        return index < amounts.length ? amounts[index] : 0;
+    }
+
+    /**
+     * @param index  index of a material.
+     * @param amount new amount of the material.
+     */
+    public void set(int index, long amount) {
+        ensureCapacity(index);
+        amounts[index] = amount;
+    }
+
+    /**
+     * @param index  index of a material.
+     * @param amount amount to be added, may be negative.
+     */
+    public void add(int index, long amount) {
+        ensureCapacity(index);
+        amounts[index] += amount;
+    }
+
+    /**
+     * Removes an amount of a material if there is enough of it.
+     *
+     * @param index  index of a material.
+     * @param amount amount to be removed.
+     * @return true if the amount was removed, false if there was not enough of the material, in which case nothing is removed.
+     */
+    public boolean consume(int index, long amount) {
+        if (get(index) < amount)
+            return false;
+        amounts[index] -= amount;
+        return true;
+    }
+
+    /**
+     * Moves an amount of a material to another stockpile if there is enough of it.
+     *
+     * @param target stockpile that receives the material. Has to use the same IdIndex.
+     * @param index  index of a material.
+     * @param amount amount to be moved.
+     * @return true if the amount was moved, false if there was not enough of the material, in which case nothing is moved.
+     * @throws IllegalArgumentException if the target uses another IdIndex.
+     */
+    public boolean transfer(DenseStockpile target, int index, long amount) {
+        if (target.materials != materials)
+            throw new IllegalArgumentException("Stockpiles use different material indices");
+        if (!consume(index, amount))
+            return false;
+        target.add(index, amount);
+        return true;
+    }
+
+    /**
+     * @param templateId id of a material template.
+     * @return amount of the material.
+     */
+    public long getById(int templateId) {
+        int index = materials.indexOf(templateId);
+        return index < 0 ? 0 : get(index);
+    }
+
+    /**
+     * Adds an amount of a material by id, adding the material to the index if it is not known yet.
+     *
+     * @param templateId id of a material template.
+     * @param amount     amount to be added, may be negative.
+     */
+    public void addById(int templateId, long amount) {
+        add(materials.add(templateId), amount);
+    }
+
+    /**
+     * Replaces the content of this stockpile with the given materials. Several materials of the same template are summed up.
+     *
+     * @param stockpile materials to be stocked.
+     */
+    public void read(List<Material> stockpile) {
+        Arrays.fill(amounts, 0);
+        for (Material material : stockpile)
+            addById(material.getTemplateId(), material.getAmount());
+    }
+
+    /**
+     * Removes all materials.
+     */
+    public void clear() {
+        Arrays.fill(amounts, 0);
+    }
+
+    /**
+     * Gives direct access to the amounts for engines that process all materials at once. The array is replaced when the index grows, so it should not be kept.
+     *
+     * @return amount of each material by index, at least as long as the IdIndex was when this method was called.
+     */
+    long[] amounts() {
+        ensureCapacity(materials.size() - 1);
+        return amounts;
+    }
+
+    /**
+     * Grows the amounts to the size of the index if a given index does not fit.
+     *
+     * @param index index that has to fit.
+     */
+    private void ensureCapacity(int index) {
+        if (index >= amounts.length)
+            amounts = Arrays.copyOf(amounts, Math.max(index + 1, materials.size()));
+    }
+}
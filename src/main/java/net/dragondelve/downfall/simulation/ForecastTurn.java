@@ -0,0 +1,130 @@
+// Copyright 2023 Prokhor Kalinin
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package net.dragondelve.downfall.simulation;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * State of a forecast realm at the end of one forecast turn.
+ */
+public final class ForecastTurn {
+    private final int turn;
+    private final long treasury;
+    private final long stockpileValue;
+    private final int runningBuildings;
+    private final int stalledBuildings;
+    private final int completedBuildings;
+    private final Map<Integer, Long> stockpile;
+
+    /**
+     * @param turn               number of turns forecast so far, starting with 1.
+     * @param treasury           treasury of the actor, which the forecast does not change.
+     * @param stockpileValue     value of the stockpile at the default export prices.
+     * @param runningBuildings   number of operating buildings that were supplied with all inputs.
+     * @param stalledBuildings   number of operating buildings that lacked inputs.
+     * @param completedBuildings number of buildings whose construction was completed.
+     * @param stockpile          amount of every stocked material by material template id.
+     */
+    ForecastTurn(int turn, long treasury, long stockpileValue, int runningBuildings, int stalledBuildings, int completedBuildings, Map<Integer, Long> stockpile) {
+        this.turn = turn;
+        this.treasury = treasury;
+        this.stockpileValue = stockpileValue;
+        this.runningBuildings = runningBuildings;
+        this.stalledBuildings = stalledBuildings;
+        this.completedBuildings = completedBuildings;
+        this.stockpile = Collections.unmodifiableMap(stockpile);
+    }
+
+    /**
+     * Lightweight accessor method.
+     *
+     * @return number of turns forecast so far, starting with 1.
+     */
+    public int getTurn() {
+        return turn;
+    }
+
+    /**
+     * Lightweight accessor method.
+     *
+     * @return treasury of the actor, which the forecast does not change.
+     */
+    public long getTreasury() {
+        return treasury;
+    }
+
+    /**
+     * Lightweight accessor method.
+     *
+     * @return value of the stockpile at the default export prices.
+     */
+    public long getStockpileValue() {
+        return stockpileValue;
+    }
+
+    /**
+     * Lightweight accessor method.
+     *
+     * @return treasury plus the value of the stockpile.
+     */
+    public long getNetWorth() {
+        return treasury + stockpileValue;
+    }
+
+    /**
+     * Lightweight accessor method.
+     *
+     * @return number of operating buildings that were supplied with all inputs.
+     */
+    public int getRunningBuildings() {
+        return runningBuildings;
+    }
+
+    /**
+     * Lightweight accessor method.
+     *
+     * @return number of operating buildings that lacked inputs.
+     */
+    public int getStalledBuildings() {
+        return stalledBuildings;
+    }
+
+    /**
+     * Lightweight accessor method.
+     *
+     * @return number of buildings whose construction was completed.
+     */
+    public int getCompletedBuildings() {
+        return completedBuildings;
+    }
+
+    /**
+     * @param materialTemplateId id of a material template.
+     * @return amount of the material at the end of the turn.
+     */
+    public long getAmount(Integer materialTemplateId) {
+        return stockpile.getOrDefault(materialTemplateId, 0L);
+    }
+
+    /**
+     * Lightweight accessor method.
+     *
+     * @return amount of every stocked material by material template id.
+     */
+    public Map<Integer, Long> getStockpile() {
+        return stockpile;
+    }
+}
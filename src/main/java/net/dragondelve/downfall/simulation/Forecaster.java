@@ -0,0 +1,290 @@
+// Copyright 2023 Prokhor Kalinin
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package net.dragondelve.downfall.simulation;
+
+import javafx.concurrent.Task;
+import net.dragondelve.downfall.realm.Actor;
+import net.dragondelve.downfall.realm.BuildingCount;
+import net.dragondelve.downfall.realm.template.VisualMaterialTemplate;
+import net.dragondelve.downfall.util.DownfallUtil;
+import net.dragondelve.downfall.util.RulesView;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Predicate;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.LongStream;
+
+/**
+ * Forecasts the stockpile and the net worth of an actor over a number of turns of production and construction.
+ * <p>
+ * The actor, its construction projects and the rules are copied into primitive arrays on the calling thread, which should be the JavaFX Application Thread,
+ * and the turns are run on a single daemon thread, so the forecast never touches JavaFX objects while they can change.
+ * Every forecast turn is published as the value of the returned Task, so a chart or a table can show the turns while they are being computed.
+ * A forecast stops early when it is cancelled or when a stop condition is met.
+ * <p>
+ * Complete forecasts are cached by the state they were computed from, so forecasting the same realm again, or fewer turns of it, is answered from the cache.
+ * The stockpile is valued at the default export prices of the materials. The treasury is held at its current value: construction projects have paid
+ * for themselves when they were started and the actor does not trade on its own, so nothing in a forecast turn spends or earns money.
+ */
+public final class Forecaster {
+    private static final int CACHE_SIZE = 16;
+
+    private final Map<StateKey, List<ForecastTurn>> cache = Collections.synchronizedMap(new LinkedHashMap<>(CACHE_SIZE, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<StateKey, List<ForecastTurn>> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    });
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "Forecast worker");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Forecasts an actor on a background thread. Must be called on the JavaFX Application Thread if the actor or the rules are displayed.
+     *
+     * @param actor    actor to be forecast. Is not changed.
+     * @param rules    rules whose building templates produce and whose material templates provide the prices.
+     * @param projects construction projects of the actor, completed relative to the current turn of their queue.
+     * @param turn     current turn of the construction queue of the projects.
+     * @param turns    number of turns to be forecast.
+     * @param stopWhen condition that ends the forecast after the first turn that meets it, null to forecast all turns.
+     * @return started task whose value is the list of forecast turns so far, updated after every turn.
+     */
+    public Task<List<ForecastTurn>> forecastInBackground(Actor actor, RulesView rules, List<ConstructionProject> projects, int turn, int turns, Predicate<ForecastTurn> stopWhen) {
+        Snapshot snapshot = new Snapshot(actor, rules, projects, turn);
+        Task<List<ForecastTurn>> task = new Task<>() {
+            @Override
+            protected List<ForecastTurn> call() {
+                List<ForecastTurn> cached = cache.get(snapshot.key);
+                if (cached != null && cached.size() >= turns) {
+                    List<ForecastTurn> results = truncate(cached.subList(0, turns), stopWhen);
+                    updateValue(results);
+                    updateProgress(1, 1);
+                    return results;
+                }
+
+                Logger.getLogger(DownfallUtil.DEFAULT_LOGGER).log(Level.FINE, "Forecast of " + turns + " turns initiated");
+                List<ForecastTurn> results = new ArrayList<>(turns);
+                boolean stopped = false;
+                for (int forecastTurn = 1; forecastTurn <= turns && !stopped; forecastTurn++) {
+                    if (isCancelled())
+                        throw new CancellationException();
+                    ForecastTurn result = snapshot.advance(forecastTurn);
+                    results.add(result);
+                    stopped = stopWhen != null && stopWhen.test(result);
+                    updateValue(Collections.unmodifiableList(new ArrayList<>(results)));
+                    updateProgress(forecastTurn, turns);
+                }
+                if (!stopped)
+                    cache.put(snapshot.key, Collections.unmodifiableList(results));
+                updateProgress(1, 1);
+                Logger.getLogger(DownfallUtil.DEFAULT_LOGGER).log(Level.FINE, "Forecast of " + results.size() + " turns completed");
+                return Collections.unmodifiableList(results);
+            }
+        };
+        executor.execute(task);
+        return task;
+    }
+
+    /**
+     * Discards all cached forecasts.
+     */
+    public void clearCache() {
+        cache.clear();
+    }
+
+    /**
+     * @param turns    forecast turns.
+     * @param stopWhen condition that ends the forecast, null to keep all turns.
+     * @return the turns up to and including the first one that meets the condition.
+     */
+    private static List<ForecastTurn> truncate(List<ForecastTurn> turns, Predicate<ForecastTurn> stopWhen) {
+        if (stopWhen != null) {
+            for (int i = 0; i < turns.size(); i++) {
+                if (stopWhen.test(turns.get(i)))
+                    return Collections.unmodifiableList(new ArrayList<>(turns.subList(0, i + 1)));
+            }
+        }
+        return Collections.unmodifiableList(new ArrayList<>(turns));
+    }
+
+    /**
+     * Copy of an actor, its construction projects and the rules in primitive arrays that is advanced turn by turn on the forecast thread.
+     */
+    private static final class Snapshot {
+        private final ProductionEngine engine;
+        private final SpoilagePass spoilage;
+        private final long[] stock;
+        private final int[] operating;
+        private final long[] prices;
+        private final long treasury;
+        private final int[] projectTurns;
+        private final int[] projectBuildings;
+        private final int[] projectQuantities;
+        private final boolean[] projectOperating;
+        private final StateKey key;
+
+        private final long[] consumed;
+        private final long[] produced;
+        private final long[] lost;
+        private final int[] running;
+        private int nextProject = 0;
+
+        /**
+         * Copies everything the forecast needs. Uses a RulesIndex of its own, so the forecast thread never changes an index that is shared with the UI.
+         *
+         * @param actor    actor to be forecast.
+         * @param rules    rules of the forecast.
+         * @param projects construction projects of the actor.
+         * @param turn     current turn of the construction queue of the projects.
+         */
+        private Snapshot(Actor actor, RulesView rules, List<ConstructionProject> projects, int turn) {
+            engine = new ProductionEngine(rules, new RulesIndex(rules));
+            spoilage = new SpoilagePass(rules, engine);
+            DenseStockpile stockpile = new DenseStockpile(engine.getMaterials());
+            stockpile.read(actor.getStockpile());
+            stock = Arrays.copyOf(stockpile.amounts(), engine.getMaterials().size());
+
+            operating = new int[engine.getBuildingCount()];
+            List<Integer> idleCounts = new ArrayList<>();
+            for (BuildingCount count : actor.getBuildingCounts()) {
+                int building = engine.getBuildingIndex(count.getId());
+                if (building >= 0)
+                    operating[building] += count.getOperating();
+                idleCounts.add(count.getId());
+                idleCounts.add(count.getIdle());
+            }
+
+            prices = new long[engine.getMaterialCount()];
+            for (VisualMaterialTemplate template : rules.getMaterialTemplates()) {
+                int material = engine.getMaterialIndex(template.getId());
+                if (material >= 0 && prices[material] == 0)
+                    prices[material] = Math.max(template.getDefExportPrice(), 0);
+            }
+            treasury = actor.getTreasury();
+
+            List<ConstructionProject> sorted = new ArrayList<>(projects);
+            sorted.sort((first, second) -> Integer.compare(first.getCompletionTurn(), second.getCompletionTurn()));
+            projectTurns = new int[sorted.size()];
+            projectBuildings = new int[sorted.size()];
+            projectQuantities = new int[sorted.size()];
+            projectOperating = new boolean[sorted.size()];
+            for (int i = 0; i < sorted.size(); i++) {
+                ConstructionProject project = sorted.get(i);
+                projectTurns[i] = project.getCompletionTurn() - turn;
+                projectBuildings[i] = engine.getBuildingIndex(project.getBuildingTemplateId());
+                projectQuantities[i] = project.getQuantity();
+                projectOperating[i] = project.isOperatesImmediately();
+            }
+
+            consumed = new long[engine.getMaterialCount()];
+            produced = new long[engine.getMaterialCount()];
+            lost = new long[engine.getMaterialCount()];
+            running = new int[engine.getBuildingCount()];
+
+            LongStream.Builder state = LongStream.builder();
+            for (int building = 0; building < engine.getBuildingCount(); building++) {
+                state.add(engine.getBuildingId(building)).add(engine.getInputCount(building)).add(engine.getOutputCount(building));
+                for (int input = 0; input < engine.getInputCount(building); input++)
+                    state.add(engine.getInputMaterial(building, input)).add(engine.getInputAmount(building, input));
+                for (int output = 0; output < engine.getOutputCount(building); output++)
+                    state.add(engine.getOutputMaterial(building, output)).add(engine.getOutputAmount(building, output));
+            }
+            for (int material = 0; material < stock.length; material++)
+                state.add(engine.getMaterials().idAt(material)).add(stock[material]).add(material < prices.length ? prices[material] : 0).add(spoilage.getRetained(material));
+            Arrays.stream(operating).forEach(state::add);
+            idleCounts.forEach(state::add);
+            state.add(treasury);
+            for (int i = 0; i < projectTurns.length; i++)
+                state.add(projectTurns[i]).add(projectBuildings[i]).add(projectQuantities[i]).add(projectOperating[i] ? 1 : 0);
+            key = new StateKey(state.build().toArray());
+        }
+
+        /**
+         * Runs one turn of production followed by the completion of construction projects and spoilage, like the Next Turn action does.
+         *
+         * @param forecastTurn number of the turn, starting with 1.
+         * @return state at the end of the turn.
+         */
+        private ForecastTurn advance(int forecastTurn) {
+            Arrays.fill(consumed, 0);
+            Arrays.fill(produced, 0);
+            Arrays.fill(lost, 0);
+            engine.produce(stock, operating, consumed, produced, running);
+            int runningBuildings = 0;
+            int stalledBuildings = 0;
+            for (int building = 0; building < running.length; building++) {
+                runningBuildings += running[building];
+                stalledBuildings += operating[building] - running[building];
+            }
+
+            int completedBuildings = 0;
+            while (nextProject < projectTurns.length && projectTurns[nextProject] <= forecastTurn) {
+                if (projectOperating[nextProject] && projectBuildings[nextProject] >= 0)
+                    operating[projectBuildings[nextProject]] += projectQuantities[nextProject];
+                completedBuildings += projectQuantities[nextProject];
+                nextProject++;
+            }
+            spoilage.apply(stock, lost);
+
+            long stockpileValue = 0;
+            Map<Integer, Long> stockpile = new LinkedHashMap<>();
+            for (int material = 0; material < stock.length; material++) {
+                if (material < prices.length)
+                    stockpileValue += Math.max(stock[material], 0) * prices[material];
+                if (stock[material] != 0)
+                    stockpile.put(engine.getMaterials().idAt(material), stock[material]);
+            }
+            return new ForecastTurn(forecastTurn, treasury, stockpileValue, runningBuildings, stalledBuildings, completedBuildings, stockpile);
+        }
+    }
+
+    /**
+     * Exact state a forecast was computed from, used as the key of the cache. Its hash is the hash of the realm state.
+     */
+    private static final class StateKey {
+        private final long[] state;
+        private final int hash;
+
+        /**
+         * @param state every value the forecast depends on.
+         */
+        private StateKey(long[] state) {
+            this.state = state;
+            this.hash = Arrays.hashCode(state);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof StateKey && hash == ((StateKey) other).hash && Arrays.equals(state, ((StateKey) other).state);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,122 @@
+// Copyright 2023 Prokhor Kalinin
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package net.dragondelve.downfall.simulation;
+
+import java.util.Arrays;
+
+/**
+ * Maps the ids of templates to dense indices from 0 to size - 1 in the order the ids were added, so that data about templates can be kept in primitive arrays.
+ * Ids are stored in an open addressing hash table of primitive ints, so neither lookups nor adding an id that is already known allocate.
+ * Ids can only be added, never removed, which keeps every index that has been handed out valid.
+ * Not thread safe while ids are being added, lookups from several threads are safe once no more ids are added.
+ */
+public final class IdIndex {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private int[] keys;
+    private int[] slots;
+    private int[] ids;
+    private int size = 0;
+    private int shift = 32 - Integer.numberOfTrailingZeros(INITIAL_CAPACITY);
+
+    /**
+     * Default constructor. Creates an empty index.
+     */
+    public IdIndex() {
+        keys = new int[INITIAL_CAPACITY];
+        slots = new int[INITIAL_CAPACITY];
+        ids = new int[INITIAL_CAPACITY / 2];
+    }
+
+    /**
+     * Adds an id unless it is already known.
+     *
+     * @param id id of a template.
+     * @return dense index of the id.
+     */
+    public int add(int id) {
+        int slot = find(id);
+        if (slots[slot] != 0)
+            return slots[slot] - 1;
+
+        if (size == ids.length) {
+            ids = Arrays.copyOf(ids, ids.length * 2);
+            rehash(keys.length * 2);
+            slot = find(id);
+        }
+        keys[slot] = id;
+        slots[slot] = size + 1;
+        ids[size] = id;
+        return size++;
+    }
+
+    /**
+     * @param id id of a template.
+     * @return dense index of the id or -1 if it is not known.
+     */
+    public int indexOf(int id) {
+        return slots[find(id)] - 1;
+    }
+
+    /**
+     * @param index dense index.
+     * @return id that has the index.
+     */
+    public int idAt(int index) {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        return ids[index];
+    }
+
+    /**
+     * Lightweight accessor method.
+     *
+     * @return number of known ids, every dense index is smaller than it.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Finds the slot of an id in the hash table using linear probing. The id is spread with Fibonacci hashing, which takes the slot from the
+     * high bits of the product, which depend on every bit of the id whatever the capacity of the table.
+     *
+     * @param id id of a template.
+     * @return the slot that contains the id or the empty slot it would be put into.
+     */
+    private int find(int id) {
+        int mask = keys.length - 1;
+        int slot = (id * 0x9E3779B9) >>> shift;
+        while (slots[slot] != 0 && keys[slot] != id)
+            slot = (slot + 1) & mask;
+        return slot;
+    }
+
+    /**
+     * Grows the hash table and puts every known id into it again.
+     *
+     * @param capacity new capacity of the hash table, a power of two.
+     */
+    private void rehash(int capacity) {
+        keys = new int[capacity];
+        slots = new int[capacity];
+        shift = 32 - Integer.numberOfTrailingZeros(capacity);
+        for (int index = 0; index < size; index++) {
+            int slot = find(ids[index]);
+            keys[slot] = ids[index];
+            slots[slot] = index + 1;
+        }
+    }
+}
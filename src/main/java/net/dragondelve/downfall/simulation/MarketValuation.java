@@ -0,0 +1,408 @@
+// Copyright 2023 Prokhor Kalinin
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package net.dragondelve.downfall.simulation;
+
+import javafx.beans.InvalidationListener;
+import javafx.beans.Observable;
+import javafx.beans.property.ReadOnlyLongProperty;
+import javafx.beans.property.ReadOnlyLongWrapper;
+import javafx.beans.value.ChangeListener;
+import javafx.beans.value.ObservableValue;
+import javafx.collections.ListChangeListener;
+import net.dragondelve.downfall.realm.Actor;
+import net.dragondelve.downfall.realm.Material;
+import net.dragondelve.downfall.realm.template.VisualMaterialTemplate;
+import net.dragondelve.downfall.util.RulesView;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Values an actor at the default prices of the material templates: the stockpile at the export prices, the net worth as the treasury plus the stockpile,
+ * and the profit of one building of every template as its outputs at the export prices minus its inputs at the import prices. Negative prices mean that
+ * a material has no price, such materials are worth nothing.
+ * <p>
+ * The figures are computed once and then kept up to date incrementally. Editing the amount of a stocked material changes the stockpile value by the difference
+ * times the export price of the material, and editing a price changes the stockpile value by the stocked amount times the difference and the profit of only
+ * those templates that produce or consume the material. Only adding, removing or replacing entries of the stockpile or material templates, or changing their ids,
+ * reads the stockpile or the prices again.
+ * <p>
+ * The inputs and outputs of the building templates are compiled once, the valuation has to be created again after building templates have been changed.
+ * Must be used on the JavaFX Application Thread if the actor or the rules are displayed. Call dispose() once the valuation is no longer needed.
+ */
+public final class MarketValuation {
+    private final RulesView rules;
+    private final Actor actor;
+    private final ProductionEngine engine;
+    private final IdIndex materials;
+    private final DenseStockpile stockpile;
+
+    private final int[] producerStart;
+    private final int[] producerBuildings;
+    private final long[] producerAmounts;
+    private final int[] consumerStart;
+    private final int[] consumerBuildings;
+    private final long[] consumerAmounts;
+
+    private long[] exportPrices = new long[0];
+    private long[] importPrices = new long[0];
+    private final long[] profits;
+
+    private final List<PricedTemplate> pricedTemplates = new ArrayList<>();
+    private final List<StockpileRow> stockpileRows = new ArrayList<>();
+    private final ListChangeListener<VisualMaterialTemplate> materialTemplateListener = change -> readPrices();
+    private final ListChangeListener<Material> stockpileListener = change -> readStockpile();
+    private final InvalidationListener treasuryListener = observable -> updateNetWorth();
+
+    private final ReadOnlyLongWrapper stockpileValue = new ReadOnlyLongWrapper();
+    private final ReadOnlyLongWrapper netWorth = new ReadOnlyLongWrapper();
+
+    /**
+     * Values the actor and starts listening to its stockpile and treasury and to the material templates of the rules.
+     *
+     * @param rules rules that provide the prices of the materials and the building templates.
+     * @param index dense indices of the templates of the rules, usually Configurator.getRulesIndex().
+     * @param actor actor that is valued.
+     */
+    public MarketValuation(RulesView rules, RulesIndex index, Actor actor) {
+        this.rules = rules;
+        this.actor = actor;
+        this.engine = new ProductionEngine(rules, index);
+        this.materials = engine.getMaterials();
+        this.stockpile = new DenseStockpile(materials);
+
+        int materialCount = engine.getMaterialCount();
+        int buildingCount = engine.getBuildingCount();
+        producerStart = new int[materialCount + 1];
+        consumerStart = new int[materialCount + 1];
+        for (int building = 0; building < buildingCount; building++) {
+            for (int output = 0; output < engine.getOutputCount(building); output++)
+                producerStart[engine.getOutputMaterial(building, output) + 1]++;
+            for (int input = 0; input < engine.getInputCount(building); input++)
+                consumerStart[engine.getInputMaterial(building, input) + 1]++;
+        }
+        for (int material = 0; material < materialCount; material++) {
+            producerStart[material + 1] += producerStart[material];
+            consumerStart[material + 1] += consumerStart[material];
+        }
+        producerBuildings = new int[producerStart[materialCount]];
+        producerAmounts = new long[producerBuildings.length];
+        consumerBuildings = new int[consumerStart[materialCount]];
+        consumerAmounts = new long[consumerBuildings.length];
+        int[] producerPosition = Arrays.copyOf(producerStart, materialCount);
+        int[] consumerPosition = Arrays.copyOf(consumerStart, materialCount);
+        for (int building = 0; building < buildingCount; building++) {
+            for (int output = 0; output < engine.getOutputCount(building); output++) {
+                int position = producerPosition[engine.getOutputMaterial(building, output)]++;
+                producerBuildings[position] = building;
+                producerAmounts[position] = engine.getOutputAmount(building, output);
+            }
+            for (int input = 0; input < engine.getInputCount(building); input++) {
+                int position = consumerPosition[engine.getInputMaterial(building, input)]++;
+                consumerBuildings[position] = building;
+                consumerAmounts[position] = engine.getInputAmount(building, input);
+            }
+        }
+        profits = new long[buildingCount];
+
+        readPrices();
+        readStockpile();
+        rules.getMaterialTemplates().addListener(materialTemplateListener);
+        actor.getStockpile().addListener(stockpileListener);
+        actor.treasuryProperty().addListener(treasuryListener);
+    }
+
+    /**
+     * Lightweight accessor method.
+     *
+     * @return value of the stockpile of the actor at the export prices of its materials.
+     */
+    public long getStockpileValue() {
+        return stockpileValue.get();
+    }
+
+    /**
+     * Lightweight accessor method.
+     *
+     * @return value of the stockpile of the actor as a read only property.
+     */
+    public ReadOnlyLongProperty stockpileValueProperty() {
+        return stockpileValue.getReadOnlyProperty();
+    }
+
+    /**
+     * Lightweight accessor method.
+     *
+     * @return treasury of the actor plus the value of its stockpile.
+     */
+    public long getNetWorth() {
+        return netWorth.get();
+    }
+
+    /**
+     * Lightweight accessor method.
+     *
+     * @return net worth of the actor as a read only property.
+     */
+    public ReadOnlyLongProperty netWorthProperty() {
+        return netWorth.getReadOnlyProperty();
+    }
+
+    /**
+     * @param materialTemplateId id of a material template.
+     * @return value of the stocked amount of the material at its export price.
+     */
+    public long getValue(Integer materialTemplateId) {
+        int index = materials.indexOf(materialTemplateId);
+        return index < 0 ? 0 : stockpile.get(index) * exportPrice(index);
+    }
+
+    /**
+     * @param materialTemplateId id of a material template.
+     * @return export price of the material or 0 if it has none.
+     */
+    public long getExportPrice(Integer materialTemplateId) {
+        return exportPrice(materials.indexOf(materialTemplateId));
+    }
+
+    /**
+     * @param materialTemplateId id of a material template.
+     * @return import price of the material or 0 if it has none.
+     */
+    public long getImportPrice(Integer materialTemplateId) {
+        int index = materials.indexOf(materialTemplateId);
+        return index >= 0 && index < importPrices.length ? importPrices[index] : 0;
+    }
+
+    /**
+     * @param buildingTemplateId id of a building template.
+     * @return value of the outputs of one building of the template at export prices minus the value of its inputs at import prices, 0 for unknown templates.
+     */
+    public long getProfit(Integer buildingTemplateId) {
+        int index = engine.getBuildingIndex(buildingTemplateId);
+        return index < 0 ? 0 : profits[index];
+    }
+
+    /**
+     * Lightweight accessor method.
+     *
+     * @return actor that is valued.
+     */
+    public Actor getActor() {
+        return actor;
+    }
+
+    /**
+     * Stops listening to the actor and the rules. The figures are no longer updated afterwards.
+     */
+    public void dispose() {
+        rules.getMaterialTemplates().removeListener(materialTemplateListener);
+        actor.getStockpile().removeListener(stockpileListener);
+        actor.treasuryProperty().removeListener(treasuryListener);
+        pricedTemplates.forEach(PricedTemplate::detach);
+        pricedTemplates.clear();
+        stockpileRows.forEach(StockpileRow::detach);
+        stockpileRows.clear();
+    }
+
+    /**
+     * Reads the prices of all material templates again, the first template of every id provides its prices, and recomputes all figures.
+     */
+    private void readPrices() {
+        pricedTemplates.forEach(PricedTemplate::detach);
+        pricedTemplates.clear();
+        for (VisualMaterialTemplate template : rules.getMaterialTemplates())
+            materials.add(template.getId());
+        exportPrices = new long[materials.size()];
+        importPrices = new long[materials.size()];
+        boolean[] priced = new boolean[materials.size()];
+        for (VisualMaterialTemplate template : rules.getMaterialTemplates()) {
+            int index = materials.indexOf(template.getId());
+            if (!priced[index]) {
+                priced[index] = true;
+                exportPrices[index] = toPrice(template.getDefExportPrice());
+                importPrices[index] = toPrice(template.getDefImportPrice());
+                pricedTemplates.add(new PricedTemplate(index, template));
+            }
+        }
+
+        for (int building = 0; building < profits.length; building++)
+            profits[building] = engine.getProfit(building, exportPrices, importPrices);
+        updateStockpileValue();
+    }
+
+    /**
+     * Reads the stockpile of the actor again, listens to its entries and recomputes the stockpile value.
+     */
+    private void readStockpile() {
+        stockpileRows.forEach(StockpileRow::detach);
+        stockpileRows.clear();
+        stockpile.read(actor.getStockpile());
+        for (Material material : actor.getStockpile())
+            stockpileRows.add(new StockpileRow(materials.indexOf(material.getTemplateId()), material));
+        updateStockpileValue();
+    }
+
+    /**
+     * Sums up the value of all stocked materials.
+     */
+    private void updateStockpileValue() {
+        long value = 0;
+        for (int index = 0; index < exportPrices.length; index++)
+            value += stockpile.get(index) * exportPrices[index];
+        stockpileValue.set(value);
+        updateNetWorth();
+    }
+
+    /**
+     * Adds the treasury of the actor to the stockpile value.
+     */
+    private void updateNetWorth() {
+        netWorth.set(actor.getTreasury() + stockpileValue.get());
+    }
+
+    /**
+     * @param index dense index of a material, -1 for unknown materials.
+     * @return export price of the material or 0 if it has none.
+     */
+    private long exportPrice(int index) {
+        return index >= 0 && index < exportPrices.length ? exportPrices[index] : 0;
+    }
+
+    /**
+     * @param price default price of a material template.
+     * @return the price, or 0 if the template has no price.
+     */
+    private static long toPrice(Integer price) {
+        return price == null ? 0 : Math.max(price, 0);
+    }
+
+    /**
+     * Material template that provides the prices of a material. Applies price edits to the stockpile value and the profits of the templates that use the material.
+     */
+    private final class PricedTemplate implements InvalidationListener {
+        private final int index;
+        private final VisualMaterialTemplate template;
+        private final ChangeListener<Number> exportPriceListener = this::exportPriceChanged;
+        private final ChangeListener<Number> importPriceListener = this::importPriceChanged;
+
+        /**
+         * Starts listening to the prices and the id of a template.
+         *
+         * @param index    dense index of the material.
+         * @param template template that provides the prices of the material.
+         */
+        private PricedTemplate(int index, VisualMaterialTemplate template) {
+            this.index = index;
+            this.template = template;
+            template.defExportPriceProperty().addListener(exportPriceListener);
+            template.defImportPriceProperty().addListener(importPriceListener);
+            template.idProperty().addListener(this);
+        }
+
+        /**
+         * Stops listening to the template.
+         */
+        private void detach() {
+            template.defExportPriceProperty().removeListener(exportPriceListener);
+            template.defImportPriceProperty().removeListener(importPriceListener);
+            template.idProperty().removeListener(this);
+        }
+
+        /**
+         * Revalues the stocked amount of the material and the outputs of the templates that produce it.
+         */
+        private void exportPriceChanged(ObservableValue<? extends Number> observable, Number oldValue, Number newValue) {
+            long difference = toPrice(newValue.intValue()) - exportPrices[index];
+            if (difference == 0)
+                return;
+            exportPrices[index] += difference;
+            if (index < producerStart.length - 1) {
+                for (int position = producerStart[index]; position < producerStart[index + 1]; position++)
+                    profits[producerBuildings[position]] += producerAmounts[position] * difference;
+            }
+            stockpileValue.set(stockpileValue.get() + stockpile.get(index) * difference);
+            updateNetWorth();
+        }
+
+        /**
+         * Revalues the inputs of the templates that consume the material.
+         */
+        private void importPriceChanged(ObservableValue<? extends Number> observable, Number oldValue, Number newValue) {
+            long difference = toPrice(newValue.intValue()) - importPrices[index];
+            importPrices[index] += difference;
+            if (index < consumerStart.length - 1) {
+                for (int position = consumerStart[index]; position < consumerStart[index + 1]; position++)
+                    profits[consumerBuildings[position]] -= consumerAmounts[position] * difference;
+            }
+        }
+
+        /**
+         * Reads all prices again once the id of the template has been changed.
+         */
+        @Override
+        public void invalidated(Observable observable) {
+            readPrices();
+        }
+    }
+
+    /**
+     * Entry of the stockpile of the actor. Applies amount edits to the stockpile value.
+     */
+    private final class StockpileRow implements ChangeListener<Number>, InvalidationListener {
+        private final int index;
+        private final Material material;
+
+        /**
+         * Starts listening to the amount and the template id of an entry.
+         *
+         * @param index    dense index of the material.
+         * @param material entry of the stockpile.
+         */
+        private StockpileRow(int index, Material material) {
+            this.index = index;
+            this.material = material;
+            material.amountProperty().addListener((ChangeListener<Number>) this);
+            material.idProperty().addListener((InvalidationListener) this);
+        }
+
+        /**
+         * Stops listening to the entry.
+         */
+        private void detach() {
+            material.amountProperty().removeListener((ChangeListener<Number>) this);
+            material.idProperty().removeListener((InvalidationListener) this);
+        }
+
+        /**
+         * Adds the value of the difference of an edited amount to the stockpile value.
+         */
+        @Override
+        public void changed(ObservableValue<? extends Number> observable, Number oldValue, Number newValue) {
+            long difference = newValue.longValue() - oldValue.longValue();
+            stockpile.add(index, difference);
+            stockpileValue.set(stockpileValue.get() + difference * exportPrice(index));
+            updateNetWorth();
+        }
+
+        /**
+         * Reads the stockpile again once the template id of an entry has been changed.
+         */
+        @Override
+        public void invalidated(Observable observable) {
+            readStockpile();
+        }
+    }
+}
@@ -0,0 +1,233 @@
+// Copyright 2023 Prokhor Kalinin
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package net.dragondelve.downfall.simulation;
+
+import javafx.beans.InvalidationListener;
+import javafx.beans.Observable;
+import javafx.beans.value.ChangeListener;
+import javafx.beans.value.ObservableValue;
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+import net.dragondelve.downfall.realm.Material;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Adapter that keeps a DenseStockpile and the ObservableList of Materials that the UI binds to, like Actor.getStockpile(), in sync.
+ * Edits of the amounts in the list are written to the dense stockpile immediately, structural changes of the list replace the content of the dense stockpile.
+ * Changes made to the dense stockpile are only pushed into the list by refresh(), which updates the amount properties of the existing entries in place
+ * and appends materials that were not stocked before with a single change of the list, so a table showing the list does not have to rebuild its rows.
+ * <p>
+ * Several entries of the same material are summed up in the dense stockpile and merged into the first one on the next refresh.
+ * Actor.getDenseStockpile() keeps one adapter per actor for as long as its stockpile list, which the simulation reads and writes through.
+ * Must be used on the JavaFX Application Thread if the list is displayed. Call dispose() once the adapter is no longer needed, it listens to the list and its entries.
+ */
+public final class ObservableStockpile {
+    private final DenseStockpile stockpile;
+    private final ObservableList<Material> materials;
+    private final ListChangeListener<Material> listListener = change -> onListChanged();
+
+    private Row[] rows = new Row[0];
+    private final List<Row> boundRows = new ArrayList<>();
+    private boolean hasDuplicates = false;
+    private boolean updating = false;
+
+    /**
+     * Reads the given list into the dense stockpile and starts listening to it.
+     *
+     * @param stockpile dense stockpile that holds the amounts.
+     * @param materials list of materials that is displayed.
+     */
+    public ObservableStockpile(DenseStockpile stockpile, ObservableList<Material> materials) {
+        this.stockpile = stockpile;
+        this.materials = materials;
+        stockpile.read(materials);
+        bind();
+        materials.addListener(listListener);
+    }
+
+    /**
+     * Pushes the amounts of the dense stockpile into the list. Existing entries are updated in place and materials that are stocked
+     * but have no entry yet are appended with a single change. If the list contains several entries of the same material it is replaced
+     * with a single change instead, keeping the first entry of every material.
+     * Amounts that do not fit into an Integer are capped.
+     */
+    public void refresh() {
+        boolean restructured = false;
+        updating = true;
+        try {
+            if (hasDuplicates) {
+                materials.setAll(mergedMaterials());
+                restructured = true;
+            } else {
+                for (Row row : boundRows)
+                    row.material.setAmount(toAmount(stockpile.get(row.index)));
+                List<Material> added = new ArrayList<>();
+                for (int index = 0; index < stockpile.getMaterials().size(); index++) {
+                    if ((index >= rows.length || rows[index] == null) && stockpile.get(index) != 0)
+                        added.add(new Material(stockpile.getMaterials().idAt(index), toAmount(stockpile.get(index))));
+                }
+                if (!added.isEmpty()) {
+                    materials.addAll(added);
+                    restructured = true;
+                }
+            }
+        } finally {
+            updating = false;
+        }
+        if (restructured)
+            bind();
+    }
+
+    /**
+     * Lightweight accessor method.
+     *
+     * @return dense stockpile that holds the amounts.
+     */
+    public DenseStockpile getStockpile() {
+        return stockpile;
+    }
+
+    /**
+     * Lightweight accessor method.
+     *
+     * @return list of materials that is kept in sync with the dense stockpile.
+     */
+    public ObservableList<Material> getMaterials() {
+        return materials;
+    }
+
+    /**
+     * Stops listening to the list and its entries. Neither of them is changed.
+     */
+    public void dispose() {
+        materials.removeListener(listListener);
+        unbind();
+    }
+
+    /**
+     * Reads the list again after entries were added, removed or replaced by someone else.
+     */
+    private void onListChanged() {
+        if (updating)
+            return;
+        stockpile.read(materials);
+        bind();
+    }
+
+    /**
+     * Listens to every entry of the list and records whether several entries share a material.
+     */
+    private void bind() {
+        unbind();
+        rows = new Row[stockpile.getMaterials().size()];
+        hasDuplicates = false;
+        for (Material material : materials) {
+            int index = stockpile.getMaterials().add(material.getTemplateId());
+            if (index >= rows.length)
+                rows = Arrays.copyOf(rows, stockpile.getMaterials().size());
+            Row row = new Row(index, material);
+            boundRows.add(row);
+            if (rows[index] == null)
+                rows[index] = row;
+            else
+                hasDuplicates = true;
+        }
+    }
+
+    /**
+     * Stops listening to all entries of the list.
+     */
+    private void unbind() {
+        boundRows.forEach(Row::detach);
+        boundRows.clear();
+    }
+
+    /**
+     * @return the first entry of every material in list order with the amount of the dense stockpile, followed by stocked materials that had no entry.
+     */
+    private List<Material> mergedMaterials() {
+        boolean[] written = new boolean[stockpile.getMaterials().size()];
+        List<Material> merged = new ArrayList<>(materials.size());
+        for (Material material : materials) {
+            int index = stockpile.getMaterials().indexOf(material.getTemplateId());
+            if (!written[index]) {
+                merged.add(new Material(material.getTemplateId(), toAmount(stockpile.get(index))));
+                written[index] = true;
+            }
+        }
+        for (int index = 0; index < written.length; index++) {
+            if (!written[index] && stockpile.get(index) != 0)
+                merged.add(new Material(stockpile.getMaterials().idAt(index), toAmount(stockpile.get(index))));
+        }
+        return merged;
+    }
+
+    /**
+     * @param amount amount of a material.
+     * @return amount capped to the range of an Integer.
+     */
+    private static int toAmount(long amount) {
+        return (int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, amount));
+    }
+
+    /**
+     * Entry of the list that is bound to a material of the dense stockpile.
+     */
+    private final class Row implements ChangeListener<Number>, InvalidationListener {
+        private final int index;
+        private final Material material;
+
+        /**
+         * Starts listening to the amount and the template id of an entry.
+         *
+         * @param index    index of the material in the dense stockpile.
+         * @param material entry of the list.
+         */
+        private Row(int index, Material material) {
+            this.index = index;
+            this.material = material;
+            material.amountProperty().addListener((ChangeListener<Number>) this);
+            material.idProperty().addListener((InvalidationListener) this);
+        }
+
+        /**
+         * Stops listening to the entry.
+         */
+        private void detach() {
+            material.amountProperty().removeListener((ChangeListener<Number>) this);
+            material.idProperty().removeListener((InvalidationListener) this);
+        }
+
+        /**
+         * Adds the difference of an edited amount to the dense stockpile, so that several entries of the same material stay summed up.
+         */
+        @Override
+        public void changed(ObservableValue<? extends Number> observable, Number oldValue, Number newValue) {
+            if (!updating)
+                stockpile.add(index, newValue.longValue() - oldValue.longValue());
+        }
+
+        /**
+         * Reads the list again once the template id of an entry has been changed.
+         */
+        @Override
+        public void invalidated(Observable observable) {
+            onListChanged();
+        }
+    }
+}
@@ -0,0 +1,115 @@
+// Copyright 2023 Prokhor Kalinin
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package net.dragondelve.downfall.simulation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Orders to buy and to sell a single material that were submitted to a TradeMarket during the current turn.
+ * Orders are added to lock-free queues, so any number of threads can submit orders at the same time without blocking each other.
+ */
+public final class OrderBook {
+    private final int materialTemplateId;
+    private final long defaultBuyPrice;
+    private final long defaultSellPrice;
+    private final Queue<TradeOrder> bids = new ConcurrentLinkedQueue<>();
+    private final Queue<TradeOrder> asks = new ConcurrentLinkedQueue<>();
+
+    /**
+     * @param materialTemplateId id of the material template that is traded.
+     * @param defaultBuyPrice    limit price of orders to buy that were submitted without one.
+     * @param defaultSellPrice   limit price of orders to sell that were submitted without one.
+     */
+    OrderBook(int materialTemplateId, long defaultBuyPrice, long defaultSellPrice) {
+        this.materialTemplateId = materialTemplateId;
+        this.defaultBuyPrice = defaultBuyPrice;
+        this.defaultSellPrice = defaultSellPrice;
+    }
+
+    /**
+     * Lightweight accessor method.
+     *
+     * @return id of the material template that is traded.
+     */
+    public int getMaterialTemplateId() {
+        return materialTemplateId;
+    }
+
+    /**
+     * Lightweight accessor method.
+     *
+     * @return limit price of orders to buy that were submitted without one, the default import price of the material.
+     */
+    public long getDefaultBuyPrice() {
+        return defaultBuyPrice;
+    }
+
+    /**
+     * Lightweight accessor method.
+     *
+     * @return limit price of orders to sell that were submitted without one, the default export price of the material.
+     */
+    public long getDefaultSellPrice() {
+        return defaultSellPrice;
+    }
+
+    /**
+     * @return true if no orders are waiting to be matched.
+     */
+    public boolean isEmpty() {
+        return bids.isEmpty() && asks.isEmpty();
+    }
+
+    /**
+     * Adds an order to the bids or the asks. Safe to call from any thread.
+     *
+     * @param order order for the material of this book.
+     */
+    void add(TradeOrder order) {
+        (order.isBuy() ? bids : asks).add(order);
+    }
+
+    /**
+     * Removes all orders to buy.
+     *
+     * @return orders to buy in no particular order.
+     */
+    TradeOrder[] drainBids() {
+        return drain(bids);
+    }
+
+    /**
+     * Removes all orders to sell.
+     *
+     * @return orders to sell in no particular order.
+     */
+    TradeOrder[] drainAsks() {
+        return drain(asks);
+    }
+
+    /**
+     * @param orders queue of orders.
+     * @return all orders that were removed from the queue.
+     */
+    private static TradeOrder[] drain(Queue<TradeOrder> orders) {
+        List<TradeOrder> drained = new ArrayList<>();
+        TradeOrder order;
+        while ((order = orders.poll()) != null)
+            drained.add(order);
+        return drained.toArray(new TradeOrder[0]);
+    }
+}
@@ -0,0 +1,85 @@
+// Copyright 2023 Prokhor Kalinin
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package net.dragondelve.downfall.simulation;
+
+import java.util.Arrays;
+
+/**
+ * Prices found by a PriceSolver, by material index, together with how the iteration went.
+ */
+public final class PriceSolution {
+    private final double[] prices;
+    private final int iterations;
+    private final int unconvergedCount;
+
+    /**
+     * @param prices           price of every material by material index.
+     * @param iterations       largest number of iterations any material needed.
+     * @param unconvergedCount number of materials whose excess demand was still above the tolerance after the last iteration.
+     */
+    PriceSolution(double[] prices, int iterations, int unconvergedCount) {
+        this.prices = prices;
+        this.iterations = iterations;
+        this.unconvergedCount = unconvergedCount;
+    }
+
+    /**
+     * @param index dense index of a material.
+     * @return price of the material.
+     */
+    public double getPrice(int index) {
+        return prices[index];
+    }
+
+    /**
+     * @return price of every material by material index. A copy.
+     */
+    public double[] getPrices() {
+        return Arrays.copyOf(prices, prices.length);
+    }
+
+    /**
+     * Lightweight accessor method.
+     *
+     * @return number of materials the prices were solved for.
+     */
+    public int getMaterialCount() {
+        return prices.length;
+    }
+
+    /**
+     * Lightweight accessor method.
+     *
+     * @return largest number of iterations any material needed.
+     */
+    public int getIterations() {
+        return iterations;
+    }
+
+    /**
+     * Lightweight accessor method.
+     *
+     * @return number of materials whose excess demand was still above the tolerance after the last iteration.
+     */
+    public int getUnconvergedCount() {
+        return unconvergedCount;
+    }
+
+    /**
+     * @return true if the excess demand of every material is within the tolerance, or its price is held at a price limit.
+     */
+    public boolean isConverged() {
+        return unconvergedCount == 0;
+    }
+}
@@ -0,0 +1,394 @@
+// Copyright 2023 Prokhor Kalinin
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package net.dragondelve.downfall.simulation;
+
+import net.dragondelve.downfall.realm.template.VisualMaterialTemplate;
+import net.dragondelve.downfall.util.RulesView;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Finds the prices at which the supply and the demand of every material across all actors balance out.
+ * <p>
+ * Supply and demand are measured once at reference prices, usually the default export prices, and respond to the price with constant elasticities:
+ * at price p the supply is S * (p / p0)^supplyElasticity and the demand is D * (p / p0)^-demandElasticity. Prices are found by tatonnement:
+ * every iteration moves the logarithm of a price by the damped logarithm of the ratio of demand to supply, limited to a maximum step,
+ * until that ratio is within the tolerance or the iteration limit is reached. Prices never leave the range between the minimum and the maximum price,
+ * a material that is demanded but not supplied at all rises to the maximum price and one that is supplied but not demanded falls to the minimum price.
+ * <p>
+ * Materials do not affect each other's prices, so they are solved in parallel ranges on a ForkJoinPool. Supply and demand of several actors are summed up
+ * per range in the order of the actors. Everything works on primitive arrays indexed by material index and nothing is allocated per iteration.
+ */
+public final class PriceSolver {
+    private static final int RANGE_SIZE = 512;
+
+    private final ForkJoinPool pool;
+    private double supplyElasticity = 1.0;
+    private double demandElasticity = 1.0;
+    private double damping = 0.5;
+    private double maxStep = 0.5;
+    private double tolerance = 1e-3;
+    private int maxIterations = 100;
+    private double minPrice = 0.01;
+    private double maxPrice = 1e9;
+
+    /**
+     * Solves prices on the common ForkJoinPool.
+     */
+    public PriceSolver() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param pool pool the materials are solved on.
+     */
+    public PriceSolver(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Solves the prices of a turn of a world. The supply of a material is what all actors produced, its demand is what all actors consumed
+     * plus the inputs that operating buildings lacked.
+     *
+     * @param report          outcome of a turn of a world.
+     * @param referencePrices price of every material at which the turn was run, by material index of the engine of the turn.
+     * @return prices that balance supply and demand.
+     */
+    public PriceSolution solve(WorldTurnReport report, double[] referencePrices) {
+        ProductionEngine engine = report.getEngine();
+        long[] stalled = new long[engine.getBuildingCount()];
+        pool.invoke(new RangeTask(0, stalled.length, RANGE_SIZE, (from, to) -> {
+            for (int position = 0; position < report.getActorCount(); position++) {
+                ProductionReport actorReport = report.getReport(position);
+                int[] operating = actorReport.getOperatingArray();
+                int[] running = actorReport.getRunningArray();
+                for (int building = from; building < to; building++)
+                    stalled[building] += operating[building] - running[building];
+            }
+        }));
+
+        long[] demand = report.getConsumedArray().clone();
+        for (int building = 0; building < stalled.length; building++) {
+            if (stalled[building] == 0)
+                continue;
+            for (int input = 0; input < engine.getInputCount(building); input++)
+                demand[engine.getInputMaterial(building, input)] += stalled[building] * engine.getInputAmount(building, input);
+        }
+        return solve(report.getProducedArray(), demand, referencePrices);
+    }
+
+    /**
+     * Solves prices from the supply and the demand of every actor.
+     *
+     * @param supply          amount every actor supplies by actor and material index.
+     * @param demand          amount every actor demands by actor and material index.
+     * @param referencePrices price of every material at which supply and demand were measured, by material index.
+     * @return prices that balance supply and demand.
+     */
+    public PriceSolution solve(long[][] supply, long[][] demand, double[] referencePrices) {
+        return solve(aggregate(supply, referencePrices.length), aggregate(demand, referencePrices.length), referencePrices);
+    }
+
+    /**
+     * Solves prices from the total supply and demand of every material.
+     *
+     * @param supply          amount supplied by material index.
+     * @param demand          amount demanded by material index.
+     * @param referencePrices price of every material at which supply and demand were measured, by material index. Non-positive prices are taken as 1.
+     * @return prices that balance supply and demand.
+     * @throws IllegalArgumentException if the arrays are not equally long.
+     * @throws IllegalStateException    if supply and demand elasticity are both 0, in which case prices do not affect supply or demand.
+     */
+    public PriceSolution solve(long[] supply, long[] demand, double[] referencePrices) {
+        if (supplyElasticity + demandElasticity == 0)
+            throw new IllegalStateException("Supply and demand elasticity must not both be 0");
+        if (supply.length != referencePrices.length || demand.length != referencePrices.length)
+            throw new IllegalArgumentException("Supply, demand and reference prices have to be indexed by the same materials");
+        double[] prices = new double[referencePrices.length];
+        AtomicInteger iterations = new AtomicInteger();
+        AtomicInteger unconverged = new AtomicInteger();
+        pool.invoke(new RangeTask(0, prices.length, RANGE_SIZE, (from, to) -> {
+            int rangeIterations = 0;
+            int rangeUnconverged = 0;
+            for (int material = from; material < to; material++) {
+                int materialIterations = solveMaterial(material, supply[material], demand[material], referencePrices[material], prices);
+                if (materialIterations < 0) {
+                    rangeUnconverged++;
+                    materialIterations = maxIterations;
+                }
+                rangeIterations = Math.max(rangeIterations, materialIterations);
+            }
+            iterations.accumulateAndGet(rangeIterations, Math::max);
+            unconverged.addAndGet(rangeUnconverged);
+        }));
+        return new PriceSolution(prices, iterations.get(), unconverged.get());
+    }
+
+    /**
+     * Sums up the amounts of all actors per material, in parallel ranges of materials and in the order of the actors.
+     *
+     * @param perActor      amount by actor and material index. Arrays of single actors may be shorter than the number of materials.
+     * @param materialCount number of materials.
+     * @return total amount by material index.
+     */
+    public long[] aggregate(long[][] perActor, int materialCount) {
+        long[] total = new long[materialCount];
+        pool.invoke(new RangeTask(0, materialCount, RANGE_SIZE, (from, to) -> {
+            for (long[] amounts : perActor) {
+                int end = Math.min(to, amounts.length);
+                for (int material = from; material < end; material++)
+                    total[material] += amounts[material];
+            }
+        }));
+        return total;
+    }
+
+    /**
+     * Reads the default export prices of the material templates of an engine. The first template of every id provides its price,
+     * materials without a price get a reference price of 1.
+     *
+     * @param rules  rules the engine was compiled from.
+     * @param engine engine whose material indices are used.
+     * @return reference price of every material by material index.
+     */
+    public static double[] referencePrices(RulesView rules, ProductionEngine engine) {
+        double[] prices = new double[engine.getMaterialCount()];
+        for (VisualMaterialTemplate template : rules.getMaterialTemplates()) {
+            int material = engine.getMaterialIndex(template.getId());
+            if (material >= 0 && prices[material] == 0)
+                prices[material] = template.getDefExportPrice() > 0 ? template.getDefExportPrice() : 1;
+        }
+        for (int material = 0; material < prices.length; material++) {
+            if (prices[material] == 0)
+                prices[material] = 1;
+        }
+        return prices;
+    }
+
+    /**
+     * Iterates the price of a single material.
+     *
+     * @param material       dense index of the material.
+     * @param supply         amount supplied at the reference price.
+     * @param demand         amount demanded at the reference price.
+     * @param referencePrice price at which supply and demand were measured.
+     * @param prices         price of every material by material index, the price of the material is written to it.
+     * @return number of iterations needed, or -1 if the excess demand was still above the tolerance after the last iteration.
+     */
+    private int solveMaterial(int material, long supply, long demand, double referencePrice, double[] prices) {
+        double basePrice = referencePrice > 0 ? referencePrice : 1;
+        double lowest = Math.log(minPrice / basePrice);
+        double highest = Math.log(maxPrice / basePrice);
+        double elasticity = supplyElasticity + demandElasticity;
+        double gap;
+        if (supply == 0 && demand == 0)
+            gap = 0;
+        else if (supply == 0)
+            gap = Double.POSITIVE_INFINITY;
+        else if (demand == 0)
+            gap = Double.NEGATIVE_INFINITY;
+        else
+            gap = Math.log((double) demand / supply);
+
+        double logPrice = Math.min(Math.max(0, lowest), highest);
+        int iteration = 0;
+        boolean converged = false;
+        while (iteration < maxIterations) {
+            double excess = gap - elasticity * logPrice;
+            if (Math.abs(excess) <= tolerance) {
+                converged = true;
+                break;
+            }
+            double step = Math.max(-maxStep, Math.min(maxStep, damping * excess / elasticity));
+            double next = Math.min(Math.max(logPrice + step, lowest), highest);
+            if (next == logPrice) {
+                converged = true;
+                break;
+            }
+            logPrice = next;
+            iteration++;
+        }
+        prices[material] = basePrice * Math.exp(logPrice);
+        return converged ? iteration : -1;
+    }
+
+    /**
+     * Lightweight accessor method.
+     *
+     * @return how strongly supply grows with the price.
+     */
+    public double getSupplyElasticity() {
+        return supplyElasticity;
+    }
+
+    /**
+     * Lightweight mutator method.
+     *
+     * @param supplyElasticity how strongly supply grows with the price. Supply and demand elasticity must not both be 0.
+     * @throws IllegalArgumentException if the elasticity is negative.
+     */
+    public void setSupplyElasticity(double supplyElasticity) {
+        if (supplyElasticity < 0)
+            throw new IllegalArgumentException("Supply elasticity must not be negative: " + supplyElasticity);
+        this.supplyElasticity = supplyElasticity;
+    }
+
+    /**
+     * Lightweight accessor method.
+     *
+     * @return how strongly demand falls with the price.
+     */
+    public double getDemandElasticity() {
+        return demandElasticity;
+    }
+
+    /**
+     * Lightweight mutator method.
+     *
+     * @param demandElasticity how strongly demand falls with the price. Supply and demand elasticity must not both be 0.
+     * @throws IllegalArgumentException if the elasticity is negative.
+     */
+    public void setDemandElasticity(double demandElasticity) {
+        if (demandElasticity < 0)
+            throw new IllegalArgumentException("Demand elasticity must not be negative: " + demandElasticity);
+        this.demandElasticity = demandElasticity;
+    }
+
+    /**
+     * Lightweight accessor method.
+     *
+     * @return share of the remaining excess demand that every iteration closes.
+     */
+    public double getDamping() {
+        return damping;
+    }
+
+    /**
+     * Lightweight mutator method.
+     *
+     * @param damping share of the remaining excess demand that every iteration closes, greater than 0 and at most 1.
+     * @throws IllegalArgumentException if the damping is out of range.
+     */
+    public void setDamping(double damping) {
+        if (!(damping > 0 && damping <= 1))
+            throw new IllegalArgumentException("Damping must be greater than 0 and at most 1: " + damping);
+        this.damping = damping;
+    }
+
+    /**
+     * Lightweight accessor method.
+     *
+     * @return largest change of the logarithm of a price in a single iteration.
+     */
+    public double getMaxStep() {
+        return maxStep;
+    }
+
+    /**
+     * Lightweight mutator method.
+     *
+     * @param maxStep largest change of the logarithm of a price in a single iteration, greater than 0.
+     * @throws IllegalArgumentException if the step is not greater than 0.
+     */
+    public void setMaxStep(double maxStep) {
+        if (!(maxStep > 0))
+            throw new IllegalArgumentException("Max step must be greater than 0: " + maxStep);
+        this.maxStep = maxStep;
+    }
+
+    /**
+     * Lightweight accessor method.
+     *
+     * @return largest logarithm of the ratio of demand to supply at which a material counts as balanced.
+     */
+    public double getTolerance() {
+        return tolerance;
+    }
+
+    /**
+     * Lightweight mutator method.
+     *
+     * @param tolerance largest logarithm of the ratio of demand to supply at which a material counts as balanced, greater than 0.
+     * @throws IllegalArgumentException if the tolerance is not greater than 0.
+     */
+    public void setTolerance(double tolerance) {
+        if (!(tolerance > 0))
+            throw new IllegalArgumentException("Tolerance must be greater than 0: " + tolerance);
+        this.tolerance = tolerance;
+    }
+
+    /**
+     * Lightweight accessor method.
+     *
+     * @return number of iterations after which a material is given up on.
+     */
+    public int getMaxIterations() {
+        return maxIterations;
+    }
+
+    /**
+     * Lightweight mutator method.
+     *
+     * @param maxIterations number of iterations after which a material is given up on, at least 1.
+     * @throws IllegalArgumentException if the number of iterations is less than 1.
+     */
+    public void setMaxIterations(int maxIterations) {
+        if (maxIterations < 1)
+            throw new IllegalArgumentException("Max iterations must be at least 1: " + maxIterations);
+        this.maxIterations = maxIterations;
+    }
+
+    /**
+     * Lightweight accessor method.
+     *
+     * @return lowest price a material can fall to.
+     */
+    public double getMinPrice() {
+        return minPrice;
+    }
+
+    /**
+     * Lightweight mutator method.
+     *
+     * @param minPrice lowest price a material can fall to, greater than 0 and less than the max price.
+     * @throws IllegalArgumentException if the price is out of range.
+     */
+    public void setMinPrice(double minPrice) {
+        if (!(minPrice > 0 && minPrice < maxPrice))
+            throw new IllegalArgumentException("Min price must be greater than 0 and less than the max price " + maxPrice + ": " + minPrice);
+        this.minPrice = minPrice;
+    }
+
+    /**
+     * Lightweight accessor method.
+     *
+     * @return highest price a material can rise to.
+     */
+    public double getMaxPrice() {
+        return maxPrice;
+    }
+
+    /**
+     * Lightweight mutator method.
+     *
+     * @param maxPrice highest price a material can rise to, greater than the min price.
+     * @throws IllegalArgumentException if the price is not greater than the min price.
+     */
+    public void setMaxPrice(double maxPrice) {
+        if (!(maxPrice > minPrice))
+            throw new IllegalArgumentException("Max price must be greater than the min price " + minPrice + ": " + maxPrice);
+        this.maxPrice = maxPrice;
+    }
+}
@@ -0,0 +1,96 @@
+// Copyright 2023 Prokhor Kalinin
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package net.dragondelve.downfall.simulation;
+
+import java.util.Arrays;
+
+/**
+ * Serves building templates one after another in a priority order. Every template runs as many of its operating buildings as the inputs left by the templates
+ * before it allow, so templates at the end of the order starve first. The default order is the order of the building templates in the rules.
+ * Keeps a buffer of the remaining stock between turns, so an instance should only be used by one engine at a time.
+ */
+public final class PriorityAllocationPolicy implements AllocationPolicy {
+    private final int[] order;
+    private long[] remaining = new long[0];
+
+    /**
+     * Default constructor. Serves building templates in the order of the rules.
+     */
+    public PriorityAllocationPolicy() {
+        this(null);
+    }
+
+    /**
+     * @param order building indices in the order they are served, templates that are not part of it are served afterwards in the order of the rules.
+     *              null to serve all templates in the order of the rules.
+     */
+    public PriorityAllocationPolicy(int[] order) {
+        this.order = order == null ? null : order.clone();
+    }
+
+    @Override
+    public void allocate(ProductionEngine engine, long[] stock, int[] operating, int[] running) {
+        allocate(engine, stock, operating, running, order);
+    }
+
+    /**
+     * Serves building templates in the given order instead of the order of this policy, used by policies that decide on the order every turn.
+     *
+     * @param engine    engine that runs the turn, provides the inputs and outputs of every template.
+     * @param stock     amount of each material by material index before anything is consumed.
+     * @param operating number of operating buildings of each template by building index.
+     * @param running   number of buildings of each template that run by building index. Overwritten.
+     * @param order     building indices in the order they are served, templates that are not part of it are served afterwards in the order of the rules.
+     *                  null to serve all templates in the order of the rules.
+     */
+    void allocate(ProductionEngine engine, long[] stock, int[] operating, int[] running, int[] order) {
+        if (remaining.length < engine.getMaterialCount())
+            remaining = new long[engine.getMaterialCount()];
+        for (int material = 0; material < engine.getMaterialCount(); material++)
+            remaining[material] = Math.max(stock[material], 0);
+
+        if (order == null) {
+            for (int building = 0; building < engine.getBuildingCount(); building++)
+                running[building] = serve(engine, building, operating[building]);
+            return;
+        }
+        Arrays.fill(running, 0, engine.getBuildingCount(), -1);
+        for (int building : order) {
+            if (building < engine.getBuildingCount() && running[building] < 0)
+                running[building] = serve(engine, building, operating[building]);
+        }
+        for (int building = 0; building < engine.getBuildingCount(); building++) {
+            if (running[building] < 0)
+                running[building] = serve(engine, building, operating[building]);
+        }
+    }
+
+    /**
+     * Runs as many buildings of a template as the remaining inputs allow and takes their inputs from the remaining stock.
+     *
+     * @param engine    engine that runs the turn.
+     * @param building  index of the building template.
+     * @param operating number of operating buildings of the template.
+     * @return number of buildings that run.
+     */
+    private int serve(ProductionEngine engine, int building, int operating) {
+        long runs = operating;
+        for (int input = 0; input < engine.getInputCount(building) && runs > 0; input++)
+            runs = Math.min(runs, remaining[engine.getInputMaterial(building, input)] / engine.getInputAmount(building, input));
+        for (int input = 0; input < engine.getInputCount(building) && runs > 0; input++)
+            remaining[engine.getInputMaterial(building, input)] -= runs * engine.getInputAmount(building, input);
+        return (int) runs;
+    }
+}
@@ -0,0 +1,420 @@
+// Copyright 2023 Prokhor Kalinin
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package net.dragondelve.downfall.simulation;
+
+import net.dragondelve.downfall.realm.Actor;
+import net.dragondelve.downfall.realm.BuildingCount;
+import net.dragondelve.downfall.realm.Material;
+import net.dragondelve.downfall.realm.template.VisualBuildingTemplate;
+import net.dragondelve.downfall.realm.template.VisualMaterialTemplate;
+import net.dragondelve.downfall.util.DownfallUtil;
+import net.dragondelve.downfall.util.RulesView;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Advances the production of an Actor by one turn. Every operating building consumes the input materials of its template
+ * from the actor's stockpile and produces the output materials of its template into it.
+ * <p>
+ * The engine is compiled from Rules once: every material is given a dense index and the inputs and outputs of every building template
+ * are stored in flat primitive arrays, so a turn only reads the operating building count of each template and then does integer arithmetic per template.
+ * A template only runs as many of its buildings as its inputs allow. How scarce inputs are shared between templates is decided by an AllocationPolicy,
+ * by default templates are served in the order of the rules. Everything produced in a turn only becomes available once all buildings have consumed their inputs,
+ * so the outcome does not depend on the order of the owned buildings.
+ * <p>
+ * Materials and building templates are indexed by a RulesIndex and stockpiles are DenseStockpiles that share its material IdIndex.
+ * Materials and buildings that were appended to the index after the engine was compiled are ignored by it. As stocking unknown materials appends them
+ * to the shared index, engines that share a RulesIndex should only be used by one thread at a time. The only exception is a turn of several actors whose
+ * materials have all been indexed beforehand, in which case one engine can be shared by many threads as long as every thread uses an AllocationPolicy of its own,
+ * which is what WorldTurnExecutor does.
+ * The engine does not observe the rules it was compiled from, it has to be compiled again after the rules have been changed.
+ */
+public final class ProductionEngine {
+    private final IdIndex materials;
+    private final int materialCount;
+    private final IdIndex buildings;
+    private final int buildingCount;
+
+    private final int[] inputStart;
+    private final int[] inputMaterials;
+    private final long[] inputAmounts;
+    private final int[] outputStart;
+    private final int[] outputMaterials;
+    private final long[] outputAmounts;
+
+    private AllocationPolicy allocationPolicy = new PriorityAllocationPolicy();
+
+    /**
+     * Compiles the building templates of the given rules with a new RulesIndex of its own.
+     *
+     * @param rules rules the engine is compiled from.
+     */
+    public ProductionEngine(RulesView rules) {
+        this(rules, new RulesIndex(rules));
+    }
+
+    /**
+     * Compiles the building templates of the given rules. If several templates share an id the first one is used, just like in TemplateRegistry.
+     * Building templates of the index that are not part of the rules neither consume nor produce anything.
+     *
+     * @param rules rules the engine is compiled from.
+     * @param index dense indices of the templates of the rules, usually Configurator.getRulesIndex(). Materials that are only referenced by building templates are appended to it.
+     */
+    public ProductionEngine(RulesView rules, RulesIndex index) {
+        materials = index.getMaterials();
+        buildings = index.getBuildings();
+        for (VisualMaterialTemplate template : rules.getMaterialTemplates())
+            materials.add(template.getId());
+
+        Map<Integer, VisualBuildingTemplate> templatesByIndex = new HashMap<>();
+        for (VisualBuildingTemplate template : rules.getBuildingTemplates())
+            templatesByIndex.putIfAbsent(buildings.add(template.getId()), template);
+        buildingCount = buildings.size();
+
+        List<Map<Integer, Long>> inputs = new ArrayList<>(buildingCount);
+        List<Map<Integer, Long>> outputs = new ArrayList<>(buildingCount);
+        for (int building = 0; building < buildingCount; building++) {
+            VisualBuildingTemplate template = templatesByIndex.get(building);
+            inputs.add(template == null ? Map.of() : mergeMaterials(template.getInputMaterials()));
+            outputs.add(template == null ? Map.of() : mergeMaterials(template.getOutputMaterials()));
+        }
+        materialCount = materials.size();
+
+        inputStart = new int[buildingCount + 1];
+        inputMaterials = new int[inputs.stream().mapToInt(Map::size).sum()];
+        inputAmounts = new long[inputMaterials.length];
+        flatten(inputs, inputStart, inputMaterials, inputAmounts);
+
+        outputStart = new int[buildingCount + 1];
+        outputMaterials = new int[outputs.stream().mapToInt(Map::size).sum()];
+        outputAmounts = new long[outputMaterials.length];
+        flatten(outputs, outputStart, outputMaterials, outputAmounts);
+    }
+
+    /**
+     * Advances the production of an actor by one turn. The engine works on the dense stockpile of the actor and writes the amounts back through its ObservableStockpile,
+     * so existing entries are updated in place and new materials are appended with a single change of the stockpile list.
+     * Should be called on the JavaFX Application Thread if the actor is displayed.
+     *
+     * @param actor actor whose operating buildings produce.
+     * @return report of what was consumed and produced during the turn.
+     */
+    public ProductionReport advanceTurn(Actor actor) {
+        return advanceTurn(actor, allocationPolicy);
+    }
+
+    /**
+     * Advances the production of an actor by one turn with the given allocation policy instead of the one of the engine.
+     * Should be called on the JavaFX Application Thread if the actor is displayed.
+     *
+     * @param actor            actor whose operating buildings produce.
+     * @param allocationPolicy policy that decides how scarce inputs are shared between building templates.
+     * @return report of what was consumed and produced during the turn.
+     */
+    public ProductionReport advanceTurn(Actor actor, AllocationPolicy allocationPolicy) {
+        ObservableStockpile stockpile = actor.getDenseStockpile(materials);
+        ProductionReport report = advanceTurn(stockpile.getStockpile(), actor.getBuildingCounts(), allocationPolicy);
+        stockpile.refresh();
+        return report;
+    }
+
+    /**
+     * Advances the production of a dense stockpile by one turn.
+     *
+     * @param stockpile      stockpile the buildings consume from and produce into. Has to use the material IdIndex of this engine.
+     * @param buildingCounts owned buildings counted by template.
+     * @return report of what was consumed and produced during the turn.
+     * @throws IllegalArgumentException if the stockpile uses another IdIndex.
+     */
+    public ProductionReport advanceTurn(DenseStockpile stockpile, List<BuildingCount> buildingCounts) {
+        return advanceTurn(stockpile, buildingCounts, allocationPolicy);
+    }
+
+    /**
+     * Advances the production of a dense stockpile by one turn with the given allocation policy instead of the one of the engine.
+     *
+     * @param stockpile        stockpile the buildings consume from and produce into. Has to use the material IdIndex of this engine.
+     * @param buildingCounts   owned buildings counted by template.
+     * @param allocationPolicy policy that decides how scarce inputs are shared between building templates.
+     * @return report of what was consumed and produced during the turn.
+     * @throws IllegalArgumentException if the stockpile uses another IdIndex.
+     */
+    public ProductionReport advanceTurn(DenseStockpile stockpile, List<BuildingCount> buildingCounts, AllocationPolicy allocationPolicy) {
+        if (stockpile.getMaterials() != materials)
+            throw new IllegalArgumentException("Stockpile does not use the material index of this engine");
+        int[] operating = countOperatingBuildings(buildingCounts);
+        ProductionReport report = new ProductionReport(this, operating);
+        produce(stockpile.amounts(), operating, report.getConsumedArray(), report.getProducedArray(), report.getRunningArray(), allocationPolicy);
+        return report;
+    }
+
+    /**
+     * Runs one turn of production on dense arrays. The allocation policy decides how many buildings of every template run, then their inputs are consumed
+     * and their outputs are produced. Does not allocate once the allocation policy has sized its buffers.
+     *
+     * @param stock     amount of each material by material index, at least as long as produced. Updated in place.
+     * @param operating number of operating buildings of each template by building index.
+     * @param consumed  amount consumed of each material by material index. Consumption is added to it.
+     * @param produced  amount produced of each material by material index. Production is added to it.
+     * @param running   number of buildings of each template that were supplied with all inputs by building index. Overwritten.
+     */
+    public void produce(long[] stock, int[] operating, long[] consumed, long[] produced, int[] running) {
+        produce(stock, operating, consumed, produced, running, allocationPolicy);
+    }
+
+    /**
+     * Runs one turn of production on dense arrays with the given allocation policy instead of the one of the engine.
+     * Only reads the engine, so threads that use allocation policies of their own can share it.
+     *
+     * @param stock            amount of each material by material index, at least as long as produced. Updated in place.
+     * @param operating        number of operating buildings of each template by building index.
+     * @param consumed         amount consumed of each material by material index. Consumption is added to it.
+     * @param produced         amount produced of each material by material index. Production is added to it.
+     * @param running          number of buildings of each template that were supplied with all inputs by building index. Overwritten.
+     * @param allocationPolicy policy that decides how scarce inputs are shared between building templates.
+     */
+    public void produce(long[] stock, int[] operating, long[] consumed, long[] produced, int[] running, AllocationPolicy allocationPolicy) {
+        allocationPolicy.allocate(this, stock, operating, running);
+        for (int building = 0; building < buildingCount; building++) {
+            long runs = running[building];
+            if (runs == 0)
+                continue;
+            for (int i = inputStart[building]; i < inputStart[building + 1]; i++) {
+                stock[inputMaterials[i]] -= runs * inputAmounts[i];
+                consumed[inputMaterials[i]] += runs * inputAmounts[i];
+            }
+            for (int i = outputStart[building]; i < outputStart[building + 1]; i++)
+                produced[outputMaterials[i]] += runs * outputAmounts[i];
+        }
+        for (int material = 0; material < produced.length; material++)
+            stock[material] += produced[material];
+    }
+
+    /**
+     * Lightweight accessor method.
+     *
+     * @return number of materials known to the engine, which is the length of all arrays indexed by material index.
+     */
+    public int getMaterialCount() {
+        return materialCount;
+    }
+
+    /**
+     * Lightweight accessor method.
+     *
+     * @return number of building templates known to the engine, which is the length of all arrays indexed by building index.
+     */
+    public int getBuildingCount() {
+        return buildingCount;
+    }
+
+    /**
+     * Lightweight accessor method.
+     *
+     * @return policy that decides how scarce inputs are shared between building templates.
+     */
+    public AllocationPolicy getAllocationPolicy() {
+        return allocationPolicy;
+    }
+
+    /**
+     * Lightweight mutator method.
+     *
+     * @param allocationPolicy policy that decides how scarce inputs are shared between building templates.
+     */
+    public void setAllocationPolicy(AllocationPolicy allocationPolicy) {
+        this.allocationPolicy = allocationPolicy;
+    }
+
+    /**
+     * @param building index of a building template.
+     * @return number of different input materials of the template.
+     */
+    public int getInputCount(int building) {
+        return inputStart[building + 1] - inputStart[building];
+    }
+
+    /**
+     * @param building index of a building template.
+     * @param input    position of the input among the inputs of the template.
+     * @return material index of the input.
+     */
+    public int getInputMaterial(int building, int input) {
+        return inputMaterials[inputStart[building] + input];
+    }
+
+    /**
+     * @param building index of a building template.
+     * @param input    position of the input among the inputs of the template.
+     * @return amount of the input consumed by one building per turn, always positive.
+     */
+    public long getInputAmount(int building, int input) {
+        return inputAmounts[inputStart[building] + input];
+    }
+
+    /**
+     * @param building index of a building template.
+     * @return number of different output materials of the template.
+     */
+    public int getOutputCount(int building) {
+        return outputStart[building + 1] - outputStart[building];
+    }
+
+    /**
+     * @param building index of a building template.
+     * @param output   position of the output among the outputs of the template.
+     * @return material index of the output.
+     */
+    public int getOutputMaterial(int building, int output) {
+        return outputMaterials[outputStart[building] + output];
+    }
+
+    /**
+     * @param building index of a building template.
+     * @param output   position of the output among the outputs of the template.
+     * @return amount of the output produced by one building per turn, always positive.
+     */
+    public long getOutputAmount(int building, int output) {
+        return outputAmounts[outputStart[building] + output];
+    }
+
+    /**
+     * Values one building of a template on the market: its outputs are sold at the export prices and its inputs are bought at the import prices.
+     * MarketValuation and ProfitAllocationPolicy both value templates this way.
+     *
+     * @param building     index of a building template.
+     * @param exportPrices price a material is sold at by material index, at least getMaterialCount() long.
+     * @param importPrices price a material is bought at by material index, at least getMaterialCount() long.
+     * @return value of the outputs of one building minus the value of its inputs.
+     */
+    public long getProfit(int building, long[] exportPrices, long[] importPrices) {
+        long profit = 0;
+        for (int output = outputStart[building]; output < outputStart[building + 1]; output++)
+            profit += outputAmounts[output] * exportPrices[outputMaterials[output]];
+        for (int input = inputStart[building]; input < inputStart[building + 1]; input++)
+            profit -= inputAmounts[input] * importPrices[inputMaterials[input]];
+        return profit;
+    }
+
+    /**
+     * Lightweight accessor method.
+     *
+     * @return index of the material template ids that DenseStockpiles used with this engine have to share.
+     */
+    public IdIndex getMaterials() {
+        return materials;
+    }
+
+    /**
+     * @param templateId id of a material template.
+     * @return dense index of the material or -1 if it is not known to the engine.
+     */
+    public int getMaterialIndex(Integer templateId) {
+        int index = materials.indexOf(templateId);
+        return index < materialCount ? index : -1;
+    }
+
+    /**
+     * @param index dense index of a material.
+     * @return id of the material template.
+     */
+    public int getMaterialId(int index) {
+        if (index >= materialCount)
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + materialCount);
+        return materials.idAt(index);
+    }
+
+    /**
+     * @param templateId id of a building template.
+     * @return dense index of the building template or -1 if it is not known to the engine.
+     */
+    public int getBuildingIndex(Integer templateId) {
+        int index = buildings.indexOf(templateId);
+        return index < buildingCount ? index : -1;
+    }
+
+    /**
+     * @param index dense index of a building template.
+     * @return id of the building template.
+     */
+    public int getBuildingId(int index) {
+        if (index >= buildingCount)
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + buildingCount);
+        return buildings.idAt(index);
+    }
+
+    /**
+     * Counts the operating buildings of every template. Buildings of templates unknown to the engine are ignored.
+     *
+     * @param buildingCounts owned buildings counted by template.
+     * @return number of operating buildings by building index.
+     */
+    public int[] countOperatingBuildings(List<BuildingCount> buildingCounts) {
+        int[] operating = new int[buildingCount];
+        int unknown = 0;
+        for (BuildingCount buildingCount : buildingCounts) {
+            int index = getBuildingIndex(buildingCount.getId());
+            if (index >= 0)
+                operating[index] += buildingCount.getOperating();
+            else
+                unknown += buildingCount.getOperating();
+        }
+        if (unknown > 0)
+            Logger.getLogger(DownfallUtil.DEFAULT_LOGGER).log(Level.WARNING, unknown + " operating buildings refer to unknown building templates and were skipped");
+        return operating;
+    }
+
+    /**
+     * Sums up materials of the same template, indexing materials that are not known yet, and drops non-positive amounts.
+     *
+     * @param templateMaterials materials of a building template.
+     * @return amount of each material by material index.
+     */
+    private Map<Integer, Long> mergeMaterials(List<Material> templateMaterials) {
+        Map<Integer, Long> merged = new LinkedHashMap<>();
+        for (Material material : templateMaterials) {
+            if (material.getAmount() > 0)
+                merged.merge(materials.add(material.getTemplateId()), (long) material.getAmount(), Long::sum);
+        }
+        return merged;
+    }
+
+    /**
+     * Stores the materials of all building templates in flat arrays, the materials of building b are stored from start[b] to start[b + 1].
+     *
+     * @param perBuilding amount of each material by material index for every building template.
+     * @param start       offsets of the materials of every building template, one longer than the number of building templates.
+     * @param materials   material indices.
+     * @param amounts     material amounts.
+     */
+    private static void flatten(List<Map<Integer, Long>> perBuilding, int[] start, int[] materials, long[] amounts) {
+        int position = 0;
+        for (int building = 0; building < perBuilding.size(); building++) {
+            start[building] = position;
+            for (Map.Entry<Integer, Long> entry : perBuilding.get(building).entrySet()) {
+                materials[position] = entry.getKey();
+                amounts[position] = entry.getValue();
+                position++;
+            }
+        }
+        start[perBuilding.size()] = position;
+    }
+}
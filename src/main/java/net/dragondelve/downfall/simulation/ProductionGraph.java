@@ -0,0 +1,450 @@
+// Copyright 2023 Prokhor Kalinin
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package net.dragondelve.downfall.simulation;
+
+import javafx.collections.ListChangeListener;
+import net.dragondelve.downfall.realm.Material;
+import net.dragondelve.downfall.realm.template.VisualBuildingTemplate;
+import net.dragondelve.downfall.util.RulesView;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Dependency graph of the supply chain formed by the building templates of a ruleset. Every building template consumes its input materials
+ * and produces its output materials, so a building depends on every building that produces one of its inputs.
+ * <p>
+ * Materials and building templates are identified by their dense indices in a RulesIndex. The graph keeps reverse indexes of the producers
+ * and consumers of every material, orders the building templates topologically and detects production cycles.
+ * The transitive closures of materials, every material a material can be made from and every material it can be made into, are computed on demand and cached.
+ * <p>
+ * The graph listens to the list of building templates of the rules and to the input and output lists of every template, so edits made in the
+ * buildings editor are picked up as they happen. A change to a template only discards the cached closures it can affect.
+ * If several templates share an id the first one in the list is used, just like in TemplateRegistry.
+ * Must be used on the JavaFX Application Thread while the rules are being edited. Call dispose() once the graph is no longer needed.
+ */
+public final class ProductionGraph {
+    private final RulesView rules;
+    private final RulesIndex index;
+
+    private final List<VisualBuildingTemplate> owners = new ArrayList<>();
+    private final List<BitSet> inputs = new ArrayList<>();
+    private final List<BitSet> outputs = new ArrayList<>();
+    private final List<BitSet> producers = new ArrayList<>();
+    private final List<BitSet> consumers = new ArrayList<>();
+    private final List<BitSet> upstream = new ArrayList<>();
+    private final List<BitSet> downstream = new ArrayList<>();
+
+    private final Map<VisualBuildingTemplate, ListChangeListener<Material>> templateListeners = new IdentityHashMap<>();
+    private final ListChangeListener<VisualBuildingTemplate> buildingTemplateListener = this::onBuildingTemplatesChanged;
+
+    private int[] topologicalOrder;
+    private List<int[]> cycles;
+
+    /**
+     * Builds the graph of the building templates of the given rules and starts listening to them.
+     *
+     * @param rules rules whose building templates form the graph.
+     * @param index dense indices of the templates of the rules, usually Configurator.getRulesIndex(). Templates and materials that are not indexed yet are appended to it.
+     */
+    public ProductionGraph(RulesView rules, RulesIndex index) {
+        this.rules = rules;
+        this.index = index;
+        rules.getBuildingTemplates().forEach(this::attach);
+        rules.getBuildingTemplates().addListener(buildingTemplateListener);
+    }
+
+    /**
+     * Lightweight accessor method.
+     *
+     * @return dense indices of the materials and building templates of the graph.
+     */
+    public RulesIndex getIndex() {
+        return index;
+    }
+
+    /**
+     * @param material index of a material.
+     * @return indices of all building templates that produce the material in ascending order.
+     */
+    public int[] getProducers(int material) {
+        return material < producers.size() ? producers.get(material).stream().toArray() : new int[0];
+    }
+
+    /**
+     * @param material index of a material.
+     * @return indices of all building templates that consume the material in ascending order.
+     */
+    public int[] getConsumers(int material) {
+        return material < consumers.size() ? consumers.get(material).stream().toArray() : new int[0];
+    }
+
+    /**
+     * @param building index of a building template.
+     * @return indices of the input materials of the building template in ascending order.
+     */
+    public int[] getInputs(int building) {
+        return building < inputs.size() ? inputs.get(building).stream().toArray() : new int[0];
+    }
+
+    /**
+     * @param building index of a building template.
+     * @return indices of the output materials of the building template in ascending order.
+     */
+    public int[] getOutputs(int building) {
+        return building < outputs.size() ? outputs.get(building).stream().toArray() : new int[0];
+    }
+
+    /**
+     * Materials that the given material can be made from, directly or through any number of intermediate materials. Cached until the supply chain of the material changes.
+     *
+     * @param material index of a material.
+     * @return indices of the upstream materials. Contains the material itself only if it is part of a production cycle. Must not be modified.
+     */
+    public BitSet getUpstreamMaterials(int material) {
+        return closure(material, upstream, producers, inputs);
+    }
+
+    /**
+     * Materials that the given material can be made into, directly or through any number of intermediate materials. Cached until the uses of the material change.
+     *
+     * @param material index of a material.
+     * @return indices of the downstream materials. Contains the material itself only if it is part of a production cycle. Must not be modified.
+     */
+    public BitSet getDownstreamMaterials(int material) {
+        return closure(material, downstream, consumers, outputs);
+    }
+
+    /**
+     * Orders the building templates so that every template comes after all templates that produce one of its inputs.
+     * Templates that depend on each other through a cycle are placed next to each other in the order of their indices.
+     *
+     * @return indices of all building templates in topological order.
+     */
+    public int[] getTopologicalOrder() {
+        if (topologicalOrder == null)
+            sortTopologically();
+        return topologicalOrder.clone();
+    }
+
+    /**
+     * Lightweight accessor method.
+     *
+     * @return true if no building template depends on itself through its inputs.
+     */
+    public boolean isAcyclic() {
+        return getCycles().isEmpty();
+    }
+
+    /**
+     * Finds the groups of building templates that depend on each other through their inputs, including templates that consume their own outputs.
+     *
+     * @return indices of the building templates of every cycle in ascending order. Empty if the graph is acyclic.
+     */
+    public List<int[]> getCycles() {
+        if (cycles == null)
+            sortTopologically();
+        return Collections.unmodifiableList(cycles);
+    }
+
+    /**
+     * Stops listening to the rules and their building templates.
+     */
+    public void dispose() {
+        rules.getBuildingTemplates().removeListener(buildingTemplateListener);
+        templateListeners.forEach((template, listener) -> {
+            template.getInputMaterials().removeListener(listener);
+            template.getOutputMaterials().removeListener(listener);
+        });
+        templateListeners.clear();
+    }
+
+    /**
+     * Starts listening to a building template and adds its edges if it is the first template with its id.
+     *
+     * @param template building template that was added to the rules.
+     */
+    private void attach(VisualBuildingTemplate template) {
+        ListChangeListener<Material> listener = change -> onTemplateChanged(template);
+        template.getInputMaterials().addListener(listener);
+        template.getOutputMaterials().addListener(listener);
+        templateListeners.put(template, listener);
+
+        int building = index.getBuildings().add(template.getId());
+        ensureBuilding(building);
+        if (owners.get(building) == null)
+            update(building, template);
+    }
+
+    /**
+     * Stops listening to a building template. If it provided the edges of its id they are taken over by the next template with the same id, if there is one.
+     *
+     * @param template building template that was removed from the rules.
+     */
+    private void detach(VisualBuildingTemplate template) {
+        ListChangeListener<Material> listener = templateListeners.remove(template);
+        if (listener != null) {
+            template.getInputMaterials().removeListener(listener);
+            template.getOutputMaterials().removeListener(listener);
+        }
+
+        int building = index.getBuildingIndex(template.getId());
+        if (building >= 0 && building < owners.size() && owners.get(building) == template) {
+            VisualBuildingTemplate successor = rules.getBuildingTemplates().stream()
+                    .filter(candidate -> candidate.getId().equals(template.getId()) && templateListeners.containsKey(candidate))
+                    .findFirst().orElse(null);
+            update(building, successor);
+        }
+    }
+
+    /**
+     * Detaches removed building templates and attaches added ones.
+     *
+     * @param change change of the list of building templates.
+     */
+    private void onBuildingTemplatesChanged(ListChangeListener.Change<? extends VisualBuildingTemplate> change) {
+        while (change.next()) {
+            change.getRemoved().forEach(this::detach);
+            change.getAddedSubList().forEach(this::attach);
+        }
+    }
+
+    /**
+     * Updates the edges of a building template after its input or output materials have been edited.
+     *
+     * @param template building template that was edited.
+     */
+    private void onTemplateChanged(VisualBuildingTemplate template) {
+        int building = index.getBuildingIndex(template.getId());
+        if (building >= 0 && building < owners.size() && owners.get(building) == template)
+            update(building, template);
+    }
+
+    /**
+     * Replaces the edges of a building template, updates the reverse indexes and discards the cached results the change can affect.
+     * The upstream closure of a material can only change if an old or a new output of the template is the material itself or one of its upstream materials,
+     * and the downstream closure of a material can only change if an old or a new input is.
+     *
+     * @param building index of the building template.
+     * @param template template that provides the edges, null if there is none.
+     */
+    private void update(int building, VisualBuildingTemplate template) {
+        BitSet newInputs = template == null ? new BitSet() : indexMaterials(template.getInputMaterials());
+        BitSet newOutputs = template == null ? new BitSet() : indexMaterials(template.getOutputMaterials());
+        BitSet oldInputs = inputs.get(building);
+        BitSet oldOutputs = outputs.get(building);
+        owners.set(building, template);
+        if (newInputs.equals(oldInputs) && newOutputs.equals(oldOutputs))
+            return;
+
+        BitSet changedOutputs = (BitSet) oldOutputs.clone();
+        changedOutputs.or(newOutputs);
+        BitSet changedInputs = (BitSet) oldInputs.clone();
+        changedInputs.or(newInputs);
+        invalidate(upstream, changedOutputs);
+        invalidate(downstream, changedInputs);
+
+        oldInputs.stream().forEach(material -> consumers.get(material).clear(building));
+        oldOutputs.stream().forEach(material -> producers.get(material).clear(building));
+        newInputs.stream().forEach(material -> consumers.get(material).set(building));
+        newOutputs.stream().forEach(material -> producers.get(material).set(building));
+        inputs.set(building, newInputs);
+        outputs.set(building, newOutputs);
+        topologicalOrder = null;
+        cycles = null;
+    }
+
+    /**
+     * Discards every cached closure that contains one of the changed materials or belongs to one of them.
+     *
+     * @param closures cached closures by material index.
+     * @param changed  materials whose producers or consumers change.
+     */
+    private static void invalidate(List<BitSet> closures, BitSet changed) {
+        for (int material = 0; material < closures.size(); material++) {
+            BitSet closure = closures.get(material);
+            if (closure != null && (changed.get(material) || closure.intersects(changed)))
+                closures.set(material, null);
+        }
+    }
+
+    /**
+     * Computes the transitive closure of a material with a breadth first search, or returns the cached one.
+     *
+     * @param material index of a material.
+     * @param cache    cached closures by material index.
+     * @param links    buildings linked to each material, producers for the upstream closure and consumers for the downstream closure.
+     * @param next     materials linked to each building, inputs for the upstream closure and outputs for the downstream closure.
+     * @return closure of the material.
+     */
+    private BitSet closure(int material, List<BitSet> cache, List<BitSet> links, List<BitSet> next) {
+        if (material < 0)
+            throw new IndexOutOfBoundsException("Index: " + material);
+        ensureMaterial(material);
+        BitSet closure = cache.get(material);
+        if (closure != null)
+            return closure;
+
+        closure = new BitSet();
+        int[] queue = new int[producers.size() + 1];
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = material;
+        BitSet visitedBuildings = new BitSet();
+        while (head < tail) {
+            BitSet buildings = links.get(queue[head++]);
+            for (int building = buildings.nextSetBit(0); building >= 0; building = buildings.nextSetBit(building + 1)) {
+                if (visitedBuildings.get(building))
+                    continue;
+                visitedBuildings.set(building);
+                BitSet materials = next.get(building);
+                for (int linked = materials.nextSetBit(0); linked >= 0; linked = materials.nextSetBit(linked + 1)) {
+                    if (!closure.get(linked)) {
+                        closure.set(linked);
+                        queue[tail++] = linked;
+                    }
+                }
+            }
+        }
+        cache.set(material, closure);
+        return closure;
+    }
+
+    /**
+     * Orders the building templates with Tarjan's algorithm for strongly connected components, which emits the components in reverse topological order.
+     * Components with more than one template, or with a template that consumes its own output, are cycles.
+     */
+    private void sortTopologically() {
+        int count = owners.size();
+        int[][] successors = new int[count][];
+        for (int building = 0; building < count; building++) {
+            BitSet next = new BitSet();
+            outputs.get(building).stream().forEach(material -> next.or(consumers.get(material)));
+            successors[building] = next.stream().toArray();
+        }
+
+        int[] order = new int[count];
+        int position = count;
+        List<int[]> foundCycles = new ArrayList<>();
+
+        int[] visitIndex = new int[count];
+        int[] lowLink = new int[count];
+        Arrays.fill(visitIndex, -1);
+        boolean[] onStack = new boolean[count];
+        int[] stack = new int[count];
+        int stackSize = 0;
+        int[] callNodes = new int[count];
+        int[] callPositions = new int[count];
+        int visited = 0;
+
+        for (int start = 0; start < count; start++) {
+            if (visitIndex[start] >= 0)
+                continue;
+            int depth = 0;
+            callNodes[depth] = start;
+            callPositions[depth++] = 0;
+            visitIndex[start] = lowLink[start] = visited++;
+            stack[stackSize++] = start;
+            onStack[start] = true;
+
+            while (depth > 0) {
+                int node = callNodes[depth - 1];
+                if (callPositions[depth - 1] < successors[node].length) {
+                    int successor = successors[node][callPositions[depth - 1]++];
+                    if (visitIndex[successor] < 0) {
+                        visitIndex[successor] = lowLink[successor] = visited++;
+                        stack[stackSize++] = successor;
+                        onStack[successor] = true;
+                        callNodes[depth] = successor;
+                        callPositions[depth++] = 0;
+                    } else if (onStack[successor]) {
+                        lowLink[node] = Math.min(lowLink[node], visitIndex[successor]);
+                    }
+                    continue;
+                }
+
+                depth--;
+                if (lowLink[node] == visitIndex[node]) {
+                    int end = stackSize;
+                    do {
+                        onStack[stack[--stackSize]] = false;
+                    } while (stack[stackSize] != node);
+                    int[] component = Arrays.copyOfRange(stack, stackSize, end);
+                    Arrays.sort(component);
+                    position -= component.length;
+                    System.arraycopy(component, 0, order, position, component.length);
+                    if (component.length > 1 || Arrays.binarySearch(successors[node], node) >= 0)
+                        foundCycles.add(component);
+                }
+                if (depth > 0)
+                    lowLink[callNodes[depth - 1]] = Math.min(lowLink[callNodes[depth - 1]], lowLink[node]);
+            }
+        }
+        Collections.reverse(foundCycles);
+        topologicalOrder = order;
+        cycles = foundCycles;
+    }
+
+    /**
+     * Indexes the materials of a list, appending materials that are not indexed yet to the RulesIndex. Amounts are not looked at,
+     * as editing an amount does not change the list and would not be noticed.
+     *
+     * @param materials input or output materials of a building template.
+     * @return indices of the materials.
+     */
+    private BitSet indexMaterials(List<Material> materials) {
+        BitSet indices = new BitSet();
+        for (Material material : materials) {
+            int materialIndex = index.getMaterials().add(material.getTemplateId());
+            ensureMaterial(materialIndex);
+            indices.set(materialIndex);
+        }
+        return indices;
+    }
+
+    /**
+     * Grows the lists indexed by building index so that they contain a given index.
+     *
+     * @param building index of a building template.
+     */
+    private void ensureBuilding(int building) {
+        while (owners.size() <= building) {
+            owners.add(null);
+            inputs.add(new BitSet());
+            outputs.add(new BitSet());
+        }
+        topologicalOrder = null;
+        cycles = null;
+    }
+
+    /**
+     * Grows the lists indexed by material index so that they contain a given index.
+     *
+     * @param material index of a material.
+     */
+    private void ensureMaterial(int material) {
+        while (producers.size() <= material) {
+            producers.add(new BitSet());
+            consumers.add(new BitSet());
+            upstream.add(null);
+            downstream.add(null);
+        }
+    }
+}
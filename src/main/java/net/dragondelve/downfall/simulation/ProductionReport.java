@@ -0,0 +1,122 @@
+// Copyright 2023 Prokhor Kalinin
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package net.dragondelve.downfall.simulation;
+
+/**
+ * Outcome of a turn of production: how much of each material was consumed and produced, and how many buildings of each template ran.
+ */
+public final class ProductionReport {
+    private final ProductionEngine engine;
+    private final int[] operating;
+    private final int[] running;
+    private final long[] consumed;
+    private final long[] produced;
+
+    /**
+     * @param engine    engine that runs the turn.
+     * @param operating number of operating buildings of each template by building index.
+     */
+    ProductionReport(ProductionEngine engine, int[] operating) {
+        this.engine = engine;
+        this.operating = operating;
+        this.running = new int[engine.getBuildingCount()];
+        this.consumed = new long[engine.getMaterialCount()];
+        this.produced = new long[engine.getMaterialCount()];
+    }
+
+    /**
+     * @param materialTemplateId id of a material template.
+     * @return amount of the material consumed during the turn.
+     */
+    public long getConsumed(Integer materialTemplateId) {
+        int index = engine.getMaterialIndex(materialTemplateId);
+        return index < 0 ? 0 : consumed[index];
+    }
+
+    /**
+     * @param materialTemplateId id of a material template.
+     * @return amount of the material produced during the turn.
+     */
+    public long getProduced(Integer materialTemplateId) {
+        int index = engine.getMaterialIndex(materialTemplateId);
+        return index < 0 ? 0 : produced[index];
+    }
+
+    /**
+     * @param buildingTemplateId id of a building template.
+     * @return number of buildings of the template that were supplied with all of their inputs and produced.
+     */
+    public int getRunningBuildings(Integer buildingTemplateId) {
+        int index = engine.getBuildingIndex(buildingTemplateId);
+        return index < 0 ? 0 : running[index];
+    }
+
+    /**
+     * @param buildingTemplateId id of a building template.
+     * @return number of buildings of the template that were operating but lacked inputs.
+     */
+    public int getStalledBuildings(Integer buildingTemplateId) {
+        int index = engine.getBuildingIndex(buildingTemplateId);
+        return index < 0 ? 0 : operating[index] - running[index];
+    }
+
+    /**
+     * @return number of buildings that produced during the turn.
+     */
+    public long getRunningBuildings() {
+        long sum = 0;
+        for (int count : running)
+            sum += count;
+        return sum;
+    }
+
+    /**
+     * @return number of buildings that were operating but lacked inputs.
+     */
+    public long getStalledBuildings() {
+        long sum = 0;
+        for (int i = 0; i < operating.length; i++)
+            sum += operating[i] - running[i];
+        return sum;
+    }
+
+    /**
+     * @return amount consumed by material index. Not a copy.
+     */
+    long[] getConsumedArray() {
+        return consumed;
+    }
+
+    /**
+     * @return amount produced by material index. Not a copy.
+     */
+    long[] getProducedArray() {
+        return produced;
+    }
+
+    /**
+     * @return number of operating buildings by building index. Not a copy.
+     */
+    int[] getOperatingArray() {
+        return operating;
+    }
+
+    /**
+     * @return number of running buildings by building index. Not a copy.
+     */
+    int[] getRunningArray() {
+        return running;
+    }
+}
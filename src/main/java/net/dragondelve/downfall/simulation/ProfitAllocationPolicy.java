@@ -0,0 +1,172 @@
+// Copyright 2023 Prokhor Kalinin
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package net.dragondelve.downfall.simulation;
+
+import net.dragondelve.downfall.realm.template.VisualMaterialTemplate;
+import net.dragondelve.downfall.util.RulesView;
+
+import java.util.Arrays;
+
+/**
+ * Gives scarce inputs to the building templates that earn the most from them. The profit of a template is valued like MarketValuation values it,
+ * its outputs at the default export prices minus its inputs at the default import prices, see ProductionEngine.getProfit(). Materials without a price are worth nothing.
+ * <p>
+ * Every turn the policy finds the scarce inputs, those the operating buildings need more of than is stocked. A template that needs a scarce input is ranked
+ * by its profit per unit of the scarcest of them, templates that need none are served first as they take nothing the others lack, and ties are served in the order of the rules.
+ * When a single input is scarce this is the greedy solution of a fractional knapsack, which only loses what is left over because buildings run whole.
+ * When several inputs are scarce it is a heuristic. Templates are never idled for being unprofitable, they are only served last.
+ * <p>
+ * A turn costs time linear in the number of templates and their inputs plus O(c log c) for sorting the c templates that need a scarce input,
+ * which are sorted with a stable merge sort of primitive indices. Templates that need no scarce input are never sorted.
+ * <p>
+ * Profits are computed once from the rules, the policy has to be created again after prices or templates have been changed.
+ * Keeps buffers between turns, so an instance should only be used by one engine at a time.
+ */
+public final class ProfitAllocationPolicy implements AllocationPolicy {
+    private final long[] profits;
+    private final PriorityAllocationPolicy priorityPolicy = new PriorityAllocationPolicy();
+
+    private double[] demand = new double[0];
+    private double[] ranks = new double[0];
+    private int[] order = new int[0];
+    private int[] contenders = new int[0];
+    private int[] buffer = new int[0];
+
+    /**
+     * Values the building templates of an engine.
+     *
+     * @param rules  rules the engine was compiled from, provides the prices of the materials.
+     * @param engine engine the policy is used with.
+     */
+    public ProfitAllocationPolicy(RulesView rules, ProductionEngine engine) {
+        long[] exportPrices = new long[engine.getMaterialCount()];
+        long[] importPrices = new long[engine.getMaterialCount()];
+        boolean[] priced = new boolean[engine.getMaterialCount()];
+        for (VisualMaterialTemplate template : rules.getMaterialTemplates()) {
+            int material = engine.getMaterialIndex(template.getId());
+            if (material >= 0 && !priced[material]) {
+                priced[material] = true;
+                exportPrices[material] = toPrice(template.getDefExportPrice());
+                importPrices[material] = toPrice(template.getDefImportPrice());
+            }
+        }
+
+        profits = new long[engine.getBuildingCount()];
+        for (int building = 0; building < profits.length; building++)
+            profits[building] = engine.getProfit(building, exportPrices, importPrices);
+    }
+
+    @Override
+    public void allocate(ProductionEngine engine, long[] stock, int[] operating, int[] running) {
+        int buildingCount = Math.min(engine.getBuildingCount(), profits.length);
+        if (demand.length < engine.getMaterialCount())
+            demand = new double[engine.getMaterialCount()];
+        if (order.length < buildingCount) {
+            ranks = new double[buildingCount];
+            order = new int[buildingCount];
+            contenders = new int[buildingCount];
+            buffer = new int[buildingCount];
+        }
+
+        Arrays.fill(demand, 0);
+        for (int building = 0; building < buildingCount; building++) {
+            for (int input = 0; input < engine.getInputCount(building); input++)
+                demand[engine.getInputMaterial(building, input)] += (double) operating[building] * engine.getInputAmount(building, input);
+        }
+        // templates that need no scarce input are served first in the order of the rules, only the others are ranked
+        int unconstrained = 0;
+        int contenderCount = 0;
+        for (int building = 0; building < buildingCount; building++) {
+            ranks[building] = rank(engine, building, stock, operating[building]);
+            if (ranks[building] == Double.POSITIVE_INFINITY)
+                order[unconstrained++] = building;
+            else
+                contenders[contenderCount++] = building;
+        }
+        sortByRank(contenders, contenderCount);
+        System.arraycopy(contenders, 0, order, unconstrained, contenderCount);
+        priorityPolicy.allocate(engine, stock, operating, running, order);
+    }
+
+    /**
+     * @param building index of a building template.
+     * @return value of the outputs of one building minus the value of its inputs.
+     */
+    public long getProfit(int building) {
+        return profits[building];
+    }
+
+    /**
+     * Finds the scarcest input of a template, the one whose demand exceeds its stock the most.
+     *
+     * @param engine    engine that runs the turn.
+     * @param building  index of a building template.
+     * @param stock     amount of each material by material index.
+     * @param operating number of operating buildings of the template.
+     * @return profit of the template per unit of its scarcest input, or positive infinity if none of its inputs is scarce.
+     */
+    private double rank(ProductionEngine engine, int building, long[] stock, int operating) {
+        double rank = Double.POSITIVE_INFINITY;
+        if (operating <= 0)
+            return rank;
+        double scarcity = 1;
+        for (int input = 0; input < engine.getInputCount(building); input++) {
+            int material = engine.getInputMaterial(building, input);
+            double inputScarcity = demand[material] / Math.max(stock[material], 0);
+            if (inputScarcity > scarcity) {
+                scarcity = inputScarcity;
+                rank = (double) profits[building] / engine.getInputAmount(building, input);
+            }
+        }
+        return rank;
+    }
+
+    /**
+     * Sorts building indices by their rank, highest first, with a bottom-up merge sort. The sort is stable, so templates of equal rank stay in the order of the rules.
+     *
+     * @param buildings building indices in ascending order. Sorted in place.
+     * @param count     number of building indices to be sorted.
+     */
+    private void sortByRank(int[] buildings, int count) {
+        int[] from = buildings;
+        int[] to = buffer;
+        for (int width = 1; width < count; width *= 2) {
+            for (int start = 0; start < count; start += 2 * width) {
+                int middle = Math.min(start + width, count);
+                int end = Math.min(start + 2 * width, count);
+                int left = start;
+                int right = middle;
+                for (int position = start; position < end; position++) {
+                    if (left < middle && (right >= end || ranks[from[left]] >= ranks[from[right]]))
+                        to[position] = from[left++];
+                    else
+                        to[position] = from[right++];
+                }
+            }
+            int[] swap = from;
+            from = to;
+            to = swap;
+        }
+        if (from != buildings)
+            System.arraycopy(from, 0, buildings, 0, count);
+    }
+
+    /**
+     * @param price default price of a material template.
+     * @return the price, or 0 if the template has no price.
+     */
+    private static long toPrice(Integer price) {
+        return price == null ? 0 : Math.max(price, 0);
+    }
+}
@@ -0,0 +1,65 @@
+// Copyright 2023 Prokhor Kalinin
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package net.dragondelve.downfall.simulation;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+
+/**
+ * Shares every scarce material between the templates that consume it in proportion to their demand, which is the number of their operating buildings
+ * times the amount one building consumes. A template runs as many buildings as its smallest share allows, so no template starves while others are supplied in full.
+ * Shares are computed in a single pass over the inputs of all templates. What a template cannot use because another of its inputs is scarcer is not handed on to other templates.
+ * Keeps a buffer of the demand between turns, so an instance should only be used by one engine at a time.
+ */
+public final class ProportionalAllocationPolicy implements AllocationPolicy {
+    private long[] demand = new long[0];
+
+    @Override
+    public void allocate(ProductionEngine engine, long[] stock, int[] operating, int[] running) {
+        if (demand.length < engine.getMaterialCount())
+            demand = new long[engine.getMaterialCount()];
+        Arrays.fill(demand, 0, engine.getMaterialCount(), 0);
+        for (int building = 0; building < engine.getBuildingCount(); building++) {
+            for (int input = 0; input < engine.getInputCount(building); input++)
+                demand[engine.getInputMaterial(building, input)] += operating[building] * engine.getInputAmount(building, input);
+        }
+
+        for (int building = 0; building < engine.getBuildingCount(); building++) {
+            long runs = operating[building];
+            for (int input = 0; input < engine.getInputCount(building) && runs > 0; input++) {
+                int material = engine.getInputMaterial(building, input);
+                long amount = engine.getInputAmount(building, input);
+                long available = Math.max(stock[material], 0);
+                if (demand[material] > available)
+                    runs = Math.min(runs, multiplyDivide(available, operating[building] * amount, demand[material]) / amount);
+            }
+            running[building] = (int) runs;
+        }
+    }
+
+    /**
+     * Computes a * b / c rounded down without overflowing the intermediate product.
+     *
+     * @param a non-negative factor.
+     * @param b non-negative factor.
+     * @param c positive divisor.
+     * @return a * b / c rounded down.
+     */
+    private static long multiplyDivide(long a, long b, long c) {
+        if (Math.multiplyHigh(a, b) == 0 && a * b >= 0)
+            return a * b / c;
+        return BigInteger.valueOf(a).multiply(BigInteger.valueOf(b)).divide(BigInteger.valueOf(c)).longValueExact();
+    }
+}
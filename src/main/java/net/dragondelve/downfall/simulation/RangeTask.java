@@ -0,0 +1,63 @@
+// Copyright 2023 Prokhor Kalinin
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package net.dragondelve.downfall.simulation;
+
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Runs a piece of work on a range of positions, splitting the range in halves until it is no longer than the range size.
+ * Ranges that are no longer split are run by the threads of the ForkJoinPool the task is invoked on.
+ */
+final class RangeTask extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    private final int from;
+    private final int to;
+    private final int rangeSize;
+    private final Body body;
+
+    /**
+     * @param from      first position of the range.
+     * @param to        position after the last one of the range.
+     * @param rangeSize number of positions below which a range is no longer split.
+     * @param body      work done on every range that is no longer split.
+     */
+    RangeTask(int from, int to, int rangeSize, Body body) {
+        this.from = from;
+        this.to = to;
+        this.rangeSize = rangeSize;
+        this.body = body;
+    }
+
+    @Override
+    protected void compute() {
+        if (to - from <= rangeSize) {
+            body.run(from, to);
+            return;
+        }
+        int middle = (from + to) >>> 1;
+        invokeAll(new RangeTask(from, middle, rangeSize, body), new RangeTask(middle, to, rangeSize, body));
+    }
+
+    /**
+     * Work done on a range of positions.
+     */
+    interface Body {
+        /**
+         * @param from first position of the range.
+         * @param to   position after the last one of the range.
+         */
+        void run(int from, int to);
+    }
+}
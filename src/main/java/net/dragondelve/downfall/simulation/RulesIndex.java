@@ -0,0 +1,153 @@
+// Copyright 2023 Prokhor Kalinin
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package net.dragondelve.downfall.simulation;
+
+import net.dragondelve.downfall.realm.Tag;
+import net.dragondelve.downfall.realm.template.VisualBuildingTemplate;
+import net.dragondelve.downfall.realm.template.VisualMaterialTemplate;
+import net.dragondelve.downfall.util.CompiledRules;
+import net.dragondelve.downfall.util.RulesView;
+
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Gives the material templates, building templates and tags of a ruleset dense indices from 0 to n - 1, so that stockpiles, production tables
+ * and tag sets can be stored in flat arrays and bit sets instead of maps keyed by the arbitrary ids the templates were given in the editors.
+ * The index is built once when rules are loaded. Templates are indexed in the order of the rules and if several templates share an id the first one gets the index.
+ * Ids that are not part of the rules, like templates added in the editors afterwards or materials that are only referenced by building templates,
+ * are appended to the IdIndex of their kind by whoever needs them first, so indices that have been handed out never change.
+ */
+public final class RulesIndex {
+    private final IdIndex materials = new IdIndex();
+    private final IdIndex buildings = new IdIndex();
+    private final IdIndex tags = new IdIndex();
+
+    /**
+     * Indexes all templates and tags of the given rules. Materializes compiled rules that are only known as a RulesView.
+     *
+     * @param rules rules to be indexed.
+     */
+    public RulesIndex(RulesView rules) {
+        for (VisualMaterialTemplate template : rules.getMaterialTemplates())
+            materials.add(template.getId());
+        for (VisualBuildingTemplate template : rules.getBuildingTemplates())
+            buildings.add(template.getId());
+        for (Tag tag : rules.getActorTags())
+            tags.add(tag.getId());
+    }
+
+    /**
+     * Indexes all templates and tags of the given compiled rules without materializing any of them.
+     *
+     * @param rules compiled rules to be indexed.
+     */
+    public RulesIndex(CompiledRules rules) {
+        for (int id : rules.getMaterialTemplateIds())
+            materials.add(id);
+        for (int id : rules.getBuildingTemplateIds())
+            buildings.add(id);
+        for (int id : rules.getTagIds())
+            tags.add(id);
+    }
+
+    /**
+     * Lightweight accessor method.
+     *
+     * @return index of the material template ids.
+     */
+    public IdIndex getMaterials() {
+        return materials;
+    }
+
+    /**
+     * Lightweight accessor method.
+     *
+     * @return index of the building template ids.
+     */
+    public IdIndex getBuildings() {
+        return buildings;
+    }
+
+    /**
+     * Lightweight accessor method.
+     *
+     * @return index of the tag ids.
+     */
+    public IdIndex getTags() {
+        return tags;
+    }
+
+    /**
+     * @param templateId id of a material template.
+     * @return dense index of the material or -1 if it is not indexed.
+     */
+    public int getMaterialIndex(Integer templateId) {
+        return templateId == null ? -1 : materials.indexOf(templateId);
+    }
+
+    /**
+     * @param index dense index of a material.
+     * @return id of the material template.
+     */
+    public int getMaterialId(int index) {
+        return materials.idAt(index);
+    }
+
+    /**
+     * @param templateId id of a building template.
+     * @return dense index of the building template or -1 if it is not indexed.
+     */
+    public int getBuildingIndex(Integer templateId) {
+        return templateId == null ? -1 : buildings.indexOf(templateId);
+    }
+
+    /**
+     * @param index dense index of a building template.
+     * @return id of the building template.
+     */
+    public int getBuildingId(int index) {
+        return buildings.idAt(index);
+    }
+
+    /**
+     * @param tagId id of a tag.
+     * @return dense index of the tag or -1 if it is not indexed.
+     */
+    public int getTagIndex(Integer tagId) {
+        return tagId == null ? -1 : tags.indexOf(tagId);
+    }
+
+    /**
+     * @param index dense index of a tag.
+     * @return id of the tag.
+     */
+    public int getTagId(int index) {
+        return tags.idAt(index);
+    }
+
+    /**
+     * Converts a list of tags to a bit set that has the bit of the dense index of every tag set. Tags that are not indexed yet are appended to the index.
+     *
+     * @param actorTags tags of an actor.
+     * @return bit set of the dense indices of the tags.
+     */
+    public BitSet toTagSet(List<Tag> actorTags) {
+        BitSet tagSet = new BitSet(tags.size());
+        for (Tag tag : actorTags)
+            tagSet.set(tags.add(tag.getId()));
+        return tagSet;
+    }
+}
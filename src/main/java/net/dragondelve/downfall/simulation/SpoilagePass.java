@@ -0,0 +1,155 @@
+// Copyright 2023 Prokhor Kalinin
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package net.dragondelve.downfall.simulation;
+
+import net.dragondelve.downfall.realm.Actor;
+import net.dragondelve.downfall.realm.template.VisualMaterialTemplate;
+import net.dragondelve.downfall.util.RulesView;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * End of turn pass that removes what cannot be kept from a stockpile. Ephemeral materials cannot be stored, so all of them expire,
+ * and materials can be given a spoilage rate, the share of their stock that is lost every turn.
+ * <p>
+ * The share of every material that is kept is stored as a fixed point number in a primitive array by material index, so the pass is a single
+ * branch free sweep over the stock array of an actor that the JIT can unroll and vectorize. Losses are rounded up, so a small stock of a spoiling
+ * material spoils completely in the end. Negative amounts never spoil.
+ * <p>
+ * Spoilage rates are not part of the rules and are set on the pass. The ephemerality of the material templates is read when the pass is created,
+ * it has to be created again after the rules have been changed. Applying the pass only reads it, so one pass can be used by many threads at once.
+ */
+public final class SpoilagePass {
+    private static final int FRACTION_BITS = 16;
+    private static final long WHOLE = 1L << FRACTION_BITS;
+
+    private final IdIndex materials;
+    private final long[] retained;
+    private final BitSet ephemeral = new BitSet();
+
+    /**
+     * Expires the ephemeral materials of the rules. Materials are indexed like the stockpiles of the engine.
+     *
+     * @param rules  rules that provide the ephemeral materials.
+     * @param engine engine whose material indices are used.
+     */
+    public SpoilagePass(RulesView rules, ProductionEngine engine) {
+        materials = engine.getMaterials();
+        retained = new long[engine.getMaterialCount()];
+        Arrays.fill(retained, WHOLE);
+        boolean[] read = new boolean[retained.length];
+        for (VisualMaterialTemplate template : rules.getMaterialTemplates()) {
+            int index = engine.getMaterialIndex(template.getId());
+            if (index >= 0 && !read[index]) {
+                read[index] = true;
+                if (template.isEphemeral()) {
+                    ephemeral.set(index);
+                    retained[index] = 0;
+                }
+            }
+        }
+    }
+
+    /**
+     * Lightweight mutator method.
+     *
+     * @param materialTemplateId id of a material template known to the engine of the pass.
+     * @param rate               share of the stock of the material that is lost every turn, from 0 to 1. Ignored for ephemeral materials, which always lose everything.
+     * @throws IllegalArgumentException if the material is unknown or the rate is out of range.
+     */
+    public void setSpoilageRate(Integer materialTemplateId, double rate) {
+        if (!(rate >= 0 && rate <= 1))
+            throw new IllegalArgumentException("Spoilage rate must be between 0 and 1: " + rate);
+        int index = indexOf(materialTemplateId);
+        if (!ephemeral.get(index))
+            retained[index] = Math.round((1 - rate) * WHOLE);
+    }
+
+    /**
+     * Lightweight accessor method.
+     *
+     * @param materialTemplateId id of a material template known to the engine of the pass.
+     * @return share of the stock of the material that is lost every turn, 1 for ephemeral materials.
+     * @throws IllegalArgumentException if the material is unknown.
+     */
+    public double getSpoilageRate(Integer materialTemplateId) {
+        return 1 - (double) retained[indexOf(materialTemplateId)] / WHOLE;
+    }
+
+    /**
+     * Applies the pass to the dense stockpile of an actor and writes the amounts back through its ObservableStockpile.
+     * Should be called on the JavaFX Application Thread if the actor is displayed.
+     *
+     * @param actor actor whose stockpile spoils.
+     * @return what was lost.
+     */
+    public SpoilageReport apply(Actor actor) {
+        ObservableStockpile stockpile = actor.getDenseStockpile(materials);
+        SpoilageReport report = apply(stockpile.getStockpile());
+        stockpile.refresh();
+        return report;
+    }
+
+    /**
+     * Applies the pass to a dense stockpile.
+     *
+     * @param stockpile stockpile that spoils. Has to use the material IdIndex of the engine of the pass.
+     * @return what was lost.
+     * @throws IllegalArgumentException if the stockpile uses another IdIndex.
+     */
+    public SpoilageReport apply(DenseStockpile stockpile) {
+        if (stockpile.getMaterials() != materials)
+            throw new IllegalArgumentException("Stockpile does not use the material index of this spoilage pass");
+        long[] lost = new long[retained.length];
+        apply(stockpile.amounts(), lost);
+        return new SpoilageReport(materials, lost);
+    }
+
+    /**
+     * Applies the pass to a stock array. Materials past the materials known to the engine never spoil.
+     *
+     * @param stock amount of each material by material index. Updated in place.
+     * @param lost  amount lost of each material by material index. Losses are added to it.
+     */
+    public void apply(long[] stock, long[] lost) {
+        int length = Math.min(Math.min(stock.length, lost.length), retained.length);
+        for (int material = 0; material < length; material++) {
+            long amount = stock[material];
+            long kept = Math.min(amount, (Math.max(amount, 0) * retained[material]) >> FRACTION_BITS);
+            lost[material] += amount - kept;
+            stock[material] = kept;
+        }
+    }
+
+    /**
+     * @param index dense index of a material.
+     * @return share of the stock of the material that is kept every turn as a fixed point number, used to tell passes apart.
+     */
+    long getRetained(int index) {
+        return index < retained.length ? retained[index] : WHOLE;
+    }
+
+    /**
+     * @param materialTemplateId id of a material template.
+     * @return dense index of the material.
+     * @throws IllegalArgumentException if the material is unknown.
+     */
+    private int indexOf(Integer materialTemplateId) {
+        int index = materialTemplateId == null ? -1 : materials.indexOf(materialTemplateId);
+        if (index < 0 || index >= retained.length)
+            throw new IllegalArgumentException("Unknown material template " + materialTemplateId);
+        return index;
+    }
+}
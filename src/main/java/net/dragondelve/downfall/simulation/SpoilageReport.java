@@ -0,0 +1,83 @@
+// Copyright 2023 Prokhor Kalinin
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package net.dragondelve.downfall.simulation;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Summary of what spoiled in a stockpile at the end of a turn: how much of each material was lost.
+ */
+public final class SpoilageReport {
+    private final IdIndex materials;
+    private final long[] lost;
+
+    /**
+     * @param materials index of the material template ids the lost amounts are indexed by.
+     * @param lost      amount lost of each material by material index.
+     */
+    SpoilageReport(IdIndex materials, long[] lost) {
+        this.materials = materials;
+        this.lost = lost;
+    }
+
+    /**
+     * @param materialTemplateId id of a material template.
+     * @return amount of the material that spoiled.
+     */
+    public long getLost(Integer materialTemplateId) {
+        int index = materialTemplateId == null ? -1 : materials.indexOf(materialTemplateId);
+        return index < 0 || index >= lost.length ? 0 : lost[index];
+    }
+
+    /**
+     * @return amount of all materials that spoiled.
+     */
+    public long getTotalLost() {
+        long sum = 0;
+        for (long amount : lost)
+            sum += amount;
+        return sum;
+    }
+
+    /**
+     * @return amount lost by material template id for every material that spoiled, in the order of the material index.
+     */
+    public Map<Integer, Long> getLostMaterials() {
+        Map<Integer, Long> lostMaterials = new LinkedHashMap<>();
+        for (int index = 0; index < lost.length; index++) {
+            if (lost[index] != 0)
+                lostMaterials.put(materials.idAt(index), lost[index]);
+        }
+        return lostMaterials;
+    }
+
+    /**
+     * @return true if nothing spoiled.
+     */
+    public boolean isEmpty() {
+        for (long amount : lost) {
+            if (amount != 0)
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return amount lost by material index. Not a copy.
+     */
+    long[] getLostArray() {
+        return lost;
+    }
+}
@@ -0,0 +1,94 @@
+// Copyright 2023 Prokhor Kalinin
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package net.dragondelve.downfall.simulation;
+
+import net.dragondelve.downfall.realm.Actor;
+
+/**
+ * A settled trade: an amount of a material that went from a seller to a buyer at a price per unit.
+ */
+public final class Trade {
+    private final Actor buyer;
+    private final Actor seller;
+    private final int materialTemplateId;
+    private final long quantity;
+    private final long price;
+
+    /**
+     * @param buyer              actor that received the material.
+     * @param seller             actor that delivered the material.
+     * @param materialTemplateId id of the material template that was traded.
+     * @param quantity           amount that was traded.
+     * @param price              price paid per unit.
+     */
+    Trade(Actor buyer, Actor seller, int materialTemplateId, long quantity, long price) {
+        this.buyer = buyer;
+        this.seller = seller;
+        this.materialTemplateId = materialTemplateId;
+        this.quantity = quantity;
+        this.price = price;
+    }
+
+    /**
+     * Lightweight accessor method.
+     *
+     * @return actor that received the material.
+     */
+    public Actor getBuyer() {
+        return buyer;
+    }
+
+    /**
+     * Lightweight accessor method.
+     *
+     * @return actor that delivered the material.
+     */
+    public Actor getSeller() {
+        return seller;
+    }
+
+    /**
+     * Lightweight accessor method.
+     *
+     * @return id of the material template that was traded.
+     */
+    public int getMaterialTemplateId() {
+        return materialTemplateId;
+    }
+
+    /**
+     * Lightweight accessor method.
+     *
+     * @return amount that was traded.
+     */
+    public long getQuantity() {
+        return quantity;
+    }
+
+    /**
+     * Lightweight accessor method.
+     *
+     * @return price paid per unit.
+     */
+    public long getPrice() {
+        return price;
+    }
+
+    /**
+     * @return money paid for the whole amount.
+     */
+    public long getValue() {
+        return quantity * price;
+    }
+}
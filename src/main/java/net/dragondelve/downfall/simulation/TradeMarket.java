@@ -0,0 +1,350 @@
+// Copyright 2023 Prokhor Kalinin
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package net.dragondelve.downfall.simulation;
+
+import net.dragondelve.downfall.realm.Actor;
+import net.dragondelve.downfall.realm.template.VisualMaterialTemplate;
+import net.dragondelve.downfall.util.RulesView;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lets actors trade exportable materials with each other. Every exportable material has an OrderBook of limit orders to buy and to sell it,
+ * which are matched and settled into the stockpiles and treasuries of the actors once per turn.
+ * <p>
+ * Orders can be submitted from any number of threads at the same time, for example by the AI of every actor on a thread of its own: the order books and
+ * the actors of the market are fixed when it is created, so submitting an order only appends it to a lock-free queue. Submitting does not check whether an actor
+ * can deliver or pay, that is checked when the orders are settled.
+ * <p>
+ * settle() is called once all orders of a turn have been submitted. The orders of every book are sorted in parallel, bids by descending and asks by ascending limit price.
+ * Orders with the same limit price are served by the position of their actor among the actors of the market, starting with a different actor every turn, and then
+ * in the order each actor submitted them, so the outcome does not depend on how submitting threads were scheduled. Then the books are matched one after another:
+ * the best bid trades with the best ask while the bid is at least the ask, at the price halfway between the two limits, as much as the seller has in stock
+ * and the buyer can pay for. Orders of an actor that cross each other cancel out. Orders that are not filled are dropped at the end of the turn.
+ * <p>
+ * Prices and exportability are read from the material templates when the market is created. Must not be settled while orders are submitted,
+ * and should be settled on the JavaFX Application Thread if an actor of the market is displayed.
+ */
+public final class TradeMarket {
+    private static final int RANGE_SIZE = 4;
+
+    private final List<Actor> actors;
+    private final Map<Actor, Integer> positions = new IdentityHashMap<>();
+    private final AtomicLongArray sequences;
+    private final IdIndex bookIndex = new IdIndex();
+    private final OrderBook[] books;
+    private final IdIndex materials;
+    private final ForkJoinPool pool;
+    private int turn = 0;
+
+    /**
+     * Sorts order books on the common ForkJoinPool and indexes materials with a RulesIndex of its own.
+     *
+     * @param rules  rules that provide the exportable materials and their default prices.
+     * @param actors actors that trade on the market.
+     */
+    public TradeMarket(RulesView rules, List<? extends Actor> actors) {
+        this(rules, new RulesIndex(rules), actors, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Indexes materials with a RulesIndex of its own.
+     *
+     * @param rules  rules that provide the exportable materials and their default prices.
+     * @param actors actors that trade on the market.
+     * @param pool   pool the order books are sorted on.
+     */
+    public TradeMarket(RulesView rules, List<? extends Actor> actors, ForkJoinPool pool) {
+        this(rules, new RulesIndex(rules), actors, pool);
+    }
+
+    /**
+     * Creates an order book for every exportable material. The first template of every id is used.
+     *
+     * @param rules  rules that provide the exportable materials and their default prices.
+     * @param index  dense indices of the templates of the rules, usually Configurator.getRulesIndex(). The dense stockpiles of the actors are read with its material index.
+     * @param actors actors that trade on the market.
+     * @param pool   pool the order books are sorted on.
+     */
+    public TradeMarket(RulesView rules, RulesIndex index, List<? extends Actor> actors, ForkJoinPool pool) {
+        this.actors = List.copyOf(actors);
+        this.materials = index.getMaterials();
+        for (int position = 0; position < this.actors.size(); position++)
+            positions.putIfAbsent(this.actors.get(position), position);
+        this.sequences = new AtomicLongArray(this.actors.size());
+        this.pool = pool;
+
+        List<OrderBook> exportable = new ArrayList<>();
+        IdIndex templates = new IdIndex();
+        for (VisualMaterialTemplate template : rules.getMaterialTemplates()) {
+            if (templates.indexOf(template.getId()) >= 0)
+                continue;
+            templates.add(template.getId());
+            if (template.isExportable()) {
+                bookIndex.add(template.getId());
+                materials.add(template.getId());
+                exportable.add(new OrderBook(template.getId(), Math.max(template.getDefImportPrice(), 0), Math.max(template.getDefExportPrice(), 0)));
+            }
+        }
+        books = exportable.toArray(new OrderBook[0]);
+    }
+
+    /**
+     * Submits an order to buy at the default import price of the material. Safe to call from any thread.
+     *
+     * @param actor              actor that buys.
+     * @param materialTemplateId id of the material template to buy.
+     * @param quantity           amount to buy.
+     * @return the submitted order or null if the material cannot be traded.
+     */
+    public TradeOrder buy(Actor actor, Integer materialTemplateId, long quantity) {
+        OrderBook book = getOrderBook(materialTemplateId);
+        return book == null ? null : submit(actor, book, true, quantity, book.getDefaultBuyPrice());
+    }
+
+    /**
+     * Submits an order to buy. Safe to call from any thread.
+     *
+     * @param actor              actor that buys.
+     * @param materialTemplateId id of the material template to buy.
+     * @param quantity           amount to buy.
+     * @param limitPrice         highest price the actor pays per unit.
+     * @return the submitted order or null if the material cannot be traded.
+     */
+    public TradeOrder buy(Actor actor, Integer materialTemplateId, long quantity, long limitPrice) {
+        OrderBook book = getOrderBook(materialTemplateId);
+        return book == null ? null : submit(actor, book, true, quantity, limitPrice);
+    }
+
+    /**
+     * Submits an order to sell at the default export price of the material. Safe to call from any thread.
+     *
+     * @param actor              actor that sells.
+     * @param materialTemplateId id of the material template to sell.
+     * @param quantity           amount to sell.
+     * @return the submitted order or null if the material cannot be traded.
+     */
+    public TradeOrder sell(Actor actor, Integer materialTemplateId, long quantity) {
+        OrderBook book = getOrderBook(materialTemplateId);
+        return book == null ? null : submit(actor, book, false, quantity, book.getDefaultSellPrice());
+    }
+
+    /**
+     * Submits an order to sell. Safe to call from any thread.
+     *
+     * @param actor              actor that sells.
+     * @param materialTemplateId id of the material template to sell.
+     * @param quantity           amount to sell.
+     * @param limitPrice         lowest price the actor accepts per unit.
+     * @return the submitted order or null if the material cannot be traded.
+     */
+    public TradeOrder sell(Actor actor, Integer materialTemplateId, long quantity, long limitPrice) {
+        OrderBook book = getOrderBook(materialTemplateId);
+        return book == null ? null : submit(actor, book, false, quantity, limitPrice);
+    }
+
+    /**
+     * Matches the orders of every book and settles the trades into the stockpiles and treasuries of the actors, then moves on to the next turn.
+     * A trade is only filled as far as the treasury of the seller can take the money without exceeding the range of an Integer, so no money is lost.
+     *
+     * @return all trades of the turn, by order book and then in the order they were matched.
+     */
+    public List<Trade> settle() {
+        TradeOrder[][] bids = new TradeOrder[books.length][];
+        TradeOrder[][] asks = new TradeOrder[books.length][];
+        int rotation = actors.isEmpty() ? 0 : turn % actors.size();
+        Comparator<TradeOrder> bidOrder = (first, second) -> {
+            int comparison = Long.compare(second.getLimitPrice(), first.getLimitPrice());
+            return comparison != 0 ? comparison : comparePriority(first, second, rotation);
+        };
+        Comparator<TradeOrder> askOrder = (first, second) -> {
+            int comparison = Long.compare(first.getLimitPrice(), second.getLimitPrice());
+            return comparison != 0 ? comparison : comparePriority(first, second, rotation);
+        };
+        pool.invoke(new RangeTask(0, books.length, RANGE_SIZE, (from, to) -> {
+            for (int book = from; book < to; book++) {
+                bids[book] = books[book].drainBids();
+                asks[book] = books[book].drainAsks();
+                Arrays.sort(bids[book], bidOrder);
+                Arrays.sort(asks[book], askOrder);
+            }
+        }));
+
+        Settlement settlement = new Settlement();
+        for (int book = 0; book < books.length; book++)
+            settlement.match(book, bids[book], asks[book]);
+        settlement.apply();
+        for (int position = 0; position < actors.size(); position++)
+            sequences.set(position, 0);
+        turn++;
+        return settlement.trades;
+    }
+
+    /**
+     * @param materialTemplateId id of a material template.
+     * @return order book of the material or null if it cannot be traded.
+     */
+    public OrderBook getOrderBook(Integer materialTemplateId) {
+        if (materialTemplateId == null)
+            return null;
+        int book = bookIndex.indexOf(materialTemplateId);
+        return book < 0 ? null : books[book];
+    }
+
+    /**
+     * Lightweight accessor method.
+     *
+     * @return actors that trade on the market.
+     */
+    public List<Actor> getActors() {
+        return actors;
+    }
+
+    /**
+     * Lightweight accessor method.
+     *
+     * @return number of turns that have been settled.
+     */
+    public int getTurn() {
+        return turn;
+    }
+
+    /**
+     * Orders with the same limit price are served by the position of their actor counted from the actor that goes first this turn,
+     * then in the order the actor submitted them. Spelled out instead of chaining Comparators, as sorting the books is the bulk of settling.
+     *
+     * @param first    an order.
+     * @param second   another order of the same book and limit price.
+     * @param rotation position of the actor that goes first this turn.
+     * @return negative if the first order is served first, positive if the second one is.
+     */
+    private int comparePriority(TradeOrder first, TradeOrder second, int rotation) {
+        int comparison = Integer.compare(Math.floorMod(first.getActorPosition() - rotation, actors.size()), Math.floorMod(second.getActorPosition() - rotation, actors.size()));
+        return comparison != 0 ? comparison : Long.compare(first.getSequence(), second.getSequence());
+    }
+
+    /**
+     * Validates an order and adds it to its book.
+     *
+     * @param actor      actor that submits the order.
+     * @param book       book of the material.
+     * @param buy        true for an order to buy, false for an order to sell.
+     * @param quantity   amount to be traded.
+     * @param limitPrice highest price a buyer pays or lowest price a seller accepts per unit.
+     * @return the submitted order.
+     * @throws IllegalArgumentException if the actor does not trade on this market, the quantity is not positive or the price is negative.
+     */
+    private TradeOrder submit(Actor actor, OrderBook book, boolean buy, long quantity, long limitPrice) {
+        Integer position = positions.get(actor);
+        if (position == null)
+            throw new IllegalArgumentException("Actor " + actor.getId() + " does not trade on this market");
+        if (quantity <= 0)
+            throw new IllegalArgumentException("Quantity must be positive: " + quantity);
+        if (limitPrice < 0)
+            throw new IllegalArgumentException("Limit price must not be negative: " + limitPrice);
+        TradeOrder order = new TradeOrder(actor, position, book.getMaterialTemplateId(), buy, quantity, limitPrice, sequences.getAndIncrement(position));
+        book.add(order);
+        return order;
+    }
+
+    /**
+     * Dense stockpiles and treasuries of the actors that take part in the trades of a turn, picked up when an actor first trades and written back by apply().
+     */
+    private final class Settlement {
+        private final ObservableStockpile[] stockpiles = new ObservableStockpile[actors.size()];
+        private final long[] treasuries = new long[actors.size()];
+        private final List<Trade> trades = new ArrayList<>();
+
+        /**
+         * Matches the sorted orders of a book and moves materials and money between the stockpiles and treasuries.
+         *
+         * @param book index of the book.
+         * @param bids orders to buy, best first.
+         * @param asks orders to sell, best first.
+         */
+        private void match(int book, TradeOrder[] bids, TradeOrder[] asks) {
+            int material = materials.indexOf(books[book].getMaterialTemplateId());
+            int bid = 0;
+            int ask = 0;
+            long bidLeft = bids.length > 0 ? bids[0].getQuantity() : 0;
+            long askLeft = asks.length > 0 ? asks[0].getQuantity() : 0;
+            while (bid < bids.length && ask < asks.length && bids[bid].getLimitPrice() >= asks[ask].getLimitPrice()) {
+                int buyer = bids[bid].getActorPosition();
+                int seller = asks[ask].getActorPosition();
+                long quantity;
+                if (buyer == seller) {
+                    quantity = Math.min(bidLeft, askLeft);
+                } else {
+                    DenseStockpile sellerStock = stockpile(seller);
+                    DenseStockpile buyerStock = stockpile(buyer);
+                    long price = (bids[bid].getLimitPrice() + asks[ask].getLimitPrice()) >>> 1;
+                    long affordable = price == 0 ? Long.MAX_VALUE : treasuries[buyer] / price;
+                    long receivable = price == 0 ? Long.MAX_VALUE : (Integer.MAX_VALUE - treasuries[seller]) / price;
+                    quantity = Math.max(0, Math.min(Math.min(bidLeft, askLeft), Math.min(sellerStock.get(material), Math.min(affordable, receivable))));
+                    if (quantity > 0) {
+                        sellerStock.add(material, -quantity);
+                        buyerStock.add(material, quantity);
+                        treasuries[buyer] -= quantity * price;
+                        treasuries[seller] += quantity * price;
+                        trades.add(new Trade(actors.get(buyer), actors.get(seller), books[book].getMaterialTemplateId(), quantity, price));
+                    }
+                    if (sellerStock.get(material) <= 0 || price > 0 && Integer.MAX_VALUE - treasuries[seller] < price)
+                        askLeft = quantity;
+                    if (price > 0 && treasuries[buyer] < price)
+                        bidLeft = quantity;
+                }
+                bidLeft -= quantity;
+                askLeft -= quantity;
+                if (bidLeft <= 0 && ++bid < bids.length)
+                    bidLeft = bids[bid].getQuantity();
+                if (askLeft <= 0 && ++ask < asks.length)
+                    askLeft = asks[ask].getQuantity();
+            }
+        }
+
+        /**
+         * Picks up the dense stockpile and reads the treasury of an actor the first time it trades.
+         *
+         * @param position position of the actor.
+         * @return stockpile of the actor.
+         */
+        private DenseStockpile stockpile(int position) {
+            if (stockpiles[position] == null) {
+                Actor actor = actors.get(position);
+                stockpiles[position] = actor.getDenseStockpile(materials);
+                treasuries[position] = actor.getTreasury();
+            }
+            return stockpiles[position].getStockpile();
+        }
+
+        /**
+         * Writes the stockpiles and treasuries of all actors that traded back to them. Matching keeps every treasury that changed within the range of an Integer.
+         */
+        private void apply() {
+            for (int position = 0; position < stockpiles.length; position++) {
+                if (stockpiles[position] == null)
+                    continue;
+                stockpiles[position].refresh();
+                actors.get(position).setTreasury((int) treasuries[position]);
+            }
+        }
+    }
+}
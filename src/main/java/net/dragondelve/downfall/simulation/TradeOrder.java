@@ -0,0 +1,111 @@
+// Copyright 2023 Prokhor Kalinin
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package net.dragondelve.downfall.simulation;
+
+import net.dragondelve.downfall.realm.Actor;
+
+/**
+ * Limit order of an actor to buy or sell a material on a TradeMarket. Orders are only good for the turn they were submitted in.
+ */
+public final class TradeOrder {
+    private final Actor actor;
+    private final int actorPosition;
+    private final int materialTemplateId;
+    private final boolean buy;
+    private final long quantity;
+    private final long limitPrice;
+    private final long sequence;
+
+    /**
+     * @param actor              actor that submitted the order.
+     * @param actorPosition      position of the actor among the actors of the market.
+     * @param materialTemplateId id of the material template that is traded.
+     * @param buy                true for an order to buy, false for an order to sell.
+     * @param quantity           amount to be traded, always positive.
+     * @param limitPrice         highest price a buyer pays or lowest price a seller accepts per unit.
+     * @param sequence           number of orders the actor submitted before this one.
+     */
+    TradeOrder(Actor actor, int actorPosition, int materialTemplateId, boolean buy, long quantity, long limitPrice, long sequence) {
+        this.actor = actor;
+        this.actorPosition = actorPosition;
+        this.materialTemplateId = materialTemplateId;
+        this.buy = buy;
+        this.quantity = quantity;
+        this.limitPrice = limitPrice;
+        this.sequence = sequence;
+    }
+
+    /**
+     * Lightweight accessor method.
+     *
+     * @return actor that submitted the order.
+     */
+    public Actor getActor() {
+        return actor;
+    }
+
+    /**
+     * Lightweight accessor method.
+     *
+     * @return id of the material template that is traded.
+     */
+    public int getMaterialTemplateId() {
+        return materialTemplateId;
+    }
+
+    /**
+     * Lightweight accessor method.
+     *
+     * @return true for an order to buy, false for an order to sell.
+     */
+    public boolean isBuy() {
+        return buy;
+    }
+
+    /**
+     * Lightweight accessor method.
+     *
+     * @return amount to be traded.
+     */
+    public long getQuantity() {
+        return quantity;
+    }
+
+    /**
+     * Lightweight accessor method.
+     *
+     * @return highest price a buyer pays or lowest price a seller accepts per unit.
+     */
+    public long getLimitPrice() {
+        return limitPrice;
+    }
+
+    /**
+     * Lightweight accessor method.
+     *
+     * @return position of the actor among the actors of the market.
+     */
+    int getActorPosition() {
+        return actorPosition;
+    }
+
+    /**
+     * Lightweight accessor method.
+     *
+     * @return number of orders the actor submitted before this one.
+     */
+    long getSequence() {
+        return sequence;
+    }
+}
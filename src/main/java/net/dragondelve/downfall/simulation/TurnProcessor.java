@@ -0,0 +1,76 @@
+// Copyright 2023 Prokhor Kalinin
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package net.dragondelve.downfall.simulation;
+
+import net.dragondelve.downfall.realm.Actor;
+import net.dragondelve.downfall.util.RulesView;
+
+import java.util.List;
+
+/**
+ * Advances an actor turn by turn: its operating buildings produce, buildings whose construction is finished are added to it,
+ * then its stockpile spoils. This is what the Next Turn action and headless runs do every turn.
+ * <p>
+ * The production engine and the spoilage pass are compiled from the rules once, so the processor has to be created again after the rules have been changed.
+ * Should be used on the JavaFX Application Thread if the actor is displayed.
+ */
+public final class TurnProcessor {
+    private final Actor actor;
+    private final ConstructionQueue constructionQueue;
+    private final ProductionEngine engine;
+    private final SpoilagePass spoilagePass;
+
+    /**
+     * @param rules             rules the actor is advanced by.
+     * @param index             dense indices of the templates of the rules, usually Configurator.getRulesIndex().
+     * @param actor             actor to be advanced.
+     * @param constructionQueue buildings of the actor that are under construction.
+     */
+    public TurnProcessor(RulesView rules, RulesIndex index, Actor actor, ConstructionQueue constructionQueue) {
+        this.actor = actor;
+        this.constructionQueue = constructionQueue;
+        this.engine = new ProductionEngine(rules, index);
+        this.spoilagePass = new SpoilagePass(rules, engine);
+    }
+
+    /**
+     * Advances the actor by one turn.
+     *
+     * @return what happened during the turn.
+     */
+    public TurnResult advanceTurn() {
+        ProductionReport productionReport = engine.advanceTurn(actor);
+        List<ConstructionProject> completedProjects = constructionQueue.advanceTurn();
+        SpoilageReport spoilageReport = spoilagePass.apply(actor);
+        return new TurnResult(productionReport, completedProjects, spoilageReport);
+    }
+
+    /**
+     * Lightweight accessor method.
+     *
+     * @return engine that runs the production of the actor.
+     */
+    public ProductionEngine getEngine() {
+        return engine;
+    }
+
+    /**
+     * Lightweight accessor method.
+     *
+     * @return pass that lets the stockpile of the actor spoil. Spoilage rates can be set on it.
+     */
+    public SpoilagePass getSpoilagePass() {
+        return spoilagePass;
+    }
+}
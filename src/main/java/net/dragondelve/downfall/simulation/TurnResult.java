@@ -0,0 +1,63 @@
+// Copyright 2023 Prokhor Kalinin
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package net.dragondelve.downfall.simulation;
+
+import java.util.List;
+
+/**
+ * Outcome of a turn of an actor: what its buildings consumed and produced, which constructions were completed and what spoiled.
+ */
+public final class TurnResult {
+    private final ProductionReport productionReport;
+    private final List<ConstructionProject> completedProjects;
+    private final SpoilageReport spoilageReport;
+
+    /**
+     * @param productionReport  what the buildings of the actor consumed and produced.
+     * @param completedProjects construction projects that were completed.
+     * @param spoilageReport    what spoiled in the stockpile of the actor at the end of the turn.
+     */
+    TurnResult(ProductionReport productionReport, List<ConstructionProject> completedProjects, SpoilageReport spoilageReport) {
+        this.productionReport = productionReport;
+        this.completedProjects = completedProjects;
+        this.spoilageReport = spoilageReport;
+    }
+
+    /**
+     * Lightweight accessor method.
+     *
+     * @return what the buildings of the actor consumed and produced.
+     */
+    public ProductionReport getProductionReport() {
+        return productionReport;
+    }
+
+    /**
+     * Lightweight accessor method.
+     *
+     * @return construction projects that were completed, in the order they were completed.
+     */
+    public List<ConstructionProject> getCompletedProjects() {
+        return completedProjects;
+    }
+
+    /**
+     * Lightweight accessor method.
+     *
+     * @return what spoiled in the stockpile of the actor at the end of the turn.
+     */
+    public SpoilageReport getSpoilageReport() {
+        return spoilageReport;
+    }
+}
@@ -0,0 +1,158 @@
+// Copyright 2023 Prokhor Kalinin
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package net.dragondelve.downfall.simulation;
+
+import net.dragondelve.downfall.realm.Actor;
+import net.dragondelve.downfall.realm.World;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+
+/**
+ * Advances every actor of a World by one turn, running the production of the actors in parallel on a ForkJoinPool.
+ * <p>
+ * A turn has three phases. First the dense stockpiles of all actors are bound on the calling thread, which indexes their materials, so the shared material IdIndex is only read afterwards.
+ * Then the actors are split into ranges that are forked until a range is small enough, and every range advances the production of its actors one after another.
+ * Actors do not share anything but the engine, which is only read, and every range uses an AllocationPolicy of its own. Last the reports of the actors are reduced
+ * into a WorldTurnReport on the calling thread in the order of the actors, which is where effects that involve several actors belong, so the outcome of a turn
+ * does not depend on the number of threads or on the order the ranges finished in.
+ * If a SpoilagePass is set it is applied to the stockpile of every actor right after its production, on the same thread.
+ * <p>
+ * Stockpiles of the actors are written from worker threads, so no actor of the world should be displayed while a turn runs.
+ * The user's realm can be advanced with ProductionEngine.advanceTurn on the JavaFX Application Thread instead.
+ */
+public final class WorldTurnExecutor {
+    private static final int TASKS_PER_THREAD = 4;
+
+    private final ProductionEngine engine;
+    private final ForkJoinPool pool;
+    private final Supplier<AllocationPolicy> allocationPolicies;
+    private SpoilagePass spoilagePass;
+
+    /**
+     * Runs turns on the common ForkJoinPool and serves templates in the order of the rules.
+     *
+     * @param engine engine that runs the production of every actor.
+     */
+    public WorldTurnExecutor(ProductionEngine engine) {
+        this(engine, ForkJoinPool.commonPool(), PriorityAllocationPolicy::new);
+    }
+
+    /**
+     * @param engine             engine that runs the production of every actor.
+     * @param pool               pool the production of the actors is run on.
+     * @param allocationPolicies creates an allocation policy for every range of actors, as allocation policies may keep buffers and cannot be shared between threads.
+     */
+    public WorldTurnExecutor(ProductionEngine engine, ForkJoinPool pool, Supplier<AllocationPolicy> allocationPolicies) {
+        this.engine = engine;
+        this.pool = pool;
+        this.allocationPolicies = allocationPolicies;
+    }
+
+    /**
+     * Advances the production of every actor of the world by one turn and moves the world on to the next turn.
+     * Blocks until all actors have produced.
+     *
+     * @param world world whose actors produce.
+     * @return production report of every actor and the totals of the world.
+     */
+    public WorldTurnReport advanceTurn(World world) {
+        List<Actor> actors = new ArrayList<>(world.getActors());
+        bindStockpiles(actors);
+
+        ProductionReport[] reports = new ProductionReport[actors.size()];
+        SpoilageReport[] spoilage = spoilagePass == null ? null : new SpoilageReport[actors.size()];
+        int rangeSize = Math.max(1, actors.size() / (pool.getParallelism() * TASKS_PER_THREAD));
+        SpoilagePass spoilagePass = this.spoilagePass;
+        pool.invoke(new RangeTask(0, actors.size(), rangeSize, (from, to) -> {
+            AllocationPolicy allocationPolicy = allocationPolicies.get();
+            for (int position = from; position < to; position++) {
+                Actor actor = actors.get(position);
+                if (spoilagePass == null)
+                    reports[position] = engine.advanceTurn(actor, allocationPolicy);
+                else
+                    advanceActor(actor, allocationPolicy, spoilagePass, reports, spoilage, position);
+            }
+        }));
+
+        WorldTurnReport report = new WorldTurnReport(engine, world.getTurn(), reports, spoilage);
+        world.setTurn(world.getTurn() + 1);
+        return report;
+    }
+
+    /**
+     * Lightweight accessor method.
+     *
+     * @return engine that runs the production of every actor.
+     */
+    public ProductionEngine getEngine() {
+        return engine;
+    }
+
+    /**
+     * Lightweight accessor method.
+     *
+     * @return pass applied to every stockpile after production, or null if nothing spoils.
+     */
+    public SpoilagePass getSpoilagePass() {
+        return spoilagePass;
+    }
+
+    /**
+     * Lightweight mutator method.
+     *
+     * @param spoilagePass pass applied to every stockpile after production, created with the engine of this executor. Null if nothing spoils.
+     */
+    public void setSpoilagePass(SpoilagePass spoilagePass) {
+        this.spoilagePass = spoilagePass;
+    }
+
+    /**
+     * Lightweight accessor method.
+     *
+     * @return pool the production of the actors is run on.
+     */
+    public ForkJoinPool getPool() {
+        return pool;
+    }
+
+    /**
+     * Binds the dense stockpile of every actor to the material IdIndex of the engine, which appends materials that are not known yet to it, so the workers never change it.
+     *
+     * @param actors actors of the world.
+     */
+    private void bindStockpiles(List<Actor> actors) {
+        for (Actor actor : actors)
+            actor.getDenseStockpile(engine.getMaterials());
+    }
+
+    /**
+     * Runs the production of an actor and lets its stockpile spoil, writing the amounts back to the stockpile list only once.
+     *
+     * @param actor            actor that produces.
+     * @param allocationPolicy allocation policy of the range of the actor.
+     * @param spoilagePass     pass applied to the stockpile after production.
+     * @param reports          production report of every actor, written at the position of the actor.
+     * @param spoilage         spoilage report of every actor, written at the position of the actor.
+     * @param position         position of the actor.
+     */
+    private void advanceActor(Actor actor, AllocationPolicy allocationPolicy, SpoilagePass spoilagePass, ProductionReport[] reports, SpoilageReport[] spoilage, int position) {
+        ObservableStockpile stockpile = actor.getDenseStockpile(engine.getMaterials());
+        reports[position] = engine.advanceTurn(stockpile.getStockpile(), actor.getBuildingCounts(), allocationPolicy);
+        spoilage[position] = spoilagePass.apply(stockpile.getStockpile());
+        stockpile.refresh();
+    }
+}
@@ -0,0 +1,167 @@
+// Copyright 2023 Prokhor Kalinin
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package net.dragondelve.downfall.simulation;
+
+/**
+ * Outcome of a turn of a whole World: the production and spoilage report of every actor and what all actors consumed, produced and lost together.
+ * The totals are reduced from the reports of the actors in the order of the actors of the world, so they are the same whatever the number of threads that ran the turn.
+ */
+public final class WorldTurnReport {
+    private final ProductionEngine engine;
+    private final int turn;
+    private final ProductionReport[] reports;
+    private final long[] consumed;
+    private final long[] produced;
+    private final SpoilageReport[] spoilage;
+    private final long[] lost;
+    private long runningBuildings = 0;
+    private long stalledBuildings = 0;
+
+    /**
+     * Reduces the reports of all actors into the totals of the world.
+     *
+     * @param engine  engine that ran the turn.
+     * @param turn    number of the turn that was run.
+     * @param reports  production report of every actor in the order of the actors of the world.
+     * @param spoilage spoilage report of every actor in the order of the actors of the world, null if nothing spoiled.
+     */
+    WorldTurnReport(ProductionEngine engine, int turn, ProductionReport[] reports, SpoilageReport[] spoilage) {
+        this.engine = engine;
+        this.turn = turn;
+        this.reports = reports;
+        this.spoilage = spoilage;
+        this.consumed = new long[engine.getMaterialCount()];
+        this.produced = new long[engine.getMaterialCount()];
+        this.lost = new long[engine.getMaterialCount()];
+        for (ProductionReport report : reports) {
+            long[] actorConsumed = report.getConsumedArray();
+            long[] actorProduced = report.getProducedArray();
+            for (int material = 0; material < consumed.length; material++) {
+                consumed[material] += actorConsumed[material];
+                produced[material] += actorProduced[material];
+            }
+            runningBuildings += report.getRunningBuildings();
+            stalledBuildings += report.getStalledBuildings();
+        }
+        if (spoilage != null) {
+            for (SpoilageReport report : spoilage) {
+                long[] actorLost = report.getLostArray();
+                for (int material = 0; material < lost.length; material++)
+                    lost[material] += actorLost[material];
+            }
+        }
+    }
+
+    /**
+     * Lightweight accessor method.
+     *
+     * @return number of the turn that was run.
+     */
+    public int getTurn() {
+        return turn;
+    }
+
+    /**
+     * Lightweight accessor method.
+     *
+     * @return number of actors that took part in the turn.
+     */
+    public int getActorCount() {
+        return reports.length;
+    }
+
+    /**
+     * @param position position of an actor among the actors of the world at the start of the turn.
+     * @return production report of the actor.
+     */
+    public ProductionReport getReport(int position) {
+        return reports[position];
+    }
+
+    /**
+     * @param position position of an actor among the actors of the world at the start of the turn.
+     * @return spoilage report of the actor or null if nothing spoiled during the turn.
+     */
+    public SpoilageReport getSpoilageReport(int position) {
+        return spoilage == null ? null : spoilage[position];
+    }
+
+    /**
+     * @param materialTemplateId id of a material template.
+     * @return amount of the material that spoiled in the stockpiles of all actors at the end of the turn.
+     */
+    public long getLost(Integer materialTemplateId) {
+        int index = engine.getMaterialIndex(materialTemplateId);
+        return index < 0 ? 0 : lost[index];
+    }
+
+    /**
+     * @param materialTemplateId id of a material template.
+     * @return amount of the material consumed by all actors during the turn.
+     */
+    public long getConsumed(Integer materialTemplateId) {
+        int index = engine.getMaterialIndex(materialTemplateId);
+        return index < 0 ? 0 : consumed[index];
+    }
+
+    /**
+     * @param materialTemplateId id of a material template.
+     * @return amount of the material produced by all actors during the turn.
+     */
+    public long getProduced(Integer materialTemplateId) {
+        int index = engine.getMaterialIndex(materialTemplateId);
+        return index < 0 ? 0 : produced[index];
+    }
+
+    /**
+     * Lightweight accessor method.
+     *
+     * @return engine that ran the turn.
+     */
+    ProductionEngine getEngine() {
+        return engine;
+    }
+
+    /**
+     * @return amount consumed by all actors by material index. Not a copy.
+     */
+    long[] getConsumedArray() {
+        return consumed;
+    }
+
+    /**
+     * @return amount produced by all actors by material index. Not a copy.
+     */
+    long[] getProducedArray() {
+        return produced;
+    }
+
+    /**
+     * Lightweight accessor method.
+     *
+     * @return number of buildings of all actors that produced during the turn.
+     */
+    public long getRunningBuildings() {
+        return runningBuildings;
+    }
+
+    /**
+     * Lightweight accessor method.
+     *
+     * @return number of buildings of all actors that were operating but lacked inputs.
+     */
+    public long getStalledBuildings() {
+        return stalledBuildings;
+    }
+}
@@ -103,6 +103,7 @@ public final class BuildingsEditorController implements StageController {
         //Configuring table columns
         LogoTableColumn<VisualBuildingTemplate> buildingLogoColumn = new LogoTableColumn<>();
         buildingLogoColumn.setDefaultSizePolicy();
+        buildingLogoColumn.setPlaceholderPathname(DownfallUtil.DEFAULT_BUILDING_GFX_PATHNAME);
         buildingLogoColumn.setCellValueFactory(e -> e.getValue().pathToGFXProperty());
 
         TableColumn<VisualBuildingTemplate, String> buildingNameColumn = new TableColumn<>("Building");
@@ -166,7 +167,7 @@ public final class BuildingsEditorController implements StageController {
 
         ConversionFetcher<Material, VisualMaterialTemplate> conversionFetcher = new ConversionMaterialFetcher();
         //TODO: Investigate whether this conversion is a good idea;
-        conversionFetcher.initialize(stage, FXCollections.observableList(Configurator.getInstance().getRules().getMaterialTemplates()));
+        conversionFetcher.initialize(stage, FXCollections.observableList(Configurator.getInstance().getRulesView().getMaterialTemplates()));
         editor.setFetcher(conversionFetcher);
     }
 
@@ -115,7 +115,7 @@ public class RealmEditorController implements StageController {
         tagColumn.setCellValueFactory(e -> e.getValue().tagProperty());
 
         VisualFetcher<Tag> visualTagFetcher = new VisualTagFetcher();
-        visualTagFetcher.initialize(stage, FXCollections.observableList(Configurator.getInstance().getRules().getActorTags()));
+        visualTagFetcher.initialize(stage, FXCollections.observableList(Configurator.getInstance().getRulesView().getActorTags()));
         tagEditor.setFetcher(visualTagFetcher);
         tagEditor.setItems(realm.getTags());
         tagEditor.getTableView().getColumns().add(tagColumn);
@@ -155,7 +155,7 @@ public class RealmEditorController implements StageController {
         stockpileAmountColumn.setEditable(true);
 
         ConversionFetcher<Material, VisualMaterialTemplate> visualMaterialFetcher = new ConversionMaterialFetcher();
-        visualMaterialFetcher.initialize(stage, FXCollections.observableList(Configurator.getInstance().getRules().getMaterialTemplates()));
+        visualMaterialFetcher.initialize(stage, FXCollections.observableList(Configurator.getInstance().getRulesView().getMaterialTemplates()));
         stockpileEditor.setFetcher(visualMaterialFetcher);
         stockpileEditor.setItems(realm.getStockpile());
         stockpileEditor.getTableView().getColumns().addAll(stockpileLogoColumn, stockpileNameColumn, stockpileAmountColumn);
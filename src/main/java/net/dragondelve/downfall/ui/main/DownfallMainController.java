@@ -14,6 +14,7 @@
 
 package net.dragondelve.downfall.ui.main;
 
+import javafx.concurrent.Task;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Node;
@@ -28,6 +29,10 @@ import javafx.util.converter.IntegerStringConverter;
 import javafx.util.converter.NumberStringConverter;
 import net.dragondelve.downfall.realm.Material;
 import net.dragondelve.downfall.realm.template.VisualMaterialTemplate;
+import net.dragondelve.downfall.simulation.ProductionReport;
+import net.dragondelve.downfall.simulation.SpoilageReport;
+import net.dragondelve.downfall.simulation.TurnProcessor;
+import net.dragondelve.downfall.simulation.TurnResult;
 import net.dragondelve.downfall.ui.StageController;
 import net.dragondelve.downfall.ui.editor.BuildingsEditorController;
 import net.dragondelve.downfall.ui.editor.MaterialsEditorController;
@@ -75,6 +80,10 @@ public class DownfallMainController implements StageController {
     @FXML
     private MenuItem saveRealmTo;
     @FXML
+    private MenuItem nextTurnItem;
+    @FXML
+    private MenuItem forecastItem;
+    @FXML
     private MenuItem configureItem;
     @FXML
     private MenuItem exportRulesItem;
@@ -94,6 +103,14 @@ public class DownfallMainController implements StageController {
     private Label treasuryLabel;
     @FXML
     private TableView<Material> stockpileTableView;
+    @FXML
+    private ToolBar progressToolBar;
+    @FXML
+    private Label progressLabel;
+    @FXML
+    private ProgressBar progressBar;
+    @FXML
+    private Button cancelProgressButton;
     private Stage stage;
     private Double xOffset;
     private Double yOffset;
@@ -117,6 +134,8 @@ public class DownfallMainController implements StageController {
         loadRealm.setOnAction(e -> loadRealmAction());
         saveRealm.setOnAction(e -> saveRealmAction());
         saveRealmTo.setOnAction(e -> saveRealmToAction());
+        nextTurnItem.setOnAction(e -> nextTurnAction());
+        forecastItem.setOnAction(e -> openEditor(DownfallUtil.getInstance().getURLForecastFXML(), new ForecastController(), "Forecast"));
 
         rootPane.getStylesheets().clear();
         rootPane.getStylesheets().add(DownfallUtil.MAIN_CSS_RESOURCE);
@@ -207,13 +226,14 @@ public class DownfallMainController implements StageController {
     }
 
     /**
-     * Exports current ruleset to an XML File at a destination selected by a user with a JavaFX FileChooser.
+     * Exports current ruleset to an XML or a compiled rules file at a destination selected by a user with a JavaFX FileChooser.
      * Saves the new destination as lastLoadedRules in the Configuration.
      */
     private void exportRules() {
         FileChooser fileChooser = new FileChooser();
         fileChooser.setTitle("Export Rules");
         fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("xml rules file", "*.xml"));
+        fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("compiled rules file", "*" + DownfallUtil.COMPILED_RULES_EXTENSION));
         fileChooser.setInitialDirectory(new File("rules"));
         File selectedFile = fileChooser.showSaveDialog(stage);
         if (selectedFile != null)
@@ -221,13 +241,14 @@ public class DownfallMainController implements StageController {
     }
 
     /**
-     * Imports and applies a ruleset from an XML File at a destination selected by a user with a JavaFX FileChooser.
+     * Imports and applies a ruleset from an XML or a compiled rules file at a destination selected by a user with a JavaFX FileChooser.
      * Saves the new destination as lastLoadedRules in the Configuration
      */
     private void importRules() {
         FileChooser fileChooser = new FileChooser();
         fileChooser.setTitle("Import Rules");
         fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("xml rules file", "*.xml"));
+        fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("compiled rules file", "*" + DownfallUtil.COMPILED_RULES_EXTENSION));
         fileChooser.setInitialDirectory(new File("rules"));
         File selectedFile = fileChooser.showOpenDialog(stage);
         if (selectedFile != null)
@@ -289,19 +310,36 @@ public class DownfallMainController implements StageController {
         FileChooser fileChooser = new FileChooser();
         fileChooser.setTitle("Choose Savegame");
         fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("xml save file", "*.xml"));
+        fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("binary save file", "*" + DownfallUtil.BINARY_SAVEGAME_EXTENSION));
         fileChooser.setInitialDirectory(new File("save"));
         File selectedFile = fileChooser.showOpenDialog(stage);
-        if (selectedFile != null) {
-            Configurator.getInstance().getSaveManager().loadFrom(selectedFile.getPath());
-            updateTabs();
-        }
+        if (selectedFile != null)
+            runInBackground(Configurator.getInstance().getSaveManager().loadFromInBackground(selectedFile.getPath()), this::updateTabs);
     }
 
     /**
-     * Saves test realm
+     * Saves test realm to the last savegame, asks for a savegame to save to if nothing has been saved or loaded yet
      */
     private void saveRealmAction() {
-        Configurator.getInstance().getSaveManager().saveToLast();
+        String pathname = Configurator.getInstance().getLastSavegamePathname();
+        if (pathname == null || pathname.isEmpty())
+            saveRealmToAction();
+        else
+            runInBackground(Configurator.getInstance().getSaveManager().saveToInBackground(pathname), () -> {});
+    }
+
+    /**
+     * Advances the user realm by one turn: its operating buildings consume their inputs and produce their outputs,
+     * then buildings whose construction is finished are added to it and ephemeral materials expire.
+     */
+    private void nextTurnAction() {
+        TurnResult result = new TurnProcessor(Configurator.getInstance().getRulesView(), Configurator.getInstance().getRulesIndex(), Configurator.getInstance().getUserRealm(), Configurator.getInstance().getConstructionQueue()).advanceTurn();
+        ProductionReport report = result.getProductionReport();
+        SpoilageReport spoilage = result.getSpoilageReport();
+        Logger.getLogger(DownfallUtil.DEFAULT_LOGGER).log(Level.FINE, "Turn advanced, " + report.getRunningBuildings() + " buildings produced, " + report.getStalledBuildings() + " lacked inputs and " + result.getCompletedProjects().size() + " constructions were completed");
+        if (!spoilage.isEmpty())
+            Logger.getLogger(DownfallUtil.DEFAULT_LOGGER).log(Level.FINE, spoilage.getTotalLost() + " materials spoiled: " + spoilage.getLostMaterials());
+        update();
     }
 
     /**
@@ -311,9 +349,59 @@ public class DownfallMainController implements StageController {
         FileChooser fileChooser = new FileChooser();
         fileChooser.setTitle("Choose Savegame");
         fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("xml save file", "*.xml"));
+        fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("binary save file", "*" + DownfallUtil.BINARY_SAVEGAME_EXTENSION));
         fileChooser.setInitialDirectory(new File("save"));
         File selectedFile = fileChooser.showSaveDialog(stage);
         if (selectedFile != null)
-            Configurator.getInstance().getSaveManager().saveTo(selectedFile.getPath());
+            runInBackground(Configurator.getInstance().getSaveManager().saveToInBackground(selectedFile.getPath()), () -> {});
+    }
+
+    /**
+     * Displays the progress of a background task in the progress bar at the bottom of the stage, lets the user cancel it
+     * and prevents other saves and loads from being started until it is done.
+     *
+     * @param task      started task to be tracked.
+     * @param onSuccess action to be executed on the JavaFX application thread if the task succeeds.
+     */
+    private void runInBackground(Task<?> task, Runnable onSuccess) {
+        setRealmMenuDisabled(true);
+        progressLabel.textProperty().bind(task.messageProperty());
+        progressBar.progressProperty().bind(task.progressProperty());
+        cancelProgressButton.setOnAction(e -> task.cancel());
+        progressToolBar.setManaged(true);
+        progressToolBar.setVisible(true);
+
+        task.setOnSucceeded(e -> {
+            hideProgress();
+            onSuccess.run();
+        });
+        task.setOnCancelled(e -> hideProgress());
+        task.setOnFailed(e -> {
+            hideProgress();
+            Logger.getLogger(DownfallUtil.DEFAULT_LOGGER).log(Level.WARNING, "Background savegame operation failed", task.getException());
+        });
+    }
+
+    /**
+     * Hides the progress bar and allows saves and loads to be started again.
+     */
+    private void hideProgress() {
+        progressLabel.textProperty().unbind();
+        progressBar.progressProperty().unbind();
+        progressToolBar.setVisible(false);
+        progressToolBar.setManaged(false);
+        setRealmMenuDisabled(false);
+    }
+
+    /**
+     * Disables or enables all menu items that save or load the user realm.
+     *
+     * @param disabled true to disable the items, false to enable them.
+     */
+    private void setRealmMenuDisabled(Boolean disabled) {
+        newRealm.setDisable(disabled);
+        loadRealm.setDisable(disabled);
+        saveRealm.setDisable(disabled);
+        saveRealmTo.setDisable(disabled);
     }
 }
@@ -0,0 +1,186 @@
+// Copyright 2023 Prokhor Kalinin
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package net.dragondelve.downfall.ui.main;
+
+import javafx.beans.property.ReadOnlyObjectWrapper;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import javafx.concurrent.Task;
+import javafx.fxml.FXML;
+import javafx.scene.chart.LineChart;
+import javafx.scene.chart.XYChart;
+import javafx.scene.control.Button;
+import javafx.scene.control.ProgressBar;
+import javafx.scene.control.TableColumn;
+import javafx.scene.control.TableView;
+import javafx.scene.control.TextField;
+import javafx.scene.layout.BorderPane;
+import javafx.stage.Stage;
+import net.dragondelve.downfall.simulation.ConstructionQueue;
+import net.dragondelve.downfall.simulation.ForecastTurn;
+import net.dragondelve.downfall.ui.StageController;
+import net.dragondelve.downfall.util.Configurator;
+import net.dragondelve.downfall.util.DownfallUtil;
+
+import java.util.List;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Controller class for the Forecast window. It forecasts the stockpile and the net worth of the user realm over a number of turns
+ * and shows every forecast turn in a chart and a table as soon as it has been computed. The treasury is not shown on its own, as the forecast does not change it.
+ * Controls /fxml/main/Forecast.fxml and is annotated with @FXML where it references that FXML file.
+ */
+public final class ForecastController implements StageController {
+    @FXML
+    private BorderPane rootPane;
+    @FXML
+    private TextField turnsField;
+    @FXML
+    private Button forecastButton;
+    @FXML
+    private Button cancelButton;
+    @FXML
+    private ProgressBar progressBar;
+    @FXML
+    private LineChart<Number, Number> forecastChart;
+    @FXML
+    private TableView<ForecastTurn> forecastTableView;
+    @FXML
+    private Button okButton;
+
+    private final ObservableList<ForecastTurn> turns = FXCollections.observableArrayList();
+    private final XYChart.Series<Number, Number> netWorthSeries = new XYChart.Series<>();
+    private final XYChart.Series<Number, Number> stockpileValueSeries = new XYChart.Series<>();
+    private Task<List<ForecastTurn>> task;
+    private Stage stage;
+
+    /**
+     * Initialize method that is called automatically after the FXML has finished loading. Initializes all UI elements before they are displayed.
+     */
+    @FXML
+    public void initialize() {
+        //init css
+        rootPane.getStylesheets().clear();
+        rootPane.getStylesheets().add(DownfallUtil.MAIN_CSS_RESOURCE);
+
+        //Configuring chart
+        netWorthSeries.setName("Net Worth");
+        stockpileValueSeries.setName("Stockpile Value");
+        forecastChart.getData().addAll(List.of(netWorthSeries, stockpileValueSeries));
+
+        //Configuring table
+        forecastTableView.setItems(turns);
+        forecastTableView.setColumnResizePolicy(TableView.CONSTRAINED_RESIZE_POLICY);
+        forecastTableView.getColumns().addAll(List.of(
+                createColumn("Turn", turn -> (long) turn.getTurn()),
+                createColumn("Stockpile Value", ForecastTurn::getStockpileValue),
+                createColumn("Net Worth", ForecastTurn::getNetWorth),
+                createColumn("Running", turn -> (long) turn.getRunningBuildings()),
+                createColumn("Stalled", turn -> (long) turn.getStalledBuildings()),
+                createColumn("Completed", turn -> (long) turn.getCompletedBuildings())));
+
+        forecastButton.setOnAction(e -> forecast());
+        cancelButton.setOnAction(e -> cancel());
+        okButton.setOnAction(e -> stage.close());
+    }
+
+    /**
+     * Lightweight mutator method.
+     * Always should be called before the window is displayed to the user. A running forecast is cancelled when the window is closed.
+     *
+     * @param stage the stage that is displaying the window.
+     */
+    @Override
+    public void setStage(Stage stage) {
+        this.stage = stage;
+        stage.setOnHidden(e -> cancel());
+    }
+
+    /**
+     * Creates a read-only table column that shows one number of every forecast turn.
+     *
+     * @param title  title of the column.
+     * @param getter function that returns the number of a forecast turn.
+     * @return configured column.
+     */
+    private static TableColumn<ForecastTurn, Long> createColumn(String title, Function<ForecastTurn, Long> getter) {
+        TableColumn<ForecastTurn, Long> column = new TableColumn<>(title);
+        column.setCellValueFactory(e -> new ReadOnlyObjectWrapper<>(getter.apply(e.getValue())));
+        column.setSortable(false);
+        return column;
+    }
+
+    /**
+     * Starts a forecast of the number of turns entered by the user, cancelling the previous one if it is still running.
+     */
+    private void forecast() {
+        int turnCount;
+        try {
+            turnCount = Integer.parseInt(turnsField.getText().trim());
+        } catch (NumberFormatException e) {
+            Logger.getLogger(DownfallUtil.DEFAULT_LOGGER).log(Level.WARNING, "Number of forecast turns is not a number: " + turnsField.getText());
+            return;
+        }
+        if (turnCount <= 0)
+            return;
+
+        cancel();
+        clear();
+        ConstructionQueue queue = Configurator.getInstance().getConstructionQueue();
+        task = Configurator.getInstance().getForecaster().forecastInBackground(Configurator.getInstance().getUserRealm(), Configurator.getInstance().getRulesView(),
+                queue.getProjects(), queue.getTurn(), turnCount, null);
+        Task<List<ForecastTurn>> started = task;
+        started.valueProperty().addListener((observable, oldValue, newValue) -> {
+            if (started == task && newValue != null)
+                display(newValue);
+        });
+        started.setOnFailed(e -> Logger.getLogger(DownfallUtil.DEFAULT_LOGGER).log(Level.WARNING, "Forecast failed", started.getException()));
+        progressBar.progressProperty().bind(started.progressProperty());
+        cancelButton.disableProperty().bind(started.runningProperty().not());
+    }
+
+    /**
+     * Cancels the running forecast, the turns computed so far stay visible.
+     */
+    private void cancel() {
+        if (task != null)
+            task.cancel();
+    }
+
+    /**
+     * Removes all forecast turns from the chart and the table.
+     */
+    private void clear() {
+        turns.clear();
+        netWorthSeries.getData().clear();
+        stockpileValueSeries.getData().clear();
+    }
+
+    /**
+     * Appends the forecast turns that are not displayed yet to the chart and the table.
+     *
+     * @param forecastTurns all forecast turns computed so far.
+     */
+    private void display(List<ForecastTurn> forecastTurns) {
+        List<ForecastTurn> added = forecastTurns.subList(Math.min(turns.size(), forecastTurns.size()), forecastTurns.size());
+        for (ForecastTurn turn : added) {
+            netWorthSeries.getData().add(new XYChart.Data<>(turn.getTurn(), turn.getNetWorth()));
+            stockpileValueSeries.getData().add(new XYChart.Data<>(turn.getTurn(), turn.getStockpileValue()));
+        }
+        turns.addAll(added);
+    }
+}
@@ -142,8 +142,8 @@ public class RealmScreenController {
         //govRankLabel.setText(userRealm.getGouvernmentRank());
 
         //update Image views
-        updateImageView(realmPane, new Image("file:" + userRealm.getRealmPathToGFX()), realmImageView);
-        updateImageView(dynastyPane, new Image("file:" + userRealm.getRulerPathToGFX()), dynastyImageView);
+        updateImageView(realmPane, DownfallUtil.getInstance().loadImage(userRealm.getRealmPathToGFX()), realmImageView);
+        updateImageView(dynastyPane, DownfallUtil.getInstance().loadImage(userRealm.getRulerPathToGFX()), dynastyImageView);
 
         //update Stability Bar
         updateStabilityBar();
@@ -0,0 +1,44 @@
+// Copyright 2023 Prokhor Kalinin
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package net.dragondelve.downfall.util;
+
+import javafx.concurrent.Task;
+import net.dragondelve.downfall.realm.Savegame;
+
+/**
+ * Save manager that can also save and load savegames on a background thread, so that the JavaFX application thread is not blocked while doing so.
+ * Background operations are returned as already started Tasks that report their progress and can be cancelled.
+ * The methods of this interface should be called on the JavaFX application thread.
+ */
+public interface AsyncSaveManager extends SaveManager {
+    /**
+     * Reads the savegame at a given pathname and the rules it references on a background thread and then applies both of them
+     * on the JavaFX application thread in one go. If the task is cancelled before it applies them nothing is changed.
+     *
+     * @param pathname pathname to a savegame file.
+     * @return started task whose value is the loaded savegame.
+     */
+    Task<Savegame> loadFromInBackground(String pathname);
+
+    /**
+     * Takes a snapshot of the user realm on the calling thread and writes it to a given pathname on a background thread.
+     * If the task is cancelled the file at pathname is left as it was.
+     *
+     * @param pathname pathname to a file in which the savegame data will be recorded.
+     * @return started task.
+     */
+    Task<Void> saveToInBackground(String pathname);
+}
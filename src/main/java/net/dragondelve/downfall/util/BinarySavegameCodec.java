@@ -0,0 +1,381 @@
+// Copyright 2023 Prokhor Kalinin
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package net.dragondelve.downfall.util;
+
+import net.dragondelve.downfall.realm.Building;
+import net.dragondelve.downfall.realm.BuildingCount;
+import net.dragondelve.downfall.realm.Material;
+import net.dragondelve.downfall.realm.QueuedConstruction;
+import net.dragondelve.downfall.realm.Realm;
+import net.dragondelve.downfall.realm.Savegame;
+import net.dragondelve.downfall.realm.Tag;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Savegame codec that reads and writes a compact versioned binary format.
+ * Layout of version 3, where varint is an unsigned LEB128 integer, svarint is a zigzag encoded varint, varlong is an unsigned LEB128 long
+ * and str is a varint index into the string table with 0 standing for null and i + 1 for the i-th string:
+ * <pre>
+ * "DFSV" varint(version)
+ * varint(stringCount) (varint(byteLength) utf8Bytes)*
+ * str(pathToRules)
+ * svarint(id) str(name) svarint(treasury) svarint(diplomaticReputation) svarint(powerProjection) svarint(legitimacy) svarint(prestige) svarint(infamy)
+ * float64(stability) str(realmPathToGFX) str(rulerPathToGFX)
+ * varint(stockpileSize) (svarint(templateId) svarint(amount))*
+ * varint(buildingCountSize) (svarint(id) varint(operating) varint(idle))*
+ * varint(tagCount) (svarint(id) str(tag) bool(isFactional))*
+ * varint(constructionCount) (svarint(buildingTemplateId) varint(quantity) svarint(turnsLeft) bool(operatesImmediately) varlong(reservedTreasury)
+ *     varint(reservedCount) (svarint(templateId) svarint(amount))*)*
+ * </pre>
+ * Version 2 ended after the tags, such savegames are read with an empty construction queue.
+ * Version 1 stored one (svarint(id) bool(isOperating)) entry per building instead of the building counts, such savegames are still read and their buildings are counted.
+ */
+final class BinarySavegameCodec implements SavegameCodec {
+    private static final byte[] MAGIC = {'D', 'F', 'S', 'V'};
+    private static final int VERSION = 3;
+
+    private static final BinarySavegameCodec instance = new BinarySavegameCodec();
+
+    /**
+     * Private constructor to make this class non instantiable.
+     */
+    private BinarySavegameCodec() {
+        super();
+    }
+
+    /**
+     * Lightweight Accessor Method
+     *
+     * @return The only instance of this class.
+     */
+    static BinarySavegameCodec getInstance() {
+        return instance;
+    }
+
+    /**
+     * Reads a binary savegame from a stream. The stream is not closed.
+     *
+     * @param in stream that contains a binary savegame.
+     * @return Savegame that was read.
+     * @throws IOException if the stream could not be read, is not a binary savegame or was written by a newer version of this codec.
+     */
+    @Override
+    public Savegame read(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        byte[] magic = new byte[MAGIC.length];
+        data.readFully(magic);
+        for (int i = 0; i < MAGIC.length; i++)
+            if (magic[i] != MAGIC[i])
+                throw new IOException("Not a binary savegame");
+        int version = readVarint(data);
+        if (version > VERSION)
+            throw new IOException("Unsupported binary savegame version " + version);
+
+        String[] strings = new String[readVarint(data)];
+        for (int i = 0; i < strings.length; i++) {
+            byte[] bytes = new byte[readVarint(data)];
+            data.readFully(bytes);
+            strings[i] = new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        Savegame savegame = new Savegame();
+        savegame.setPathToRules(readString(data, strings));
+
+        Realm realm = savegame.getUserRealm();
+        realm.setId(readSignedVarint(data));
+        realm.setName(readString(data, strings));
+        realm.setTreasury(readSignedVarint(data));
+        realm.setDiplomaticReputation(readSignedVarint(data));
+        realm.setPowerProjection(readSignedVarint(data));
+        realm.setLegitimacy(readSignedVarint(data));
+        realm.setPrestige(readSignedVarint(data));
+        realm.setInfamy(readSignedVarint(data));
+        realm.setStability(data.readDouble());
+        realm.setRealmPathToGFX(readString(data, strings));
+        realm.setRulerPathToGFX(readString(data, strings));
+
+        int stockpileSize = readVarint(data);
+        List<Material> stockpile = new ArrayList<>(stockpileSize);
+        for (int i = 0; i < stockpileSize; i++)
+            stockpile.add(new Material(readSignedVarint(data), readSignedVarint(data)));
+        realm.getStockpile().setAll(stockpile);
+
+        if (version == 1) {
+            int buildingCount = readVarint(data);
+            List<Building> buildings = new ArrayList<>(buildingCount);
+            for (int i = 0; i < buildingCount; i++)
+                buildings.add(new Building(readSignedVarint(data), data.readBoolean()));
+            realm.getBuildingCounts().setAll(BuildingCount.aggregate(buildings));
+        } else {
+            int buildingCountSize = readVarint(data);
+            List<BuildingCount> buildingCounts = new ArrayList<>(buildingCountSize);
+            for (int i = 0; i < buildingCountSize; i++)
+                buildingCounts.add(new BuildingCount(readSignedVarint(data), readVarint(data), readVarint(data)));
+            realm.getBuildingCounts().setAll(buildingCounts);
+        }
+
+        int tagCount = readVarint(data);
+        List<Tag> tags = new ArrayList<>(tagCount);
+        for (int i = 0; i < tagCount; i++)
+            tags.add(new Tag(readSignedVarint(data), readString(data, strings), data.readBoolean()));
+        realm.getTags().setAll(tags);
+
+        if (version >= 3) {
+            int constructionCount = readVarint(data);
+            for (int i = 0; i < constructionCount; i++) {
+                QueuedConstruction construction = new QueuedConstruction();
+                construction.setBuildingTemplateId(readSignedVarint(data));
+                construction.setQuantity(readVarint(data));
+                construction.setTurnsLeft(readSignedVarint(data));
+                construction.setOperatesImmediately(data.readBoolean());
+                construction.setReservedTreasury(readVarlong(data));
+                int reservedCount = readVarint(data);
+                List<Material> reserved = new ArrayList<>(reservedCount);
+                for (int j = 0; j < reservedCount; j++)
+                    reserved.add(new Material(readSignedVarint(data), readSignedVarint(data)));
+                construction.setReservedMaterials(reserved);
+                savegame.getConstructionQueue().add(construction);
+            }
+        }
+
+        return savegame;
+    }
+
+    /**
+     * Writes a savegame to a stream in the binary format. The stream is not closed, but it is flushed.
+     *
+     * @param savegame        savegame to be written.
+     * @param out             stream that the savegame is written to.
+     * @param elementListener is given the Savegame, Realm, and every Material, BuildingCount, Tag and QueuedConstruction right before it is written.
+     * @throws IOException if the savegame could not be written.
+     */
+    @Override
+    public void write(Savegame savegame, OutputStream out, Consumer<Object> elementListener) throws IOException {
+        Realm realm = savegame.getUserRealm();
+
+        //collect every string first, so that the table can be written before anything that references it
+        Map<String, Integer> stringIndexes = new HashMap<>();
+        List<String> strings = new ArrayList<>();
+        Consumer<String> register = string -> {
+            if (string != null && stringIndexes.putIfAbsent(string, strings.size()) == null)
+                strings.add(string);
+        };
+        register.accept(savegame.getPathToRules());
+        register.accept(realm.getName());
+        register.accept(realm.getRealmPathToGFX());
+        register.accept(realm.getRulerPathToGFX());
+        realm.getTags().forEach(tag -> register.accept(tag.getTag()));
+
+        DataOutputStream data = new DataOutputStream(out);
+        data.write(MAGIC);
+        writeVarint(data, VERSION);
+        writeVarint(data, strings.size());
+        for (String string : strings) {
+            byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+            writeVarint(data, bytes.length);
+            data.write(bytes);
+        }
+
+        elementListener.accept(savegame);
+        writeString(data, savegame.getPathToRules(), stringIndexes);
+
+        elementListener.accept(realm);
+        writeSignedVarint(data, realm.getId());
+        writeString(data, realm.getName(), stringIndexes);
+        writeSignedVarint(data, realm.getTreasury());
+        writeSignedVarint(data, realm.getDiplomaticReputation());
+        writeSignedVarint(data, realm.getPowerProjection());
+        writeSignedVarint(data, realm.getLegitimacy());
+        writeSignedVarint(data, realm.getPrestige());
+        writeSignedVarint(data, realm.getInfamy());
+        data.writeDouble(realm.getStability());
+        writeString(data, realm.getRealmPathToGFX(), stringIndexes);
+        writeString(data, realm.getRulerPathToGFX(), stringIndexes);
+
+        writeVarint(data, realm.getStockpile().size());
+        for (Material material : realm.getStockpile()) {
+            elementListener.accept(material);
+            writeSignedVarint(data, material.getTemplateId());
+            writeSignedVarint(data, material.getAmount());
+        }
+
+        writeVarint(data, realm.getBuildingCounts().size());
+        for (BuildingCount buildingCount : realm.getBuildingCounts()) {
+            elementListener.accept(buildingCount);
+            writeSignedVarint(data, buildingCount.getId());
+            writeVarint(data, buildingCount.getOperating());
+            writeVarint(data, buildingCount.getIdle());
+        }
+
+        writeVarint(data, realm.getTags().size());
+        for (Tag tag : realm.getTags()) {
+            elementListener.accept(tag);
+            writeSignedVarint(data, tag.getId());
+            writeString(data, tag.getTag(), stringIndexes);
+            data.writeBoolean(tag.isFactional());
+        }
+
+        writeVarint(data, savegame.getConstructionQueue().size());
+        for (QueuedConstruction construction : savegame.getConstructionQueue()) {
+            elementListener.accept(construction);
+            writeSignedVarint(data, construction.getBuildingTemplateId());
+            writeVarint(data, construction.getQuantity());
+            writeSignedVarint(data, construction.getTurnsLeft());
+            data.writeBoolean(construction.isOperatesImmediately());
+            writeVarlong(data, construction.getReservedTreasury());
+            writeVarint(data, construction.getReservedMaterials().size());
+            for (Material material : construction.getReservedMaterials()) {
+                writeSignedVarint(data, material.getTemplateId());
+                writeSignedVarint(data, material.getAmount());
+            }
+        }
+        data.flush();
+    }
+
+    /**
+     * Writes an unsigned LEB128 varint.
+     *
+     * @param out   stream to write to.
+     * @param value value treated as unsigned.
+     * @throws IOException if the stream could not be written.
+     */
+    private static void writeVarint(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    /**
+     * Writes an unsigned LEB128 varint of up to 10 bytes.
+     *
+     * @param out   stream to write to.
+     * @param value value treated as unsigned.
+     * @throws IOException if the stream could not be written.
+     */
+    private static void writeVarlong(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    /**
+     * Writes a zigzag encoded varint, so that small negative values stay short.
+     *
+     * @param out   stream to write to.
+     * @param value signed value.
+     * @throws IOException if the stream could not be written.
+     */
+    private static void writeSignedVarint(DataOutputStream out, int value) throws IOException {
+        writeVarint(out, (value << 1) ^ (value >> 31));
+    }
+
+    /**
+     * Writes a reference into the string table.
+     *
+     * @param out           stream to write to.
+     * @param string        string that was registered in the table, or null.
+     * @param stringIndexes indexes of all strings in the table.
+     * @throws IOException if the stream could not be written.
+     */
+    private static void writeString(DataOutputStream out, String string, Map<String, Integer> stringIndexes) throws IOException {
+        writeVarint(out, string == null ? 0 : stringIndexes.get(string) + 1);
+    }
+
+    /**
+     * Reads an unsigned LEB128 varint.
+     *
+     * @param in stream to read from.
+     * @return value that was read.
+     * @throws IOException if the stream ended or the varint is longer than 5 bytes.
+     */
+    private static int readVarint(DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.read();
+            if (b == -1)
+                throw new EOFException("Binary savegame ended unexpectedly");
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+                return value;
+        }
+        throw new IOException("Malformed varint in binary savegame");
+    }
+
+    /**
+     * Reads an unsigned LEB128 varint of up to 10 bytes.
+     *
+     * @param in stream to read from.
+     * @return value that was read.
+     * @throws IOException if the stream ended or the varint is longer than 10 bytes.
+     */
+    private static long readVarlong(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 70; shift += 7) {
+            int b = in.read();
+            if (b == -1)
+                throw new EOFException("Binary savegame ended unexpectedly");
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+                return value;
+        }
+        throw new IOException("Malformed varint in binary savegame");
+    }
+
+    /**
+     * Reads a zigzag encoded varint.
+     *
+     * @param in stream to read from.
+     * @return signed value that was read.
+     * @throws IOException if the stream could not be read.
+     */
+    private static int readSignedVarint(DataInputStream in) throws IOException {
+        int value = readVarint(in);
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Reads a reference into the string table.
+     *
+     * @param in      stream to read from.
+     * @param strings string table of the savegame.
+     * @return referenced string or null.
+     * @throws IOException if the stream could not be read or the reference is out of bounds.
+     */
+    private static String readString(DataInputStream in, String[] strings) throws IOException {
+        int reference = readVarint(in);
+        if (reference == 0)
+            return null;
+        if (reference > strings.length)
+            throw new IOException("Malformed string reference in binary savegame");
+        return strings[reference - 1];
+    }
+}
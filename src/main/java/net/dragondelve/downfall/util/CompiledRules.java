@@ -0,0 +1,560 @@
+// Copyright 2023 Prokhor Kalinin
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package net.dragondelve.downfall.util;
+
+import javafx.collections.ObservableList;
+import javafx.collections.ObservableListBase;
+import net.dragondelve.downfall.realm.Material;
+import net.dragondelve.downfall.realm.Tag;
+import net.dragondelve.downfall.realm.template.VisualBuildingTemplate;
+import net.dragondelve.downfall.realm.template.VisualMaterialTemplate;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Read-only ruleset stored in a compiled rules file that is memory-mapped instead of being read into memory.
+ * Only the file is kept in memory by the operating system, templates and tags are materialized into their property-backed objects
+ * the first time they are looked up by id or accessed through one of the lists, and the same object is returned on every later access.
+ * Compiled rules files are generated from Rules with compile and are meant for rulesets that are too big to be kept in memory as XML rules.
+ * <p>
+ * File layout, all values are big-endian: magic, version, then the number of material templates, building templates and tags.
+ * Each of the three sections consists of a table with the offset of every record in the order of the original list,
+ * followed by a table of (id, position in the original list) pairs sorted by id that is binary searched on lookups.
+ * The records themselves follow the last section.
+ */
+public final class CompiledRules implements TemplateLookup, RulesView {
+    private static final int MAGIC = 0x44465243; // "DFRC"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 5 * Integer.BYTES;
+
+    private final ByteBuffer buffer;
+    private final Section<VisualMaterialTemplate> materialTemplates;
+    private final Section<VisualBuildingTemplate> buildingTemplates;
+    private final Section<Tag> tags;
+
+    /**
+     * Memory-maps a compiled rules file and reads its header. No templates are materialized.
+     *
+     * @param file compiled rules file generated with compile.
+     * @throws IOException if the file cannot be mapped or is not a compiled rules file.
+     */
+    private CompiledRules(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC)
+            throw new IOException("Not a compiled rules file: " + file.getPath());
+        if (buffer.getInt(Integer.BYTES) != VERSION)
+            throw new IOException("Unsupported compiled rules version " + buffer.getInt(Integer.BYTES) + " in " + file.getPath());
+
+        int materialCount = buffer.getInt(2 * Integer.BYTES);
+        int buildingCount = buffer.getInt(3 * Integer.BYTES);
+        int tagCount = buffer.getInt(4 * Integer.BYTES);
+        int recordsStart = HEADER_SIZE + 3 * Integer.BYTES * (materialCount + buildingCount + tagCount);
+        if (materialCount < 0 || buildingCount < 0 || tagCount < 0 || recordsStart > buffer.capacity())
+            throw new IOException("Compiled rules file is truncated: " + file.getPath());
+
+        int sectionStart = HEADER_SIZE;
+        materialTemplates = new Section<>(sectionStart, materialCount, recordsStart, this::readMaterialTemplate);
+        sectionStart += 3 * Integer.BYTES * materialCount;
+        buildingTemplates = new Section<>(sectionStart, buildingCount, recordsStart, this::readBuildingTemplate);
+        sectionStart += 3 * Integer.BYTES * buildingCount;
+        tags = new Section<>(sectionStart, tagCount, recordsStart, this::readTag);
+    }
+
+    /**
+     * Opens a compiled rules file.
+     *
+     * @param file compiled rules file generated with compile.
+     * @return CompiledRules backed by the file.
+     * @throws IOException if the file cannot be mapped or is not a compiled rules file.
+     */
+    public static CompiledRules open(File file) throws IOException {
+        return new CompiledRules(file);
+    }
+
+    /**
+     * Writes rules to a compiled rules file that can be opened with open.
+     *
+     * @param rules rules to be compiled.
+     * @param file  file to be written. It is replaced if it exists, even if it is currently opened.
+     * @throws IOException if the file cannot be written.
+     */
+    public static void compile(Rules rules, File file) throws IOException {
+        ByteArrayOutputStream records = new ByteArrayOutputStream();
+        DataOutputStream recordOut = new DataOutputStream(records);
+        int[][] materialTables = writeRecords(rules.getMaterialTemplates(), VisualMaterialTemplate::getId, CompiledRules::writeMaterialTemplate, recordOut, records);
+        int[][] buildingTables = writeRecords(rules.getBuildingTemplates(), VisualBuildingTemplate::getId, CompiledRules::writeBuildingTemplate, recordOut, records);
+        int[][] tagTables = writeRecords(rules.getActorTags(), Tag::getId, CompiledRules::writeTag, recordOut, records);
+        recordOut.flush();
+
+        // the file is written next to the target and moved over it, so a file that is currently mapped is never truncated
+        File temporary = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporary)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(rules.getMaterialTemplates().size());
+            out.writeInt(rules.getBuildingTemplates().size());
+            out.writeInt(rules.getActorTags().size());
+            for (int[][] tables : new int[][][]{materialTables, buildingTables, tagTables})
+                for (int[] table : tables)
+                    for (int value : table)
+                        out.writeInt(value);
+            records.writeTo(out);
+        }
+        try {
+            Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Finds a VisualMaterialTemplate in the compiled rules and materializes it if it has not been accessed yet.
+     *
+     * @param id id of the template.
+     * @return VisualMaterialTemplate with a given id. If none found returns null.
+     */
+    @Override
+    public VisualMaterialTemplate findMaterialTemplate(Integer id) {
+        return materialTemplates.find(id);
+    }
+
+    /**
+     * Finds a VisualBuildingTemplate in the compiled rules and materializes it if it has not been accessed yet.
+     *
+     * @param id id of the template.
+     * @return VisualBuildingTemplate with a given id. If none found returns null.
+     */
+    @Override
+    public VisualBuildingTemplate findBuildingTemplate(Integer id) {
+        return buildingTemplates.find(id);
+    }
+
+    /**
+     * Finds a Tag in the compiled rules and materializes it if it has not been accessed yet.
+     *
+     * @param id id of the tag.
+     * @return Tag with a given id. If none found returns null.
+     */
+    @Override
+    public Tag findTag(Integer id) {
+        return tags.find(id);
+    }
+
+    /**
+     * Lightweight accessor method.
+     *
+     * @return read-only list of all material templates in the order they were compiled in. Templates are materialized when the list element is accessed.
+     */
+    @Override
+    public ObservableList<VisualMaterialTemplate> getMaterialTemplates() {
+        return materialTemplates.list;
+    }
+
+    /**
+     * Lightweight accessor method.
+     *
+     * @return read-only list of all building templates in the order they were compiled in. Templates are materialized when the list element is accessed.
+     */
+    @Override
+    public ObservableList<VisualBuildingTemplate> getBuildingTemplates() {
+        return buildingTemplates.list;
+    }
+
+    /**
+     * Lightweight accessor method.
+     *
+     * @return read-only list of all tags in the order they were compiled in. Tags are materialized when the list element is accessed.
+     */
+    @Override
+    public ObservableList<Tag> getActorTags() {
+        return tags.list;
+    }
+
+    /**
+     * Reads the ids of all material templates without materializing them.
+     *
+     * @return ids of all material templates in the order they were compiled in.
+     */
+    public int[] getMaterialTemplateIds() {
+        return materialTemplates.ids();
+    }
+
+    /**
+     * Reads the ids of all building templates without materializing them.
+     *
+     * @return ids of all building templates in the order they were compiled in.
+     */
+    public int[] getBuildingTemplateIds() {
+        return buildingTemplates.ids();
+    }
+
+    /**
+     * Reads the ids of all tags without materializing them.
+     *
+     * @return ids of all tags in the order they were compiled in.
+     */
+    public int[] getTagIds() {
+        return tags.ids();
+    }
+
+    /**
+     * Materializes every template and tag and puts them into a new instance of Rules that can be edited and saved as XML.
+     * The objects in the returned Rules are the same ones that are returned by the lookups of this instance.
+     *
+     * @return Rules that contain all templates and tags of the compiled rules.
+     */
+    public Rules toRules() {
+        Rules rules = new Rules();
+        rules.setMaterialTemplates(getMaterialTemplates());
+        rules.setBuildingTemplates(getBuildingTemplates());
+        rules.setActorTags(getActorTags());
+        return rules;
+    }
+
+    /**
+     * Writes the records of a list and builds the offset and id tables of its section.
+     *
+     * @param list     items to be written.
+     * @param idGetter function that returns the id of an item.
+     * @param writer   writes a single record.
+     * @param out      stream all records are written to.
+     * @param counter  underlying stream of out, used to determine offsets of the records.
+     * @param <T>      type of the written items.
+     * @return the offset table and the id table of the section.
+     * @throws IOException if a record cannot be written.
+     */
+    private static <T> int[][] writeRecords(List<T> list, Function<T, Integer> idGetter, RecordWriter<T> writer, DataOutputStream out, ByteArrayOutputStream counter) throws IOException {
+        int[] offsets = new int[list.size()];
+        List<int[]> ids = new ArrayList<>(list.size());
+        for (int i = 0; i < list.size(); i++) {
+            out.flush();
+            offsets[i] = counter.size();
+            writer.write(list.get(i), out);
+            ids.add(new int[]{idGetter.apply(list.get(i)), i});
+        }
+        // the sort is stable, so the first of several items with the same id is found first just like in TemplateRegistry
+        ids.sort(Comparator.comparingInt(entry -> entry[0]));
+        int[] idTable = new int[2 * ids.size()];
+        for (int i = 0; i < ids.size(); i++) {
+            idTable[2 * i] = ids.get(i)[0];
+            idTable[2 * i + 1] = ids.get(i)[1];
+        }
+        return new int[][]{offsets, idTable};
+    }
+
+    /**
+     * Writes the record of a material template.
+     *
+     * @param template template to be written.
+     * @param out      stream the record is written to.
+     * @throws IOException if the record cannot be written.
+     */
+    private static void writeMaterialTemplate(VisualMaterialTemplate template, DataOutputStream out) throws IOException {
+        out.writeInt(template.getId());
+        writeString(template.getName(), out);
+        out.writeInt(template.getDefExportPrice());
+        out.writeInt(template.getDefImportPrice());
+        out.writeBoolean(template.isExportable());
+        out.writeBoolean(template.isEphemeral());
+        writeString(template.getPathToGFX(), out);
+    }
+
+    /**
+     * Writes the record of a building template together with its input, output and construction materials.
+     *
+     * @param template template to be written.
+     * @param out      stream the record is written to.
+     * @throws IOException if the record cannot be written.
+     */
+    private static void writeBuildingTemplate(VisualBuildingTemplate template, DataOutputStream out) throws IOException {
+        out.writeInt(template.getId());
+        writeString(template.getName(), out);
+        out.writeInt(template.getDefConstructionCost());
+        out.writeInt(template.getDefConstructionTime());
+        out.writeBoolean(template.getOperatesImmediately());
+        writeString(template.getPathToGFX(), out);
+        writeMaterials(template.getInputMaterials(), out);
+        writeMaterials(template.getOutputMaterials(), out);
+        writeMaterials(template.getConstructionMaterials(), out);
+    }
+
+    /**
+     * Writes the record of a tag.
+     *
+     * @param tag tag to be written.
+     * @param out stream the record is written to.
+     * @throws IOException if the record cannot be written.
+     */
+    private static void writeTag(Tag tag, DataOutputStream out) throws IOException {
+        out.writeInt(tag.getId());
+        writeString(tag.getTag(), out);
+        out.writeBoolean(tag.isFactional());
+    }
+
+    /**
+     * Writes a list of materials as their count followed by the template id and the amount of every material.
+     *
+     * @param materials materials to be written.
+     * @param out       stream the materials are written to.
+     * @throws IOException if the materials cannot be written.
+     */
+    private static void writeMaterials(List<Material> materials, DataOutputStream out) throws IOException {
+        out.writeInt(materials.size());
+        for (Material material : materials) {
+            out.writeInt(material.getTemplateId());
+            out.writeInt(material.getAmount());
+        }
+    }
+
+    /**
+     * Writes a string as the length of its UTF-8 bytes followed by the bytes, or -1 for null.
+     *
+     * @param value string to be written, may be null.
+     * @param out   stream the string is written to.
+     * @throws IOException if the string cannot be written.
+     */
+    private static void writeString(String value, DataOutputStream out) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Reads the record of a material template written by writeMaterialTemplate.
+     *
+     * @param in buffer positioned at the start of the record.
+     * @return new template with the values of the record.
+     */
+    private VisualMaterialTemplate readMaterialTemplate(ByteBuffer in) {
+        VisualMaterialTemplate template = new VisualMaterialTemplate();
+        template.setId(in.getInt());
+        template.setName(readString(in));
+        template.setDefExportPrice(in.getInt());
+        template.setDefImportPrice(in.getInt());
+        template.setExportable(in.get() != 0);
+        template.setIsEphemeral(in.get() != 0);
+        template.setPathToGFX(readString(in));
+        return template;
+    }
+
+    /**
+     * Reads the record of a building template written by writeBuildingTemplate.
+     *
+     * @param in buffer positioned at the start of the record.
+     * @return new template with the values of the record.
+     */
+    private VisualBuildingTemplate readBuildingTemplate(ByteBuffer in) {
+        VisualBuildingTemplate template = new VisualBuildingTemplate();
+        template.setId(in.getInt());
+        template.setName(readString(in));
+        template.setDefConstructionCost(in.getInt());
+        template.setDefConstructionTime(in.getInt());
+        template.setOperatesImmediately(in.get() != 0);
+        template.setPathToGFX(readString(in));
+        template.getInputMaterials().setAll(readMaterials(in));
+        template.getOutputMaterials().setAll(readMaterials(in));
+        template.getConstructionMaterials().setAll(readMaterials(in));
+        return template;
+    }
+
+    /**
+     * Reads the record of a tag written by writeTag.
+     *
+     * @param in buffer positioned at the start of the record.
+     * @return new tag with the values of the record.
+     */
+    private Tag readTag(ByteBuffer in) {
+        Tag tag = new Tag();
+        tag.setId(in.getInt());
+        tag.setTag(readString(in));
+        tag.setFactional(in.get() != 0);
+        return tag;
+    }
+
+    /**
+     * Reads a list of materials written by writeMaterials.
+     *
+     * @param in buffer positioned at the start of the list.
+     * @return new materials with the values of the list.
+     */
+    private List<Material> readMaterials(ByteBuffer in) {
+        int count = in.getInt();
+        List<Material> materials = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Material material = new Material();
+            material.setTemplateId(in.getInt());
+            material.setAmount(in.getInt());
+            materials.add(material);
+        }
+        return materials;
+    }
+
+    /**
+     * Reads a string written by writeString.
+     *
+     * @param in buffer positioned at the start of the string.
+     * @return string that was read, or null.
+     */
+    private String readString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0)
+            return null;
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writes a single record of a compiled rules file.
+     *
+     * @param <T> type of the written items.
+     */
+    @FunctionalInterface
+    private interface RecordWriter<T> {
+        /**
+         * Writes the record of an item.
+         *
+         * @param item item to be written.
+         * @param out  stream the record is written to.
+         * @throws IOException if the record cannot be written.
+         */
+        void write(T item, DataOutputStream out) throws IOException;
+    }
+
+    /**
+     * One of the three sections of a compiled rules file together with the objects that have been materialized from it so far.
+     *
+     * @param <T> type of the items stored in the section.
+     */
+    private final class Section<T> {
+        private final int offsetTableStart;
+        private final int idTableStart;
+        private final int count;
+        private final int recordsStart;
+        private final Function<ByteBuffer, T> reader;
+        private final Map<Integer, T> materialized = new HashMap<>();
+        private final ObservableList<T> list = new LazyList();
+
+        /**
+         * @param start        position of the offset table of the section in the file, the id table follows it.
+         * @param count        number of items in the section.
+         * @param recordsStart position of the first record in the file, offsets are relative to it.
+         * @param reader       reads the record of a single item.
+         */
+        private Section(int start, int count, int recordsStart, Function<ByteBuffer, T> reader) {
+            this.offsetTableStart = start;
+            this.idTableStart = start + Integer.BYTES * count;
+            this.count = count;
+            this.recordsStart = recordsStart;
+            this.reader = reader;
+        }
+
+        /**
+         * Binary searches the id table for the first item with a given id.
+         *
+         * @param id id of the item.
+         * @return materialized item. If none found returns null.
+         */
+        private T find(Integer id) {
+            if (id == null)
+                return null;
+            int low = 0;
+            int high = count;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (buffer.getInt(idTableStart + 2 * Integer.BYTES * middle) < id)
+                    low = middle + 1;
+                else
+                    high = middle;
+            }
+            if (low == count || buffer.getInt(idTableStart + 2 * Integer.BYTES * low) != id)
+                return null;
+            return get(buffer.getInt(idTableStart + 2 * Integer.BYTES * low + Integer.BYTES));
+        }
+
+        /**
+         * Reads the id table back into the order of the original list.
+         *
+         * @return id of every item by its position in the original list.
+         */
+        private int[] ids() {
+            int[] ids = new int[count];
+            for (int i = 0; i < count; i++) {
+                int entry = idTableStart + 2 * Integer.BYTES * i;
+                ids[buffer.getInt(entry + Integer.BYTES)] = buffer.getInt(entry);
+            }
+            return ids;
+        }
+
+        /**
+         * Returns the item at a given position of the original list, materializing it on first access.
+         *
+         * @param index position of the item in the original list.
+         * @return materialized item.
+         */
+        private synchronized T get(int index) {
+            T item = materialized.get(index);
+            if (item == null) {
+                ByteBuffer in = buffer.duplicate();
+                in.position(recordsStart + buffer.getInt(offsetTableStart + Integer.BYTES * index));
+                item = reader.apply(in);
+                materialized.put(index, item);
+            }
+            return item;
+        }
+
+        /**
+         * Read-only list view of the section that only materializes the elements that are accessed.
+         */
+        private final class LazyList extends ObservableListBase<T> {
+            @Override
+            public T get(int index) {
+                if (index < 0 || index >= count)
+                    throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + count);
+                return Section.this.get(index);
+            }
+
+            @Override
+            public int size() {
+                return count;
+            }
+        }
+    }
+}
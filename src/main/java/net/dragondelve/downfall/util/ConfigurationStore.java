@@ -0,0 +1,142 @@
+// Copyright 2023 Prokhor Kalinin
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package net.dragondelve.downfall.util;
+
+import jakarta.xml.bind.JAXBException;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Write-behind store for the Configuration of the program.
+ * Save requests take a snapshot of the Configuration and are coalesced over DEBOUNCE_MILLIS, after which only the latest snapshot is written
+ * on a background thread. Every write goes to a temporary file first that then replaces the configuration file,
+ * so an interrupted write never leaves a truncated configuration file behind.
+ */
+final class ConfigurationStore {
+    private static final long DEBOUNCE_MILLIS = 250;
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private final File file;
+    private final AtomicReference<Configuration> pending = new AtomicReference<>();
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "Configuration writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * @param pathname pathname to the configuration file that is read and written by this store.
+     */
+    ConfigurationStore(String pathname) {
+        this.file = new File(pathname);
+    }
+
+    /**
+     * Reads the configuration file. Does not wait for pending writes.
+     *
+     * @return Configuration read from the file.
+     * @throws JAXBException if the file could not be read.
+     */
+    Configuration load() throws JAXBException {
+        return JAXBContextPool.getInstance().unmarshal(file, Configuration.class);
+    }
+
+    /**
+     * Takes a snapshot of the configuration and schedules it to be written. If a write is already scheduled the snapshot replaces
+     * the one it was going to write, so a burst of requests results in a single write. Should be called on the thread that modifies the configuration.
+     *
+     * @param configuration configuration to be saved.
+     */
+    void requestSave(Configuration configuration) {
+        if (pending.getAndSet(snapshot(configuration)) == null)
+            executor.schedule(this::writePending, DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Takes a snapshot of the configuration and writes it immediately on the calling thread, discarding any pending snapshot.
+     *
+     * @param configuration configuration to be saved.
+     */
+    void save(Configuration configuration) {
+        pending.set(null);
+        write(snapshot(configuration));
+    }
+
+    /**
+     * Writes the pending snapshot if there is one and waits until it's written. Used on shutdown so that no requested change is lost.
+     */
+    void flush() {
+        writePending();
+    }
+
+    /**
+     * Writes the latest pending snapshot if there is one.
+     */
+    private synchronized void writePending() {
+        Configuration configuration = pending.getAndSet(null);
+        if (configuration != null)
+            write(configuration);
+    }
+
+    /**
+     * Writes a configuration into a temporary file next to the configuration file and then moves it over the configuration file.
+     *
+     * @param configuration configuration to be written.
+     */
+    private synchronized void write(Configuration configuration) {
+        Logger.getLogger(DownfallUtil.DEFAULT_LOGGER).log(Level.FINE, "Configuration saving initiated with path: " + file.getPath());
+        Path target = file.toPath().toAbsolutePath();
+        Path temp = target.resolveSibling(target.getFileName() + TEMP_SUFFIX);
+        try {
+            JAXBContextPool.getInstance().marshal(configuration, temp.toFile());
+            try {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (JAXBException | IOException | IllegalArgumentException e) {
+            e.printStackTrace();
+            Logger.getLogger(DownfallUtil.DEFAULT_LOGGER).log(Level.WARNING, "Configuration saving failed =C");
+        }
+    }
+
+    /**
+     * Copies all values of a configuration, so that it can be written on another thread while the original keeps changing.
+     *
+     * @param configuration configuration to be copied.
+     * @return new Configuration with the same values.
+     */
+    private Configuration snapshot(Configuration configuration) {
+        Configuration snapshot = new Configuration();
+        snapshot.setLastRulesPathname(configuration.getLastRulesPathname());
+        snapshot.setDefMaterialGFXPathname(configuration.getDefMaterialGFXPathname());
+        snapshot.setDefBuildingGFXPathname(configuration.getDefBuildingGFXPathname());
+        snapshot.setAutoloadLastSave(configuration.getAutoloadLastSave());
+        snapshot.setLastSavegamePathname(configuration.getLastSavegamePathname());
+        return snapshot;
+    }
+}
@@ -14,22 +14,26 @@
 
 package net.dragondelve.downfall.util;
 
-import jakarta.xml.bind.JAXBContext;
 import jakarta.xml.bind.JAXBException;
-import jakarta.xml.bind.Marshaller;
-import jakarta.xml.bind.Unmarshaller;
+import net.dragondelve.downfall.realm.Building;
 import net.dragondelve.downfall.realm.Material;
+import net.dragondelve.downfall.realm.QueuedConstruction;
 import net.dragondelve.downfall.realm.Realm;
 import net.dragondelve.downfall.realm.template.VisualBuildingTemplate;
 import net.dragondelve.downfall.realm.template.VisualMaterialTemplate;
+import net.dragondelve.downfall.simulation.ConstructionQueue;
+import net.dragondelve.downfall.simulation.Forecaster;
+import net.dragondelve.downfall.simulation.MarketValuation;
+import net.dragondelve.downfall.simulation.ProductionGraph;
+import net.dragondelve.downfall.simulation.RulesIndex;
 
+import javax.xml.stream.XMLStreamException;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.stream.Collectors;
 
 /**
  * Non Instantiable configurator class that is responsible for loading, and storing the Configuration of the program.
@@ -40,15 +44,24 @@ public final class Configurator {
 
     private static final Configurator instance = new Configurator();
     private final Realm userRealm = new Realm();
-    private final SaveManager saveManager = new SimpleSaveManager();
+    private AsyncSaveManager saveManager;
+    private final TemplateRegistry templateRegistry = new TemplateRegistry();
+    private final ConfigurationStore configurationStore = new ConfigurationStore(CONFIG_PATH);
     private Configuration configuration = new Configuration();
     private Rules rules = new Rules();
+    private CompiledRules compiledRules;
+    private RulesIndex rulesIndex = new RulesIndex(rules);
+    private ProductionGraph productionGraph;
+    private MarketValuation marketValuation;
+    private ConstructionQueue constructionQueue;
+    private Forecaster forecaster;
 
     /**
      * Private constructor to make this class non instantiable.
      */
     private Configurator() {
         super();
+        templateRegistry.index(rules);
     }
 
     /**
@@ -73,18 +86,173 @@ public final class Configurator {
      * @param pathname pathname to rules to be loaded and applied
      */
     public void loadAndApplyRules(String pathname) {
+        if (pathname.endsWith(DownfallUtil.COMPILED_RULES_EXTENSION)) {
+            loadAndApplyCompiledRules(pathname);
+            return;
+        }
+        compiledRules = null;
         rules = loadRules(pathname);
+        templateRegistry.index(rules);
+        rulesIndex = new RulesIndex(rules);
+        discardRulesObservers();
+    }
+
+    /**
+     * Memory-maps a compiled rules file and applies it without materializing its templates. Changes the configuration to remember the pathname as lastLoadedRules.
+     * Templates are looked up in the compiled rules until getRules is called, which materializes all of them.
+     * If the file cannot be opened the default rules are applied and compiled to pathname instead.
+     *
+     * @param pathname pathname to a compiled rules file.
+     */
+    private void loadAndApplyCompiledRules(String pathname) {
+        Logger.getLogger(DownfallUtil.DEFAULT_LOGGER).log(Level.FINE, "Compiled rules loading initiated with path: " + pathname);
+        try {
+            applyCompiledRules(CompiledRules.open(new File(pathname)));
+            configuration.setLastRulesPathname(new PathRelativisor(pathname).relativize());
+            saveConfiguration();
+            Logger.getLogger(DownfallUtil.DEFAULT_LOGGER).log(Level.FINE, "Compiled rules loading successfully completed.");
+        } catch (IOException e) {
+            e.printStackTrace();
+            Logger.getLogger(DownfallUtil.DEFAULT_LOGGER).log(Level.WARNING, "Compiled rules loading failed, loading default ");
+            compiledRules = null;
+            rules = loadDefaultRules();
+            templateRegistry.index(rules);
+            rulesIndex = new RulesIndex(rules);
+            discardRulesObservers();
+            saveRules(rules, pathname);
+        }
+    }
+
+    /**
+     * Applies rules that have already been loaded from pathname and changes the configuration to remember the pathname as lastLoadedRules
+     *
+     * @param rules    rules to be applied.
+     * @param pathname pathname from which the rules were loaded.
+     */
+    public void applyRules(Rules rules, String pathname) {
+        applyRules(rules);
+        configuration.setLastRulesPathname(new PathRelativisor(pathname).relativize());
+        saveConfiguration();
+    }
+
+    /**
+     * Applies rules that have already been loaded without changing the configuration, so nothing is written.
+     *
+     * @param rules rules to be applied.
+     */
+    public void applyRules(Rules rules) {
+        compiledRules = null;
+        this.rules = rules;
+        templateRegistry.index(rules);
+        rulesIndex = new RulesIndex(rules);
+        discardRulesObservers();
+    }
+
+    /**
+     * Applies compiled rules that have already been opened without materializing their templates and without changing the configuration, so nothing is written.
+     *
+     * @param compiledRules compiled rules to be applied.
+     */
+    public void applyCompiledRules(CompiledRules compiledRules) {
+        this.compiledRules = compiledRules;
+        rules = null;
+        templateRegistry.index(new Rules());
+        rulesIndex = new RulesIndex(compiledRules);
+        discardRulesObservers();
     }
 
     /**
      * Lightweight accessor method.
      *
+     * If compiled rules are applied all of their templates are materialized on the first call, so this should only be called by code that edits
+     * or saves the rules, code that only reads them should use getRulesView. The production graph and the market valuation are built again over the materialized rules.
+     *
      * @return Currently applied rules.
      */
     public Rules getRules() {
+        if (rules == null) {
+            rules = compiledRules.toRules();
+            templateRegistry.index(rules);
+            compiledRules = null;
+            discardRulesObservers();
+        }
         return rules;
     }
 
+    /**
+     * Lightweight accessor method.
+     *
+     * @return Templates and tags of the currently applied rules. It is the compiled rules themselves if they have not been materialized yet, whose templates are only read when they are accessed.
+     */
+    public RulesView getRulesView() {
+        return rules != null ? rules : compiledRules;
+    }
+
+    /**
+     * Lightweight accessor method.
+     *
+     * The index is kept when compiled rules are materialized, as they contain the same templates.
+     *
+     * @return Dense indices of the templates and tags of the currently applied rules.
+     */
+    public RulesIndex getRulesIndex() {
+        return rulesIndex;
+    }
+
+    /**
+     * Lightweight accessor method.
+     *
+     * The graph is built on the first call and follows edits of the building templates until other rules are applied.
+     *
+     * @return Dependency graph of the building templates of the currently applied rules.
+     */
+    public ProductionGraph getProductionGraph() {
+        if (productionGraph == null)
+            productionGraph = new ProductionGraph(getRulesView(), rulesIndex);
+        return productionGraph;
+    }
+
+    /**
+     * Lightweight accessor method.
+     *
+     * The valuation is created on the first call and follows the stockpile and treasury of the user realm and the prices of the material templates
+     * until other rules are applied.
+     *
+     * @return Valuation of the user realm at the default prices of the currently applied rules.
+     */
+    public MarketValuation getMarketValuation() {
+        if (marketValuation == null)
+            marketValuation = new MarketValuation(getRulesView(), rulesIndex, userRealm);
+        return marketValuation;
+    }
+
+    /**
+     * Stops the production graph and the market valuation of the previously applied rules from listening to them, new ones are built when they are requested again.
+     * Moves the projects of the construction queue to a new queue if it reads the stockpile with the material index of rules that are not applied anymore.
+     */
+    private void discardRulesObservers() {
+        if (productionGraph != null)
+            productionGraph.dispose();
+        productionGraph = null;
+        if (marketValuation != null)
+            marketValuation.dispose();
+        marketValuation = null;
+        if (constructionQueue != null && constructionQueue.getMaterials() != rulesIndex.getMaterials()) {
+            List<QueuedConstruction> projects = constructionQueue.toQueuedConstructions();
+            constructionQueue = new ConstructionQueue(userRealm, rulesIndex.getMaterials());
+            constructionQueue.restore(projects);
+        }
+    }
+
+    /**
+     * Lightweight accessor method.
+     *
+     * @return Lookup of templates and tags of the currently applied rules by their ids. It is the compiled rules themselves if they have not been materialized yet.
+     */
+    public TemplateLookup getTemplateLookup() {
+        return compiledRules != null ? compiledRules : templateRegistry;
+    }
+
     /**
      * Lightweight accessor method.
      *
@@ -95,7 +263,7 @@ public final class Configurator {
     }
 
     /**
-     * NOT a lightweight mutator method, executes save configuration when called.
+     * NOT a lightweight mutator method, requests the configuration to be saved when called.
      *
      * @param lastSavegamePathname Pathname to the last loaded rules.
      */
@@ -141,11 +309,23 @@ public final class Configurator {
     }
 
     /**
-     * Relatively lightweight accessor method, overrides all fields of the original final reference to userRealm
+     * Relatively lightweight accessor method, overrides all fields of the original final reference to userRealm and empties the construction queue
      *
      * @param realm realm whose values are going to override the current values of userRealm
      */
     public void setUserRealm(Realm realm) {
+        setUserRealm(realm, List.of());
+    }
+
+    /**
+     * Relatively lightweight accessor method, overrides all fields of the original final reference to userRealm and replaces the projects of the construction queue.
+     * The stockpile and the treasury of a saved realm do not contain what was reserved for its projects, so the projects have to be restored with the realm
+     * instead of being refunded or dropped.
+     *
+     * @param realm             realm whose values are going to override the current values of userRealm
+     * @param constructionQueue projects the realm had under construction, as saved in the Savegame
+     */
+    public void setUserRealm(Realm realm, List<QueuedConstruction> constructionQueue) {
         userRealm.setId(realm.getId());
         userRealm.setName(realm.getName());
         userRealm.setTreasury(realm.getTreasury());
@@ -161,24 +341,60 @@ public final class Configurator {
         userRealm.getStockpile().clear();
         userRealm.getStockpile().addAll(realm.getStockpile());
 
-        userRealm.getOwnedBuildings().clear();
-        userRealm.getOwnedBuildings().addAll(realm.getOwnedBuildings());
+        userRealm.getBuildingCounts().clear();
+        userRealm.getBuildingCounts().addAll(realm.getBuildingCounts());
 
         userRealm.getTags().clear();
         userRealm.getTags().addAll(realm.getTags());
+
+        if (!constructionQueue.isEmpty())
+            getConstructionQueue().restore(constructionQueue);
+        else if (this.constructionQueue != null)
+            this.constructionQueue.clear();
+    }
+
+    /**
+     * Lightweight accessor method.
+     *
+     * The queue is created on the first call and is replaced by the queue of the savegame whenever another realm is loaded.
+     * It is created again with the projects it holds whenever other rules are applied, as it reads the stockpile with the material index of the rules, so it should not be kept.
+     *
+     * @return Buildings of the user realm that are under construction.
+     */
+    public ConstructionQueue getConstructionQueue() {
+        if (constructionQueue == null)
+            constructionQueue = new ConstructionQueue(userRealm, rulesIndex.getMaterials());
+        return constructionQueue;
+    }
+
+    /**
+     * Lightweight accessor method.
+     *
+     * The forecaster is created on the first call, so that programs that never forecast do not load the JavaFX concurrency classes it runs on.
+     *
+     * @return Forecaster that keeps the cached forecasts of the user realm while the program runs.
+     */
+    public Forecaster getForecaster() {
+        if (forecaster == null)
+            forecaster = new Forecaster();
+        return forecaster;
     }
 
     /**
      * Lightweight accessor method
      *
+     * The save manager is created on the first call, as its Tasks need not be loaded by programs that only read and write savegames through SavegameCodec.
+     *
      * @return Save Manager instance that is used to manage savegames.
      */
-    public SaveManager getSaveManager() {
+    public AsyncSaveManager getSaveManager() {
+        if (saveManager == null)
+            saveManager = new SimpleAsyncSaveManager();
         return saveManager;
     }
 
     /**
-     * Searches the list of all VisualMaterialTemplates in the currently loaded ruleset for a matching id of a given material.
+     * Looks up the VisualMaterialTemplate with a matching id of a given material in the currently loaded ruleset.
      *
      * @param material material that has an id set to represent a specific template.
      * @return VisualMaterialTemplate that is associated with that material. If none found returns null.
@@ -186,50 +402,69 @@ public final class Configurator {
     public VisualMaterialTemplate findMaterialTemplate(Material material) {
         if (material == null)
             return null;
-        List<VisualMaterialTemplate> list = rules.getMaterialTemplates().stream().filter(visualMaterialTemplate -> visualMaterialTemplate.getId().equals(material.getTemplateId())).collect(Collectors.toList());
-        if (list.size() > 1) {
-            Logger.getLogger(DownfallUtil.DEFAULT_LOGGER).log(Level.WARNING, "Multiple(" + list.size() + ") IDs found for template with id = " + material.getTemplateId());
-        } else if (list.size() <= 0) {
+        VisualMaterialTemplate template = getTemplateLookup().findMaterialTemplate(material.getTemplateId());
+        if (template == null)
             Logger.getLogger(DownfallUtil.DEFAULT_LOGGER).log(Level.SEVERE, "No Template found for id = " + material.getTemplateId());
+        return template;
+    }
+
+    /**
+     * Looks up the VisualBuildingTemplate with a matching id of a given building in the currently loaded ruleset.
+     *
+     * @param building building that has an id set to represent a specific template.
+     * @return VisualBuildingTemplate that is associated with that building. If none found returns null.
+     */
+    public VisualBuildingTemplate findBuildingTemplate(Building building) {
+        if (building == null)
             return null;
-        }
-        return list.get(0);
+        VisualBuildingTemplate template = getTemplateLookup().findBuildingTemplate(building.getId());
+        if (template == null)
+            Logger.getLogger(DownfallUtil.DEFAULT_LOGGER).log(Level.SEVERE, "No Template found for id = " + building.getId());
+        return template;
     }
 
     /**
      * Loads configuration from CONFIG_PATH defined in this class.
      */
     public void loadConfiguration() {
-        File config = new File(CONFIG_PATH);
-        Logger.getLogger(DownfallUtil.DEFAULT_LOGGER).log(Level.FINE, "Configuration loading initiated with path: " + CONFIG_PATH);
-        try {
-            JAXBContext context = JAXBContext.newInstance(Configuration.class);
-            Unmarshaller unmarshaller = context.createUnmarshaller();
-            configuration = (Configuration) unmarshaller.unmarshal(config);
-        } catch (JAXBException | IllegalArgumentException e) {
-            e.printStackTrace();
+        if (!readConfiguration()) {
             Logger.getLogger(DownfallUtil.DEFAULT_LOGGER).log(Level.WARNING, "Configuration loading failed, attempting to save a default configuration");
             saveConfiguration();
         }
     }
 
     /**
-     * Saves configuration to an XML file at CONFIG_PATH defined in this class
+     * Loads configuration from CONFIG_PATH defined in this class without ever writing it. The current configuration is kept if it cannot be read.
+     *
+     * @return true if the configuration was read, false if it could not be read.
      */
-    public void saveConfiguration() {
-        File config = new File(CONFIG_PATH);
-        Logger.getLogger(DownfallUtil.DEFAULT_LOGGER).log(Level.FINE, "Configuration saving initiated with path: " + CONFIG_PATH);
+    public boolean readConfiguration() {
+        Logger.getLogger(DownfallUtil.DEFAULT_LOGGER).log(Level.FINE, "Configuration loading initiated with path: " + CONFIG_PATH);
         try {
-            JAXBContext context = JAXBContext.newInstance(Configuration.class);
-            Marshaller marshaller = context.createMarshaller();
-            marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, true);
-            marshaller.marshal(configuration, config);
+            configuration = configurationStore.load();
+            return true;
         } catch (JAXBException | IllegalArgumentException e) {
             e.printStackTrace();
-            Logger.getLogger(DownfallUtil.DEFAULT_LOGGER).log(Level.WARNING, "Configuration saving failed =C");
+            return false;
         }
     }
 
+    /**
+     * Requests the configuration to be saved to an XML file at CONFIG_PATH defined in this class.
+     * Requests are coalesced and written on a background thread shortly after, call flushConfiguration to make sure they are written.
+     */
+    public void saveConfiguration() {
+        configurationStore.requestSave(configuration);
+    }
+
+    /**
+     * Writes any configuration changes that were requested to be saved but haven't been written yet. Blocks until they are written.
+     * Should be called before the program exits.
+     */
+    public void flushConfiguration() {
+        configurationStore.flush();
+    }
+
     /**
      * Loads rules from a specific provided pathname.
      *
@@ -240,14 +475,12 @@ public final class Configurator {
         File rulesFile = new File(pathname);
         Logger.getLogger(DownfallUtil.DEFAULT_LOGGER).log(Level.FINE, "Rules loading initiated with path: " + pathname);
         try {
-            JAXBContext context = JAXBContext.newInstance(Rules.class);
-            Unmarshaller unmarshaller = context.createUnmarshaller();
+            Rules rules = new StreamingRulesLoader().load(rulesFile);
             Logger.getLogger(DownfallUtil.DEFAULT_LOGGER).log(Level.FINE, "Rules config loading successfully completed.");
-            Rules rules = (Rules) unmarshaller.unmarshal(rulesFile);
             configuration.setLastRulesPathname(new PathRelativisor(pathname).relativize());
             saveConfiguration();
             return rules;
-        } catch (JAXBException | IllegalArgumentException e) {
+        } catch (XMLStreamException | IOException | IllegalArgumentException e) {
             e.printStackTrace();
             Logger.getLogger(DownfallUtil.DEFAULT_LOGGER).log(Level.WARNING, "Rules config loading failed, loading default ");
             Rules rules = loadDefaultRules();
@@ -257,23 +490,28 @@ public final class Configurator {
     }
 
     /**
-     * Saves currently applied rules to an XML file at DEFAULT_RULES_PATH defined in this class
+     * Saves currently applied rules to an XML file at DEFAULT_RULES_PATH defined in this class.
+     * Compiled rules that have not been materialized cannot have been edited and are not saved.
      */
     public void saveRules() {
+        if (rules == null) {
+            Logger.getLogger(DownfallUtil.DEFAULT_LOGGER).log(Level.FINE, "Compiled rules were not materialized, skipping rules saving");
+            return;
+        }
         saveRules(DEFAULT_RULES_PATH);
     }
 
     /**
-     * Saves currently applied rules to an XML file at a given pathname
+     * Saves currently applied rules to an XML file at a given pathname, or compiles them if the pathname ends with COMPILED_RULES_EXTENSION defined in DownfallUtil.
      *
      * @param pathname pathname to a file that can be written.
      */
     public void saveRules(String pathname) {
-        saveRules(rules, pathname);
+        saveRules(getRules(), pathname);
     }
 
     /**
-     * Saves given rules to an XML files at a given pathname
+     * Saves given rules to an XML file or a compiled rules file at a given pathname
      *
      * @param rules    rules to be saved.
      * @param pathname pathname to a file that can be written.
@@ -287,14 +525,14 @@ public final class Configurator {
         }
         Logger.getLogger(DownfallUtil.DEFAULT_LOGGER).log(Level.FINE, "Rules saving initiated with path: " + pathname);
         try {
-            JAXBContext context = JAXBContext.newInstance(Rules.class);
-            Marshaller marshaller = context.createMarshaller();
-            marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, true);
-            marshaller.marshal(rules, file);
+            if (pathname.endsWith(DownfallUtil.COMPILED_RULES_EXTENSION))
+                CompiledRules.compile(rules, file);
+            else
+                JAXBContextPool.getInstance().marshal(rules, file);
             configuration.setLastRulesPathname(new PathRelativisor(pathname).relativize());
             saveConfiguration();
             Logger.getLogger(DownfallUtil.DEFAULT_LOGGER).log(Level.FINE, "Rules saving successfully completed");
-        } catch (JAXBException | IllegalArgumentException e) {
+        } catch (JAXBException | IOException | IllegalArgumentException e) {
             e.printStackTrace();
             Logger.getLogger(DownfallUtil.DEFAULT_LOGGER).log(Level.WARNING, "Couldn't save Rules to path: " + pathname);
         }
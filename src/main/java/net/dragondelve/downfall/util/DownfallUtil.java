@@ -33,9 +33,12 @@ public final class DownfallUtil {
     public final static String REALM_EDITOR_FXML_PATHNAME = "fxml/editors/RealmEditor.fxml";
     public final static String DOWNFALL_MAIN_FXML_PATHNAME = "fxml/main/DownfallMain.fxml";
     public final static String REALM_SCREEN_FXML_PATHNAME = "fxml/main/tabs/RealmScreen.fxml";
+    public final static String FORECAST_FXML_PATHNAME = "fxml/main/Forecast.fxml";
 
 
     public final static String DEFAULT_SAVEGAME_PATHNAME = "save/testsave.xml";
+    public final static String BINARY_SAVEGAME_EXTENSION = ".dfsave";
+    public final static String COMPILED_RULES_EXTENSION = ".dfrules";
     public final static String DEFAULT_MATERIAL_GFX_PATHNAME = "gfx/materials/orb.png";
     public final static String DEFAULT_BUILDING_GFX_PATHNAME = "gfx/buildings/houseSmall.png";
 
@@ -51,12 +54,14 @@ public final class DownfallUtil {
     public final static Color HIGHLIGHT_COLOR = Color.web("#a34097");
     public final static Color CONFIRM_COLOR = Color.web("#40A34C");
     private final static DownfallUtil instance = new DownfallUtil();
+    private final ImageCache imageCache = new ImageCache();
     private URL URLRealmScreenFXML;
     private URL URLMaterialsEditorFXML;
     private URL URLRealmEditorFXML;
     private URL URLBuildingsEditorFXML;
     private URL URLTagsEditorFXML;
     private URL URLDownfallMainFXML;
+    private URL URLForecastFXML;
 
     /**
      * Default Constructor method. Constructs all necessary URLs to all fxml files
@@ -97,6 +102,12 @@ public final class DownfallUtil {
         } catch (MalformedURLException e) {
             informOfMalformedURL("file:" + REALM_EDITOR_FXML_PATHNAME);
         }
+
+        try {
+            URLForecastFXML = new URL("file:" + FORECAST_FXML_PATHNAME);
+        } catch (MalformedURLException e) {
+            informOfMalformedURL("file:" + FORECAST_FXML_PATHNAME);
+        }
     }
 
     public static DownfallUtil getInstance() {
@@ -157,15 +168,46 @@ public final class DownfallUtil {
         return URLRealmScreenFXML;
     }
 
+    /**
+     * Lightweight accessor method.
+     *
+     * @return URL to an FXML file that contains the Forecast window.
+     */
+    public URL getURLForecastFXML() {
+        return URLForecastFXML;
+    }
+
+    /**
+     * Lightweight accessor method.
+     *
+     * @return cache that holds all images loaded with loadImage.
+     */
+    public ImageCache getImageCache() {
+        return imageCache;
+    }
+
     /**
      * Loads an image from a given pathname.
-     * Lightweight method. Quickly constructs a URL by adding "file:" to a given pathname and returns a new image made from that URL
+     * Images are shared through the image cache, so the same file is only decoded again after it has been evicted from the cache.
      *
      * @param pathname pathname to an image file
      * @return Image loaded from the pathname.
      */
     public Image loadImage(String pathname) {
-        return new Image("file:" + pathname);
+        return imageCache.get(pathname);
+    }
+
+    /**
+     * Loads an image from a given pathname scaled to fit into the requested size while keeping its aspect ratio.
+     * Images are shared through the image cache, so the same file is only decoded again at the same size after it has been evicted from the cache.
+     *
+     * @param pathname pathname to an image file
+     * @param width    width of the bounding box of the image.
+     * @param height   height of the bounding box of the image.
+     * @return Image loaded from the pathname.
+     */
+    public Image loadImage(String pathname, double width, double height) {
+        return imageCache.get(pathname, width, height);
     }
 
     /**
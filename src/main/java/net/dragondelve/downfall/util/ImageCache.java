@@ -0,0 +1,296 @@
+// Copyright 2023 Prokhor Kalinin
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package net.dragondelve.downfall.util;
+
+import javafx.beans.value.ChangeListener;
+import javafx.beans.value.ObservableValue;
+import javafx.scene.image.Image;
+
+import java.io.File;
+import java.nio.file.InvalidPathException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Least recently used cache of decoded images that is bounded by the estimated amount of memory the decoded pixels take.
+ * Images are keyed by the normalized absolute path of their file and the size they were requested at, so the same file requested
+ * through different relative pathnames is only decoded once per size. Images that failed to load are not cached.
+ * All methods are thread safe, so images can be loaded through the cache from background threads.
+ */
+public final class ImageCache {
+    /**
+     * Default budget of 64 MiB, which fits roughly 16 thousand 64x64 icons or a few dozen large realm images.
+     */
+    public static final long DEFAULT_BYTE_BUDGET = 64L * 1024 * 1024;
+    private static final int BYTES_PER_PIXEL = 4;
+
+    private final Map<Key, Image> images = new LinkedHashMap<>(64, 0.75f, true);
+    private final long byteBudget;
+    private long usedBytes = 0;
+    private long hitCount = 0;
+    private long missCount = 0;
+    private long evictionCount = 0;
+
+    /**
+     * Default constructor. Creates a cache with a budget of DEFAULT_BYTE_BUDGET.
+     */
+    public ImageCache() {
+        this(DEFAULT_BYTE_BUDGET);
+    }
+
+    /**
+     * Creates a cache with a given budget.
+     *
+     * @param byteBudget maximum estimated amount of bytes the decoded images in this cache may take up. An image bigger than the budget is returned but not cached.
+     */
+    public ImageCache(long byteBudget) {
+        this.byteBudget = byteBudget;
+    }
+
+    /**
+     * Returns an image at its natural size, decoding it if it is not in the cache.
+     *
+     * @param pathname pathname to an image file.
+     * @return Image loaded from the pathname. If the file could not be loaded the returned image reports an error.
+     */
+    public Image get(String pathname) {
+        return get(pathname, 0, 0);
+    }
+
+    /**
+     * Returns an image scaled to fit into the requested size while keeping its aspect ratio, decoding it if it is not in the cache.
+     *
+     * @param pathname        pathname to an image file.
+     * @param requestedWidth  width of the bounding box of the image, or 0 to use the natural width.
+     * @param requestedHeight height of the bounding box of the image, or 0 to use the natural height.
+     * @return Image loaded from the pathname. If the file could not be loaded the returned image reports an error.
+     */
+    public Image get(String pathname, double requestedWidth, double requestedHeight) {
+        Key key = new Key(normalize(pathname), requestedWidth, requestedHeight);
+        synchronized (this) {
+            Image image = images.get(key);
+            if (image != null) {
+                hitCount++;
+                return image;
+            }
+            missCount++;
+        }
+
+        // decoding happens outside the lock, two threads missing the same key at once decode it twice, and the first one is kept
+        Image image = new Image("file:" + pathname, requestedWidth, requestedHeight, true, true);
+        if (image.isError()) {
+            Logger.getLogger(DownfallUtil.DEFAULT_LOGGER).log(Level.FINE, "Image could not be loaded from: " + pathname);
+            return image;
+        }
+
+        return store(key, image);
+    }
+
+    /**
+     * Returns a cached image scaled to fit into the requested size, or starts decoding it on the background loading threads of JavaFX if it is not in the cache.
+     * An image that is still loading reports a progress below 1 and is added to the cache once it has loaded successfully.
+     * Loading can be stopped with Image.cancel, in which case the image is not cached.
+     *
+     * @param pathname        pathname to an image file.
+     * @param requestedWidth  width of the bounding box of the image, or 0 to use the natural width.
+     * @param requestedHeight height of the bounding box of the image, or 0 to use the natural height.
+     * @return Image that is either already loaded or is loading in the background.
+     */
+    public Image getInBackground(String pathname, double requestedWidth, double requestedHeight) {
+        Key key = new Key(normalize(pathname), requestedWidth, requestedHeight);
+        synchronized (this) {
+            Image image = images.get(key);
+            if (image != null) {
+                hitCount++;
+                return image;
+            }
+            missCount++;
+        }
+
+        Image image = new Image("file:" + pathname, requestedWidth, requestedHeight, true, true, true);
+        image.progressProperty().addListener(new ChangeListener<>() {
+            @Override
+            public void changed(ObservableValue<? extends Number> observable, Number oldValue, Number newValue) {
+                if (newValue.doubleValue() < 1)
+                    return;
+                observable.removeListener(this);
+                if (image.isError())
+                    Logger.getLogger(DownfallUtil.DEFAULT_LOGGER).log(Level.FINE, "Image could not be loaded from: " + pathname);
+                else
+                    store(key, image);
+            }
+        });
+        return image;
+    }
+
+    /**
+     * Removes all images decoded from a given pathname at any size, so that they are decoded again the next time they are requested.
+     *
+     * @param pathname pathname to an image file.
+     */
+    public synchronized void invalidate(String pathname) {
+        String normalized = normalize(pathname);
+        Iterator<Map.Entry<Key, Image>> iterator = images.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Key, Image> entry = iterator.next();
+            if (entry.getKey().pathname.equals(normalized)) {
+                usedBytes -= estimateSize(entry.getValue());
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Removes all images from the cache. Does not reset the counters.
+     */
+    public synchronized void clear() {
+        images.clear();
+        usedBytes = 0;
+    }
+
+    /**
+     * Lightweight accessor method.
+     *
+     * @return number of requests that were served from the cache.
+     */
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * Lightweight accessor method.
+     *
+     * @return number of requests that had to decode an image.
+     */
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * Lightweight accessor method.
+     *
+     * @return number of images that were removed to stay within the byte budget.
+     */
+    public synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * Lightweight accessor method.
+     *
+     * @return estimated amount of bytes taken up by the decoded images that are currently cached.
+     */
+    public synchronized long getUsedBytes() {
+        return usedBytes;
+    }
+
+    /**
+     * Lightweight accessor method.
+     *
+     * @return number of images that are currently cached.
+     */
+    public synchronized int size() {
+        return images.size();
+    }
+
+    /**
+     * Puts a successfully loaded image into the cache unless another thread has already cached an image for the same key.
+     *
+     * @param key   key of the image.
+     * @param image image that has been loaded.
+     * @return the image that is cached for the key afterwards, or the given image if it is too big to be cached.
+     */
+    private synchronized Image store(Key key, Image image) {
+        Image cached = images.get(key);
+        if (cached != null)
+            return cached;
+        long size = estimateSize(image);
+        if (size > byteBudget)
+            return image;
+        images.put(key, image);
+        usedBytes += size;
+        evict();
+        return image;
+    }
+
+    /**
+     * Removes least recently used images until the cache fits into its byte budget. Must be called while holding the lock of this cache.
+     */
+    private void evict() {
+        Iterator<Image> iterator = images.values().iterator();
+        while (usedBytes > byteBudget && iterator.hasNext()) {
+            usedBytes -= estimateSize(iterator.next());
+            iterator.remove();
+            evictionCount++;
+        }
+    }
+
+    /**
+     * @param image decoded image.
+     * @return estimated amount of bytes taken up by the pixels of the image.
+     */
+    private static long estimateSize(Image image) {
+        return (long) Math.ceil(image.getWidth()) * (long) Math.ceil(image.getHeight()) * BYTES_PER_PIXEL;
+    }
+
+    /**
+     * @param pathname pathname to a file.
+     * @return normalized absolute path of the file or the pathname itself if it is not a valid path.
+     */
+    private static String normalize(String pathname) {
+        if (pathname == null)
+            return "";
+        try {
+            return new File(pathname).toPath().toAbsolutePath().normalize().toString();
+        } catch (InvalidPathException e) {
+            return pathname;
+        }
+    }
+
+    /**
+     * Identifies a decoded image by the file it was decoded from and the size it was requested at.
+     */
+    private static final class Key {
+        private final String pathname;
+        private final double width;
+        private final double height;
+
+        private Key(String pathname, double width, double height) {
+            this.pathname = pathname;
+            this.width = width;
+            this.height = height;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o)
+                return true;
+            if (!(o instanceof Key))
+                return false;
+            Key key = (Key) o;
+            return Double.compare(key.width, width) == 0 && Double.compare(key.height, height) == 0 && pathname.equals(key.pathname);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(pathname, width, height);
+        }
+    }
+}
@@ -0,0 +1,214 @@
+// Copyright 2023 Prokhor Kalinin
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package net.dragondelve.downfall.util;
+
+import jakarta.xml.bind.JAXBContext;
+import jakarta.xml.bind.JAXBException;
+import jakarta.xml.bind.Marshaller;
+import jakarta.xml.bind.Unmarshaller;
+
+import java.io.File;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Non Instantiable pool of JAXBContexts that is shared by all XML persistence paths of the program.
+ * Creating a JAXBContext is the most expensive step of JAXB, so exactly one context is created per root class and reused afterwards.
+ * JAXBContexts are thread safe, Marshallers and Unmarshallers are not, so they are pooled and handed out to one caller at a time.
+ */
+public final class JAXBContextPool {
+    private static final JAXBContextPool instance = new JAXBContextPool();
+
+    private final Map<Class<?>, JAXBContext> contexts = new ConcurrentHashMap<>();
+    private final Map<Class<?>, Queue<Marshaller>> marshallers = new ConcurrentHashMap<>();
+    private final Map<Class<?>, Queue<Unmarshaller>> unmarshallers = new ConcurrentHashMap<>();
+
+    /**
+     * Private constructor to make this class non instantiable.
+     */
+    private JAXBContextPool() {
+        super();
+    }
+
+    /**
+     * Lightweight Accessor Method
+     *
+     * @return The only instance of this class.
+     */
+    public static JAXBContextPool getInstance() {
+        return instance;
+    }
+
+    /**
+     * Creates contexts for the given root classes on a background daemon thread, so that the first save or load does not have to wait for them.
+     * Callers that request a context while it is being created wait for it instead of creating a second one.
+     *
+     * @param rootClasses root classes whose contexts should be created ahead of time.
+     */
+    public void warmUp(Class<?>... rootClasses) {
+        Thread thread = new Thread(() -> {
+            for (Class<?> rootClass : rootClasses) {
+                try {
+                    getContext(rootClass);
+                } catch (JAXBException e) {
+                    Logger.getLogger(DownfallUtil.DEFAULT_LOGGER).log(Level.WARNING, "JAXBContext warm up failed for " + rootClass.getName(), e);
+                }
+            }
+        }, "JAXBContextPool warm up");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Returns the context for a given root class, creating it on the first request.
+     *
+     * @param rootClass class annotated with XmlRootElement.
+     * @return JAXBContext that is bound to the rootClass.
+     * @throws JAXBException if the context could not be created.
+     */
+    public JAXBContext getContext(Class<?> rootClass) throws JAXBException {
+        JAXBContext context = contexts.get(rootClass);
+        if (context != null)
+            return context;
+        try {
+            return contexts.computeIfAbsent(rootClass, key -> {
+                try {
+                    return JAXBContext.newInstance(key);
+                } catch (JAXBException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+        } catch (IllegalStateException e) {
+            if (e.getCause() instanceof JAXBException)
+                throw (JAXBException) e.getCause();
+            throw e;
+        }
+    }
+
+    /**
+     * Unmarshals an XML file with a pooled Unmarshaller.
+     *
+     * @param file      XML file to be read.
+     * @param rootClass class of the root element stored in the file.
+     * @param <T>       type of the root element.
+     * @return root element read from the file.
+     * @throws JAXBException if the file could not be read or does not contain an instance of rootClass.
+     */
+    public <T> T unmarshal(File file, Class<T> rootClass) throws JAXBException {
+        Unmarshaller unmarshaller = acquireUnmarshaller(rootClass);
+        try {
+            return rootClass.cast(unmarshaller.unmarshal(file));
+        } catch (ClassCastException e) {
+            throw new JAXBException("File " + file.getPath() + " does not contain " + rootClass.getSimpleName(), e);
+        } finally {
+            releaseUnmarshaller(rootClass, unmarshaller);
+        }
+    }
+
+    /**
+     * Unmarshals XML from a stream with a pooled Unmarshaller. The stream is not closed.
+     *
+     * @param in        stream that contains XML.
+     * @param rootClass class of the root element stored in the stream.
+     * @param <T>       type of the root element.
+     * @return root element read from the stream.
+     * @throws JAXBException if the stream could not be read or does not contain an instance of rootClass.
+     */
+    public <T> T unmarshal(InputStream in, Class<T> rootClass) throws JAXBException {
+        Unmarshaller unmarshaller = acquireUnmarshaller(rootClass);
+        try {
+            return rootClass.cast(unmarshaller.unmarshal(in));
+        } catch (ClassCastException e) {
+            throw new JAXBException("Stream does not contain " + rootClass.getSimpleName(), e);
+        } finally {
+            releaseUnmarshaller(rootClass, unmarshaller);
+        }
+    }
+
+    /**
+     * Marshals an object into an XML file with a pooled Marshaller that produces formatted output.
+     *
+     * @param object object annotated with XmlRootElement.
+     * @param file   file that the XML is written to.
+     * @throws JAXBException if the object could not be written.
+     */
+    public void marshal(Object object, File file) throws JAXBException {
+        Class<?> rootClass = object.getClass();
+        Marshaller marshaller = acquireMarshaller(rootClass);
+        try {
+            marshaller.marshal(object, file);
+        } finally {
+            releaseMarshaller(rootClass, marshaller);
+        }
+    }
+
+    /**
+     * Takes a Marshaller from the pool or creates a new one if the pool is empty. It should be handed back with releaseMarshaller once it's no longer used.
+     *
+     * @param rootClass class annotated with XmlRootElement.
+     * @return Marshaller that produces formatted output and is not used by anyone else.
+     * @throws JAXBException if a new Marshaller could not be created.
+     */
+    public Marshaller acquireMarshaller(Class<?> rootClass) throws JAXBException {
+        Marshaller marshaller = marshallers.computeIfAbsent(rootClass, key -> new ConcurrentLinkedQueue<>()).poll();
+        if (marshaller == null) {
+            marshaller = getContext(rootClass).createMarshaller();
+            marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, true);
+        }
+        return marshaller;
+    }
+
+    /**
+     * Returns a Marshaller to the pool. Removes the listener that was set by the caller.
+     *
+     * @param rootClass  class for which the Marshaller was acquired.
+     * @param marshaller Marshaller that is no longer used by the caller.
+     */
+    public void releaseMarshaller(Class<?> rootClass, Marshaller marshaller) {
+        marshaller.setListener(null);
+        marshallers.computeIfAbsent(rootClass, key -> new ConcurrentLinkedQueue<>()).offer(marshaller);
+    }
+
+    /**
+     * Takes an Unmarshaller from the pool or creates a new one if the pool is empty. It should be handed back with releaseUnmarshaller once it's no longer used.
+     *
+     * @param rootClass class annotated with XmlRootElement.
+     * @return Unmarshaller that is not used by anyone else.
+     * @throws JAXBException if a new Unmarshaller could not be created.
+     */
+    public Unmarshaller acquireUnmarshaller(Class<?> rootClass) throws JAXBException {
+        Unmarshaller unmarshaller = unmarshallers.computeIfAbsent(rootClass, key -> new ConcurrentLinkedQueue<>()).poll();
+        if (unmarshaller == null)
+            unmarshaller = getContext(rootClass).createUnmarshaller();
+        return unmarshaller;
+    }
+
+    /**
+     * Returns an Unmarshaller to the pool. Removes the listener that was set by the caller.
+     *
+     * @param rootClass    class for which the Unmarshaller was acquired.
+     * @param unmarshaller Unmarshaller that is no longer used by the caller.
+     */
+    public void releaseUnmarshaller(Class<?> rootClass, Unmarshaller unmarshaller) {
+        unmarshaller.setListener(null);
+        unmarshallers.computeIfAbsent(rootClass, key -> new ConcurrentLinkedQueue<>()).offer(unmarshaller);
+    }
+}
@@ -0,0 +1,91 @@
+// Copyright 2023 Prokhor Kalinin
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package net.dragondelve.downfall.util;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.function.BooleanSupplier;
+import java.util.function.LongConsumer;
+
+/**
+ * InputStream that reports the number of bytes read so far and can abort reading when its reader is cancelled.
+ * Used to report the progress of reading files whose parsers give no progress of their own.
+ */
+final class ProgressInputStream extends FilterInputStream {
+    private final LongConsumer progressConsumer;
+    private final BooleanSupplier cancelled;
+    private long bytesRead = 0;
+
+    /**
+     * @param in               stream to be read.
+     * @param progressConsumer receives the total number of bytes read after every read.
+     * @param cancelled        checked before every read, if it returns true reading is aborted with an InterruptedIOException.
+     */
+    ProgressInputStream(InputStream in, LongConsumer progressConsumer, BooleanSupplier cancelled) {
+        super(in);
+        this.progressConsumer = progressConsumer;
+        this.cancelled = cancelled;
+    }
+
+    @Override
+    public int read() throws IOException {
+        checkCancelled();
+        int value = super.read();
+        if (value != -1)
+            advance(1);
+        return value;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) throws IOException {
+        checkCancelled();
+        int count = super.read(bytes, offset, length);
+        if (count > 0)
+            advance(count);
+        return count;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        checkCancelled();
+        long count = super.skip(n);
+        if (count > 0)
+            advance(count);
+        return count;
+    }
+
+    /**
+     * Adds to the number of bytes read and reports it.
+     *
+     * @param count number of bytes that were just read.
+     */
+    private void advance(long count) {
+        bytesRead += count;
+        progressConsumer.accept(bytesRead);
+    }
+
+    /**
+     * Aborts reading if the reader was cancelled.
+     *
+     * @throws InterruptedIOException if the reader was cancelled.
+     */
+    private void checkCancelled() throws InterruptedIOException {
+        if (cancelled.getAsBoolean())
+            throw new InterruptedIOException("Reading cancelled");
+    }
+}
@@ -17,41 +17,45 @@ package net.dragondelve.downfall.util;
 import jakarta.xml.bind.annotation.XmlElement;
 import jakarta.xml.bind.annotation.XmlElementWrapper;
 import jakarta.xml.bind.annotation.XmlRootElement;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
 import net.dragondelve.downfall.realm.Tag;
 import net.dragondelve.downfall.realm.template.VisualBuildingTemplate;
 import net.dragondelve.downfall.realm.template.VisualMaterialTemplate;
 
-import java.util.ArrayList;
 import java.util.List;
 
 /**
  * Contains reference to a user defined Ruleset. Ruleset determines Templates that can be used for different Materials and Buildings.
  * This class if fully annotated and can be saved to an XML file with JAXB
+ * All lists are observable so that an index built over them (see TemplateRegistry) can stay in sync with the editors.
  */
 @XmlRootElement(name = "rules")
-public final class Rules {
-    private List<VisualMaterialTemplate> materialTemplates = new ArrayList<>();
-    private List<VisualBuildingTemplate> buildingTemplates = new ArrayList<>();
-    private List<Tag> actorTags = new ArrayList<>();
+public final class Rules implements RulesView {
+    private final ObservableList<VisualMaterialTemplate> materialTemplates = FXCollections.observableArrayList();
+    private final ObservableList<VisualBuildingTemplate> buildingTemplates = FXCollections.observableArrayList();
+    private final ObservableList<Tag> actorTags = FXCollections.observableArrayList();
 
     /**
      * Lightweight accessor method.
      *
      * @return Full list of all available material templates.
      */
+    @Override
     @XmlElementWrapper(name = "material-templates")
     @XmlElement(name = "material-template")
-    public List<VisualMaterialTemplate> getMaterialTemplates() {
+    public ObservableList<VisualMaterialTemplate> getMaterialTemplates() {
         return materialTemplates;
     }
 
     /**
-     * Lightweight mutator method.
+     * Lightweight mutator method. Replaces the content of the list instead of the list itself.
      *
      * @param materialTemplates Full list of all available material templates.
      */
     public void setMaterialTemplates(List<VisualMaterialTemplate> materialTemplates) {
-        this.materialTemplates = materialTemplates;
+        if (this.materialTemplates != materialTemplates)
+            this.materialTemplates.setAll(materialTemplates);
     }
 
     /**
@@ -59,19 +63,21 @@ public final class Rules {
      *
      * @return Full list of all available building templates.
      */
+    @Override
     @XmlElementWrapper(name = "building-templates")
     @XmlElement(name = "building-template")
-    public List<VisualBuildingTemplate> getBuildingTemplates() {
+    public ObservableList<VisualBuildingTemplate> getBuildingTemplates() {
         return buildingTemplates;
     }
 
     /**
-     * Lightweight mutator method.
+     * Lightweight mutator method. Replaces the content of the list instead of the list itself.
      *
      * @param buildingTemplates Full list of all available building templates.
      */
     public void setBuildingTemplates(List<VisualBuildingTemplate> buildingTemplates) {
-        this.buildingTemplates = buildingTemplates;
+        if (this.buildingTemplates != buildingTemplates)
+            this.buildingTemplates.setAll(buildingTemplates);
     }
 
     /**
@@ -79,18 +85,20 @@ public final class Rules {
      *
      * @return Full list of possible tags that can be applied to an Actor.
      */
+    @Override
     @XmlElementWrapper(name = "tags")
     @XmlElement(name = "tag")
-    public List<Tag> getActorTags() {
+    public ObservableList<Tag> getActorTags() {
         return actorTags;
     }
 
     /**
-     * Lightweight mutator method.
+     * Lightweight mutator method. Replaces the content of the list instead of the list itself.
      *
      * @param actorTags Full list of possible tags that can be applied to an Actor.
      */
     public void setActorTags(List<Tag> actorTags) {
-        this.actorTags = actorTags;
+        if (this.actorTags != actorTags)
+            this.actorTags.setAll(actorTags);
     }
 }
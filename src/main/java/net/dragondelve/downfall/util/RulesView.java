@@ -0,0 +1,48 @@
+// Copyright 2023 Prokhor Kalinin
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package net.dragondelve.downfall.util;
+
+import javafx.collections.ObservableList;
+import net.dragondelve.downfall.realm.Tag;
+import net.dragondelve.downfall.realm.template.VisualBuildingTemplate;
+import net.dragondelve.downfall.realm.template.VisualMaterialTemplate;
+
+/**
+ * Lists the templates and tags of a ruleset in the order they were defined in.
+ * Implemented by Rules and by CompiledRules, whose lists only materialize the templates that are accessed, so code that only reads the rules
+ * should take a RulesView and be given Configurator.getRulesView() instead of materializing compiled rules with Configurator.getRules().
+ */
+public interface RulesView {
+    /**
+     * Lightweight accessor method.
+     *
+     * @return Full list of all available material templates. Read-only for compiled rules.
+     */
+    ObservableList<VisualMaterialTemplate> getMaterialTemplates();
+
+    /**
+     * Lightweight accessor method.
+     *
+     * @return Full list of all available building templates. Read-only for compiled rules.
+     */
+    ObservableList<VisualBuildingTemplate> getBuildingTemplates();
+
+    /**
+     * Lightweight accessor method.
+     *
+     * @return Full list of possible tags that can be applied to an Actor. Read-only for compiled rules.
+     */
+    ObservableList<Tag> getActorTags();
+}
@@ -0,0 +1,83 @@
+// Copyright 2023 Prokhor Kalinin
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package net.dragondelve.downfall.util;
+
+import net.dragondelve.downfall.realm.Savegame;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.function.Consumer;
+
+/**
+ * Reads and writes Savegames in a particular file format. Every codec stores the full Savegame,
+ * so converting a savegame from one format to another and back is lossless.
+ */
+public interface SavegameCodec {
+    /**
+     * Chooses a codec by the extension of a pathname. Pathnames ending with DownfallUtil.BINARY_SAVEGAME_EXTENSION use the binary format,
+     * everything else uses XML.
+     *
+     * @param pathname pathname to a savegame file.
+     * @return codec that reads and writes the format of that file.
+     */
+    static SavegameCodec forPathname(String pathname) {
+        if (pathname.toLowerCase().endsWith(DownfallUtil.BINARY_SAVEGAME_EXTENSION))
+            return BinarySavegameCodec.getInstance();
+        return XMLSavegameCodec.getInstance();
+    }
+
+    /**
+     * Converts a savegame file into another format. Formats of both files are chosen by their extensions.
+     *
+     * @param sourcePathname pathname to an existing savegame file.
+     * @param targetPathname pathname to a file that the converted savegame will be written to.
+     * @throws IOException if the source could not be read or the target could not be written.
+     */
+    static void convert(String sourcePathname, String targetPathname) throws IOException {
+        Savegame savegame;
+        try (InputStream in = new BufferedInputStream(new FileInputStream(sourcePathname))) {
+            savegame = forPathname(sourcePathname).read(in);
+        }
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(new File(targetPathname)))) {
+            forPathname(targetPathname).write(savegame, out, element -> {});
+        }
+    }
+
+    /**
+     * Reads a savegame from a stream. The stream is not closed.
+     *
+     * @param in stream that contains a savegame in the format of this codec.
+     * @return Savegame that was read.
+     * @throws IOException if the stream could not be read or does not contain a valid savegame.
+     */
+    Savegame read(InputStream in) throws IOException;
+
+    /**
+     * Writes a savegame to a stream. The stream is not closed.
+     *
+     * @param savegame        savegame to be written.
+     * @param out             stream that the savegame is written to.
+     * @param elementListener is given the Savegame, Realm, and every Material, BuildingCount, Tag and QueuedConstruction right before it is written. May abort writing by throwing an unchecked exception.
+     * @throws IOException if the savegame could not be written.
+     */
+    void write(Savegame savegame, OutputStream out, Consumer<Object> elementListener) throws IOException;
+}
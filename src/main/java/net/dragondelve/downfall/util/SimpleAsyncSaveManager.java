@@ -0,0 +1,272 @@
+// Copyright 2023 Prokhor Kalinin
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package net.dragondelve.downfall.util;
+
+import javafx.application.Platform;
+import javafx.concurrent.Task;
+import net.dragondelve.downfall.realm.BuildingCount;
+import net.dragondelve.downfall.realm.Material;
+import net.dragondelve.downfall.realm.QueuedConstruction;
+import net.dragondelve.downfall.realm.Realm;
+import net.dragondelve.downfall.realm.Savegame;
+import net.dragondelve.downfall.realm.Tag;
+
+import javax.xml.stream.XMLStreamException;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Implementation of AsyncSaveManager that delegates synchronous operations to SimpleSaveManager and runs background operations
+ * one at a time on a single daemon thread, so that a save and a load never overlap.
+ */
+final class SimpleAsyncSaveManager implements AsyncSaveManager {
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final double SAVEGAME_SHARE = 0.5;
+
+    private final SaveManager saveManager = new SimpleSaveManager();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "Savegame worker");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Loads and applies the savegame from last pathname used and attempts to find,
+     * load and validate the rules that are referenced in the savegame.
+     */
+    @Override
+    public void loadFromLast() {
+        saveManager.loadFromLast();
+    }
+
+    /**
+     * Loads and applies the savegame from a given pathname and attempts to find,
+     * load and validate the rules that are referenced in the savegame.
+     *
+     * @param pathname pathname to a savegame file.
+     */
+    @Override
+    public void loadFrom(String pathname) {
+        saveManager.loadFrom(pathname);
+    }
+
+    /**
+     * Formulates a new Savegame based on the state of the Configurator and then saves it
+     * to the last pathname used.
+     */
+    @Override
+    public void saveToLast() {
+        saveManager.saveToLast();
+    }
+
+    /**
+     * Formulates a new Savegame based on the state of the Configurator and then saves it to a given pathname.
+     *
+     * @param pathname pathname to a file in which the savegame data will be recorded.
+     */
+    @Override
+    public void saveTo(String pathname) {
+        saveManager.saveTo(pathname);
+    }
+
+    /**
+     * Reads the savegame at a given pathname and the rules it references on a background thread and then applies both of them
+     * on the JavaFX application thread in one go. Reading the savegame accounts for the first half of the progress, reading the rules for the second.
+     * If the rules cannot be read they are loaded with Configurator.loadAndApplyRules instead, which falls back to the default rules.
+     *
+     * @param pathname pathname to a savegame file.
+     * @return started task whose value is the loaded savegame.
+     */
+    @Override
+    public Task<Savegame> loadFromInBackground(String pathname) {
+        Task<Savegame> task = new Task<>() {
+            @Override
+            protected Savegame call() throws Exception {
+                Logger.getLogger(DownfallUtil.DEFAULT_LOGGER).log(Level.FINE, "Background savegame loading initiated with path: " + pathname);
+                updateMessage("Loading " + pathname);
+                File saveFile = new File(pathname);
+                Savegame savegame;
+                try (InputStream in = openWithProgress(saveFile, 0, SAVEGAME_SHARE)) {
+                    savegame = SavegameCodec.forPathname(pathname).read(in);
+                }
+
+                Rules rules = null;
+                File rulesFile = new File(savegame.getPathToRules());
+                // compiled rules are only memory-mapped when applied, so there is nothing to read in advance
+                if (!savegame.getPathToRules().endsWith(DownfallUtil.COMPILED_RULES_EXTENSION)) {
+                    try (InputStream in = openWithProgress(rulesFile, SAVEGAME_SHARE, 1 - SAVEGAME_SHARE)) {
+                        rules = new StreamingRulesLoader().load(in);
+                    } catch (XMLStreamException | IOException | NumberFormatException e) {
+                        if (isCancelled())
+                            throw e;
+                        Logger.getLogger(DownfallUtil.DEFAULT_LOGGER).log(Level.WARNING, "Rules referenced by savegame could not be read in the background: " + savegame.getPathToRules());
+                    }
+                }
+
+                if (isCancelled())
+                    throw new CancellationException();
+
+                Rules loadedRules = rules;
+                runOnFXThread(() -> {
+                    // the rules are applied first, so that the construction queue of the savegame is bound to their material index
+                    if (loadedRules != null)
+                        Configurator.getInstance().applyRules(loadedRules, savegame.getPathToRules());
+                    else
+                        Configurator.getInstance().loadAndApplyRules(savegame.getPathToRules());
+                    Configurator.getInstance().setUserRealm(savegame.getUserRealm(), savegame.getConstructionQueue());
+                    Configurator.getInstance().setLastSavegamePathname(pathname);
+                });
+                updateProgress(1, 1);
+                Logger.getLogger(DownfallUtil.DEFAULT_LOGGER).log(Level.FINE, "Background savegame loading successfully completed.");
+                return savegame;
+            }
+
+            /**
+             * Opens a file for reading that reports the bytes read as progress between start and start + share and stops reading once the task is cancelled.
+             *
+             * @param file  file to be read.
+             * @param start progress reported before the file is read.
+             * @param share part of the total progress that reading this file accounts for.
+             * @return stream that reads the file.
+             * @throws IOException if the file could not be opened.
+             */
+            private InputStream openWithProgress(File file, double start, double share) throws IOException {
+                long size = Math.max(file.length(), 1);
+                return new ProgressInputStream(new BufferedInputStream(new FileInputStream(file)),
+                        bytesRead -> updateProgress(start + share * Math.min(bytesRead, size) / size, 1), this::isCancelled);
+            }
+        };
+        executor.execute(task);
+        return task;
+    }
+
+    /**
+     * Takes a snapshot of the user realm on the calling thread and writes it to a given pathname on a background thread.
+     * The savegame is written to a temporary file that replaces the file at pathname once it's complete.
+     * Progress is reported for every element of the realm that is written.
+     *
+     * @param pathname pathname to a file in which the savegame data will be recorded.
+     * @return started task.
+     */
+    @Override
+    public Task<Void> saveToInBackground(String pathname) {
+        Savegame savegame = new Savegame(Configurator.getInstance().getLastRulesPathname(), snapshot(Configurator.getInstance().getUserRealm()));
+        savegame.setConstructionQueue(Configurator.getInstance().getConstructionQueue().toQueuedConstructions());
+        long elementCount = 2L + savegame.getUserRealm().getStockpile().size() + savegame.getUserRealm().getBuildingCounts().size() + savegame.getUserRealm().getTags().size()
+                + savegame.getConstructionQueue().size();
+
+        Task<Void> task = new Task<>() {
+            private long elementsWritten = 0;
+
+            @Override
+            protected Void call() throws Exception {
+                Logger.getLogger(DownfallUtil.DEFAULT_LOGGER).log(Level.FINE, "Background savegame saving initiated with path: " + pathname);
+                updateMessage("Saving " + pathname);
+                Path target = Path.of(pathname).toAbsolutePath();
+                Path temp = target.resolveSibling(target.getFileName() + TEMP_SUFFIX);
+
+                try (OutputStream out = new BufferedOutputStream(new FileOutputStream(temp.toFile()))) {
+                    SavegameCodec.forPathname(pathname).write(savegame, out, element -> {
+                        if (isCancelled())
+                            throw new CancellationException();
+                        if (element instanceof Savegame || element instanceof Realm || element instanceof Material || element instanceof BuildingCount || element instanceof Tag || element instanceof QueuedConstruction)
+                            updateProgress(++elementsWritten, elementCount);
+                    });
+                } catch (IOException | CancellationException e) {
+                    Files.deleteIfExists(temp);
+                    if (isCancelled())
+                        throw new CancellationException();
+                    throw e;
+                }
+
+                if (isCancelled()) {
+                    Files.deleteIfExists(temp);
+                    throw new CancellationException();
+                }
+                try {
+                    Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+                }
+
+                runOnFXThread(() -> Configurator.getInstance().setLastSavegamePathname(pathname));
+                updateProgress(1, 1);
+                Logger.getLogger(DownfallUtil.DEFAULT_LOGGER).log(Level.FINE, "Background savegame saving successfully completed");
+                return null;
+            }
+        };
+        executor.execute(task);
+        return task;
+    }
+
+    /**
+     * Runs an action on the JavaFX application thread and waits for it to finish.
+     *
+     * @param action action to be run.
+     * @throws InterruptedException if the waiting thread was interrupted.
+     * @throws ExecutionException   if the action threw an exception.
+     */
+    private static void runOnFXThread(Runnable action) throws InterruptedException, ExecutionException {
+        FutureTask<Void> futureTask = new FutureTask<>(action, null);
+        Platform.runLater(futureTask);
+        futureTask.get();
+    }
+
+    /**
+     * Copies a realm with all of its materials, buildings and tags, so that the copy can be written on another thread while the original keeps changing.
+     *
+     * @param realm realm to be copied.
+     * @return new Realm with the same values.
+     */
+    private static Realm snapshot(Realm realm) {
+        Realm snapshot = new Realm();
+        snapshot.setId(realm.getId());
+        snapshot.setName(realm.getName());
+        snapshot.setTreasury(realm.getTreasury());
+        snapshot.setInfamy(realm.getInfamy());
+        snapshot.setLegitimacy(realm.getLegitimacy());
+        snapshot.setDiplomaticReputation(realm.getDiplomaticReputation());
+        snapshot.setPowerProjection(realm.getPowerProjection());
+        snapshot.setPrestige(realm.getPrestige());
+        snapshot.setStability(realm.getStability());
+        snapshot.setRealmPathToGFX(realm.getRealmPathToGFX());
+        snapshot.setRulerPathToGFX(realm.getRulerPathToGFX());
+
+        realm.getStockpile().forEach(material -> snapshot.getStockpile().add(new Material(material.getTemplateId(), material.getAmount())));
+
+        realm.getBuildingCounts().forEach(count -> snapshot.getBuildingCounts().add(new BuildingCount(count.getId(), count.getOperating(), count.getIdle())));
+
+        realm.getTags().forEach(tag -> snapshot.getTags().add(new Tag(tag.getId(), tag.getTag(), tag.isFactional())));
+        return snapshot;
+    }
+}
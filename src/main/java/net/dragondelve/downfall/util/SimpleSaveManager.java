@@ -14,20 +14,22 @@
 
 package net.dragondelve.downfall.util;
 
-import jakarta.xml.bind.JAXBContext;
-import jakarta.xml.bind.JAXBException;
-import jakarta.xml.bind.Marshaller;
-import jakarta.xml.bind.Unmarshaller;
 import net.dragondelve.downfall.realm.Savegame;
 
-import java.io.File;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
  * Simple implementation of save manager that uses the Configurator class to store the LastSavegamePathname.
  * If a savegame is loaded it also tries to find, load and apply the rules that were used when last saving this savegame.
+ * The format of a savegame file is chosen by its extension, see SavegameCodec.
  */
 final class SimpleSaveManager implements SaveManager {
     /**
@@ -47,19 +49,16 @@ final class SimpleSaveManager implements SaveManager {
      */
     @Override
     public void loadFrom(String pathname) {
-        File saveFile = new File(pathname);
         Logger.getLogger(DownfallUtil.DEFAULT_LOGGER).log(Level.FINE, "Savegame loading initiated with path: " + pathname);
-        try {
-            JAXBContext context = JAXBContext.newInstance(Savegame.class);
-            Unmarshaller unmarshaller = context.createUnmarshaller();
-            Savegame savegame = (Savegame) unmarshaller.unmarshal(saveFile);
+        try (InputStream in = new BufferedInputStream(new FileInputStream(pathname))) {
+            Savegame savegame = SavegameCodec.forPathname(pathname).read(in);
 
-            Configurator.getInstance().setUserRealm(savegame.getUserRealm());
             Configurator.getInstance().loadAndApplyRules(savegame.getPathToRules());
+            Configurator.getInstance().setUserRealm(savegame.getUserRealm(), savegame.getConstructionQueue());
             Configurator.getInstance().setLastSavegamePathname(pathname);
 
             Logger.getLogger(DownfallUtil.DEFAULT_LOGGER).log(Level.FINE, "Savegame config loading successfully completed.");
-        } catch (JAXBException | IllegalArgumentException e) {
+        } catch (IOException | IllegalArgumentException e) {
             e.printStackTrace();
             Logger.getLogger(DownfallUtil.DEFAULT_LOGGER).log(Level.WARNING, "Savegame config loading failed, loading default ");
         }
@@ -84,22 +83,14 @@ final class SimpleSaveManager implements SaveManager {
         Savegame savegame = new Savegame();
         savegame.setPathToRules(Configurator.getInstance().getLastRulesPathname());
         savegame.setUserRealm(Configurator.getInstance().getUserRealm());
+        savegame.setConstructionQueue(Configurator.getInstance().getConstructionQueue().toQueuedConstructions());
 
-        File file = new File(pathname);
-        try {
-            file.createNewFile();
-        } catch (IOException ioException) {
-            ioException.printStackTrace();
-        }
         Logger.getLogger(DownfallUtil.DEFAULT_LOGGER).log(Level.FINE, "Savegame saving initiated with path: " + pathname);
-        try {
-            JAXBContext context = JAXBContext.newInstance(Savegame.class);
-            Marshaller marshaller = context.createMarshaller();
-            marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, true);
-            marshaller.marshal(savegame, file);
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(pathname))) {
+            SavegameCodec.forPathname(pathname).write(savegame, out, element -> {});
             Configurator.getInstance().setLastSavegamePathname(pathname);
             Logger.getLogger(DownfallUtil.DEFAULT_LOGGER).log(Level.FINE, "Savegame saving successfully completed");
-        } catch (JAXBException | IllegalArgumentException e) {
+        } catch (IOException | IllegalArgumentException e) {
             e.printStackTrace();
             Logger.getLogger(DownfallUtil.DEFAULT_LOGGER).log(Level.WARNING, "Couldn't save Savegame to path: " + pathname);
         }
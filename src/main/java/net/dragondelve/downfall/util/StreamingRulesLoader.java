@@ -0,0 +1,351 @@
+// Copyright 2023 Prokhor Kalinin
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package net.dragondelve.downfall.util;
+
+import net.dragondelve.downfall.realm.Material;
+import net.dragondelve.downfall.realm.Tag;
+import net.dragondelve.downfall.realm.template.VisualBuildingTemplate;
+import net.dragondelve.downfall.realm.template.VisualMaterialTemplate;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.DoubleConsumer;
+
+/**
+ * Loads Rules from the same XML that JAXB writes for them, but reads it with a StAX stream instead of unmarshalling it.
+ * Templates are built one at a time while the file is read, so no intermediate representation of the file is kept in memory
+ * and the fraction of the file read so far can be reported as progress.
+ * Produces the same Rules as JAXB: elements may come in any order, unknown elements are skipped and values that are missing keep the defaults of their templates.
+ */
+public final class StreamingRulesLoader {
+    private static final String RULES = "rules";
+    private static final String MATERIAL_TEMPLATES = "material-templates";
+    private static final String MATERIAL_TEMPLATE = "material-template";
+    private static final String BUILDING_TEMPLATES = "building-templates";
+    private static final String BUILDING_TEMPLATE = "building-template";
+    private static final String TAGS = "tags";
+    private static final String TAG = "tag";
+    private static final String MATERIAL = "material";
+
+    /**
+     * Loads rules from a file.
+     *
+     * @param file XML file that contains rules.
+     * @return Rules that were loaded.
+     * @throws IOException        if the file could not be read.
+     * @throws XMLStreamException if the file is not well-formed XML or its root element is not rules.
+     */
+    public Rules load(File file) throws IOException, XMLStreamException {
+        return load(file, progress -> {});
+    }
+
+    /**
+     * Loads rules from a file while reporting progress.
+     *
+     * @param file             XML file that contains rules.
+     * @param progressListener is given the fraction of the file that has been read, between 0 and 1, every time more of it is read.
+     * @return Rules that were loaded.
+     * @throws IOException        if the file could not be read.
+     * @throws XMLStreamException if the file is not well-formed XML or its root element is not rules.
+     */
+    public Rules load(File file, DoubleConsumer progressListener) throws IOException, XMLStreamException {
+        double size = Math.max(file.length(), 1);
+        try (InputStream in = new ProgressInputStream(new BufferedInputStream(new FileInputStream(file)), bytesRead -> progressListener.accept(Math.min(bytesRead / size, 1.0)), () -> false)) {
+            return load(in);
+        }
+    }
+
+    /**
+     * Loads rules from a stream. The stream is not closed.
+     *
+     * @param in stream that contains rules as XML.
+     * @return Rules that were loaded.
+     * @throws XMLStreamException if the stream is not well-formed XML or its root element is not rules.
+     */
+    public Rules load(InputStream in) throws XMLStreamException {
+        XMLInputFactory factory = XMLInputFactory.newFactory();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        XMLStreamReader reader = factory.createXMLStreamReader(in);
+        try {
+            if (nextElement(reader) != XMLStreamConstants.START_ELEMENT || !RULES.equals(reader.getLocalName()))
+                throw new XMLStreamException("Root element " + RULES + " expected", reader.getLocation());
+            return readRules(reader);
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Reads the content of the rules element.
+     *
+     * @param reader reader positioned at the start of the rules element.
+     * @return Rules that were read.
+     * @throws XMLStreamException if the XML is malformed.
+     */
+    private Rules readRules(XMLStreamReader reader) throws XMLStreamException {
+        List<VisualMaterialTemplate> materialTemplates = new ArrayList<>();
+        List<VisualBuildingTemplate> buildingTemplates = new ArrayList<>();
+        List<Tag> tags = new ArrayList<>();
+
+        while (nextElement(reader) == XMLStreamConstants.START_ELEMENT) {
+            switch (reader.getLocalName()) {
+                case MATERIAL_TEMPLATES:
+                    while (nextElement(reader) == XMLStreamConstants.START_ELEMENT) {
+                        if (MATERIAL_TEMPLATE.equals(reader.getLocalName()))
+                            materialTemplates.add(readMaterialTemplate(reader));
+                        else
+                            skipElement(reader);
+                    }
+                    break;
+                case BUILDING_TEMPLATES:
+                    while (nextElement(reader) == XMLStreamConstants.START_ELEMENT) {
+                        if (BUILDING_TEMPLATE.equals(reader.getLocalName()))
+                            buildingTemplates.add(readBuildingTemplate(reader));
+                        else
+                            skipElement(reader);
+                    }
+                    break;
+                case TAGS:
+                    while (nextElement(reader) == XMLStreamConstants.START_ELEMENT) {
+                        if (TAG.equals(reader.getLocalName()))
+                            tags.add(readTag(reader));
+                        else
+                            skipElement(reader);
+                    }
+                    break;
+                default:
+                    skipElement(reader);
+            }
+        }
+
+        Rules rules = new Rules();
+        rules.setMaterialTemplates(materialTemplates);
+        rules.setBuildingTemplates(buildingTemplates);
+        rules.setActorTags(tags);
+        return rules;
+    }
+
+    /**
+     * Reads a material-template element.
+     *
+     * @param reader reader positioned at the start of a material-template element.
+     * @return VisualMaterialTemplate that was read.
+     * @throws XMLStreamException if the XML is malformed.
+     */
+    private VisualMaterialTemplate readMaterialTemplate(XMLStreamReader reader) throws XMLStreamException {
+        VisualMaterialTemplate template = new VisualMaterialTemplate();
+        while (nextElement(reader) == XMLStreamConstants.START_ELEMENT) {
+            switch (reader.getLocalName()) {
+                case "name":
+                    template.setName(reader.getElementText());
+                    break;
+                case "id":
+                    template.setId(parseInt(reader));
+                    break;
+                case "def-export-template":
+                    template.setDefExportPrice(parseInt(reader));
+                    break;
+                case "def-import-price":
+                    template.setDefImportPrice(parseInt(reader));
+                    break;
+                case "exportable":
+                    template.setExportable(parseBoolean(reader));
+                    break;
+                case "ephemeral":
+                    template.setIsEphemeral(parseBoolean(reader));
+                    break;
+                case "path-to-gfx":
+                    template.setPathToGFX(reader.getElementText());
+                    break;
+                default:
+                    skipElement(reader);
+            }
+        }
+        return template;
+    }
+
+    /**
+     * Reads a building-template element.
+     *
+     * @param reader reader positioned at the start of a building-template element.
+     * @return VisualBuildingTemplate that was read.
+     * @throws XMLStreamException if the XML is malformed.
+     */
+    private VisualBuildingTemplate readBuildingTemplate(XMLStreamReader reader) throws XMLStreamException {
+        VisualBuildingTemplate template = new VisualBuildingTemplate();
+        while (nextElement(reader) == XMLStreamConstants.START_ELEMENT) {
+            switch (reader.getLocalName()) {
+                case "id":
+                    template.setId(parseInt(reader));
+                    break;
+                case "name":
+                    template.setName(reader.getElementText());
+                    break;
+                case "def-construction-cost":
+                    template.setDefConstructionCost(parseInt(reader));
+                    break;
+                case "def-construction-time":
+                    template.setDefConstructionTime(parseInt(reader));
+                    break;
+                case "operates-immediately":
+                    template.setOperatesImmediately(parseBoolean(reader));
+                    break;
+                case "input-materials":
+                    template.getInputMaterials().setAll(readMaterials(reader));
+                    break;
+                case "output-materials":
+                    template.getOutputMaterials().setAll(readMaterials(reader));
+                    break;
+                case "construction-materials":
+                    template.getConstructionMaterials().setAll(readMaterials(reader));
+                    break;
+                case "path-to-gfx":
+                    template.setPathToGFX(reader.getElementText());
+                    break;
+                default:
+                    skipElement(reader);
+            }
+        }
+        return template;
+    }
+
+    /**
+     * Reads a list of material elements wrapped in the element the reader is positioned at.
+     *
+     * @param reader reader positioned at the start of a wrapper element.
+     * @return list of Materials that were read.
+     * @throws XMLStreamException if the XML is malformed.
+     */
+    private List<Material> readMaterials(XMLStreamReader reader) throws XMLStreamException {
+        List<Material> materials = new ArrayList<>();
+        while (nextElement(reader) == XMLStreamConstants.START_ELEMENT) {
+            if (!MATERIAL.equals(reader.getLocalName())) {
+                skipElement(reader);
+                continue;
+            }
+            Material material = new Material();
+            while (nextElement(reader) == XMLStreamConstants.START_ELEMENT) {
+                switch (reader.getLocalName()) {
+                    case "template-id":
+                        material.setTemplateId(parseInt(reader));
+                        break;
+                    case "amount":
+                        material.setAmount(parseInt(reader));
+                        break;
+                    default:
+                        skipElement(reader);
+                }
+            }
+            materials.add(material);
+        }
+        return materials;
+    }
+
+    /**
+     * Reads a tag element.
+     *
+     * @param reader reader positioned at the start of a tag element.
+     * @return Tag that was read.
+     * @throws XMLStreamException if the XML is malformed.
+     */
+    private Tag readTag(XMLStreamReader reader) throws XMLStreamException {
+        Tag tag = new Tag();
+        while (nextElement(reader) == XMLStreamConstants.START_ELEMENT) {
+            switch (reader.getLocalName()) {
+                case "id":
+                    tag.setId(parseInt(reader));
+                    break;
+                case "value":
+                    tag.setTag(reader.getElementText());
+                    break;
+                case "factional":
+                    tag.setFactional(parseBoolean(reader));
+                    break;
+                default:
+                    skipElement(reader);
+            }
+        }
+        return tag;
+    }
+
+    /**
+     * Advances the reader to the next start or end element, skipping text, whitespace and comments the same way JAXB ignores them.
+     *
+     * @param reader reader to be advanced.
+     * @return XMLStreamConstants.START_ELEMENT or XMLStreamConstants.END_ELEMENT.
+     * @throws XMLStreamException if the document ends before the next element.
+     */
+    private int nextElement(XMLStreamReader reader) throws XMLStreamException {
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT || event == XMLStreamConstants.END_ELEMENT)
+                return event;
+        }
+        throw new XMLStreamException("Unexpected end of rules", reader.getLocation());
+    }
+
+    /**
+     * Skips the element the reader is positioned at together with all of its content.
+     *
+     * @param reader reader positioned at the start of an element. It is left at the end of that element.
+     * @throws XMLStreamException if the XML is malformed.
+     */
+    private void skipElement(XMLStreamReader reader) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0) {
+            if (nextElement(reader) == XMLStreamConstants.START_ELEMENT)
+                depth++;
+            else
+                depth--;
+        }
+    }
+
+    /**
+     * Reads the text of the current element as an xs:int.
+     *
+     * @param reader reader positioned at the start of an element that only contains text.
+     * @return parsed value.
+     * @throws XMLStreamException if the element contains other elements.
+     */
+    private Integer parseInt(XMLStreamReader reader) throws XMLStreamException {
+        String text = reader.getElementText().trim();
+        if (text.startsWith("+"))
+            text = text.substring(1);
+        return Integer.parseInt(text);
+    }
+
+    /**
+     * Reads the text of the current element as an xs:boolean.
+     *
+     * @param reader reader positioned at the start of an element that only contains text.
+     * @return true if the text is "true" or "1", false otherwise.
+     * @throws XMLStreamException if the element contains other elements.
+     */
+    private Boolean parseBoolean(XMLStreamReader reader) throws XMLStreamException {
+        String text = reader.getElementText().trim();
+        return "true".equals(text) || "1".equals(text);
+    }
+}
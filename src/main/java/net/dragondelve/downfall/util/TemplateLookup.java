@@ -0,0 +1,49 @@
+// Copyright 2023 Prokhor Kalinin
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package net.dragondelve.downfall.util;
+
+import net.dragondelve.downfall.realm.Tag;
+import net.dragondelve.downfall.realm.template.VisualBuildingTemplate;
+import net.dragondelve.downfall.realm.template.VisualMaterialTemplate;
+
+/**
+ * Looks up templates and tags of the currently applied ruleset by their ids.
+ * Implemented by TemplateRegistry for rules loaded from XML and by CompiledRules for compiled rules files.
+ */
+public interface TemplateLookup {
+    /**
+     * Finds a VisualMaterialTemplate by its id.
+     *
+     * @param id id of the template.
+     * @return VisualMaterialTemplate with a given id. If none found returns null.
+     */
+    VisualMaterialTemplate findMaterialTemplate(Integer id);
+
+    /**
+     * Finds a VisualBuildingTemplate by its id.
+     *
+     * @param id id of the template.
+     * @return VisualBuildingTemplate with a given id. If none found returns null.
+     */
+    VisualBuildingTemplate findBuildingTemplate(Integer id);
+
+    /**
+     * Finds a Tag by its id.
+     *
+     * @param id id of the tag.
+     * @return Tag with a given id. If none found returns null.
+     */
+    Tag findTag(Integer id);
+}
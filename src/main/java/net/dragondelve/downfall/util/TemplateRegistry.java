@@ -0,0 +1,175 @@
+// Copyright 2023 Prokhor Kalinin
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package net.dragondelve.downfall.util;
+
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+import net.dragondelve.downfall.realm.Tag;
+import net.dragondelve.downfall.realm.template.VisualBuildingTemplate;
+import net.dragondelve.downfall.realm.template.VisualMaterialTemplate;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Indexes all templates and tags of a ruleset by their ids, so that they can be looked up in constant time.
+ * The index is built once when Rules are applied and is kept in sync with the lists of the indexed Rules by listening to their changes,
+ * so templates added or removed in the editors are picked up without rebuilding the whole index.
+ * If several entries share the same id the first one in the list is indexed and a warning is logged once when the index is built.
+ * The number of entries of every id is counted, so that a change to a list costs time proportional to the number of items it adds and removes,
+ * plus a single pass over the list if an indexed item was removed while other items with its id remain.
+ */
+public final class TemplateRegistry implements TemplateLookup {
+    private final Map<Integer, VisualMaterialTemplate> materialTemplates = new HashMap<>();
+    private final Map<Integer, VisualBuildingTemplate> buildingTemplates = new HashMap<>();
+    private final Map<Integer, Tag> tags = new HashMap<>();
+    private final Map<Integer, Integer> materialTemplateCounts = new HashMap<>();
+    private final Map<Integer, Integer> buildingTemplateCounts = new HashMap<>();
+    private final Map<Integer, Integer> tagCounts = new HashMap<>();
+
+    private final ListChangeListener<VisualMaterialTemplate> materialTemplateListener = change -> onChange(change, materialTemplates, materialTemplateCounts, VisualMaterialTemplate::getId);
+    private final ListChangeListener<VisualBuildingTemplate> buildingTemplateListener = change -> onChange(change, buildingTemplates, buildingTemplateCounts, VisualBuildingTemplate::getId);
+    private final ListChangeListener<Tag> tagListener = change -> onChange(change, tags, tagCounts, Tag::getId);
+
+    private Rules rules;
+
+    /**
+     * Discards the current index, stops listening to the previously indexed rules and indexes all templates and tags of the given rules.
+     *
+     * @param rules rules to be indexed. Changes made to its lists after this call are reflected in the index.
+     */
+    public void index(Rules rules) {
+        if (this.rules != null) {
+            this.rules.getMaterialTemplates().removeListener(materialTemplateListener);
+            this.rules.getBuildingTemplates().removeListener(buildingTemplateListener);
+            this.rules.getActorTags().removeListener(tagListener);
+        }
+        this.rules = rules;
+
+        indexList(rules.getMaterialTemplates(), materialTemplates, materialTemplateCounts, VisualMaterialTemplate::getId, "VisualMaterialTemplate");
+        indexList(rules.getBuildingTemplates(), buildingTemplates, buildingTemplateCounts, VisualBuildingTemplate::getId, "VisualBuildingTemplate");
+        indexList(rules.getActorTags(), tags, tagCounts, Tag::getId, "Tag");
+
+        rules.getMaterialTemplates().addListener(materialTemplateListener);
+        rules.getBuildingTemplates().addListener(buildingTemplateListener);
+        rules.getActorTags().addListener(tagListener);
+    }
+
+    /**
+     * Finds a VisualMaterialTemplate in the indexed rules.
+     *
+     * @param id id of the template.
+     * @return VisualMaterialTemplate with a given id. If none found returns null.
+     */
+    @Override
+    public VisualMaterialTemplate findMaterialTemplate(Integer id) {
+        return materialTemplates.get(id);
+    }
+
+    /**
+     * Finds a VisualBuildingTemplate in the indexed rules.
+     *
+     * @param id id of the template.
+     * @return VisualBuildingTemplate with a given id. If none found returns null.
+     */
+    @Override
+    public VisualBuildingTemplate findBuildingTemplate(Integer id) {
+        return buildingTemplates.get(id);
+    }
+
+    /**
+     * Finds a Tag in the indexed rules.
+     *
+     * @param id id of the tag.
+     * @return Tag with a given id. If none found returns null.
+     */
+    @Override
+    public Tag findTag(Integer id) {
+        return tags.get(id);
+    }
+
+    /**
+     * Clears the index and fills it with the items of a list. Duplicate ids are reported once per id.
+     *
+     * @param list     list of items to be indexed.
+     * @param index    map to be filled.
+     * @param counts   map to be filled with the number of items of every id.
+     * @param idGetter function that returns the id of an item.
+     * @param typeName human-readable name of the type of items used when reporting duplicates.
+     * @param <T>      type of the indexed items.
+     */
+    private <T> void indexList(List<T> list, Map<Integer, T> index, Map<Integer, Integer> counts, Function<T, Integer> idGetter, String typeName) {
+        index.clear();
+        counts.clear();
+        for (T item : list) {
+            Integer id = idGetter.apply(item);
+            index.putIfAbsent(id, item);
+            counts.merge(id, 1, Integer::sum);
+        }
+        counts.forEach((id, count) -> {
+            if (count > 1)
+                Logger.getLogger(DownfallUtil.DEFAULT_LOGGER).log(Level.WARNING, "Multiple(" + count + ") IDs found for " + typeName + " with id = " + id);
+        });
+    }
+
+    /**
+     * Applies additions and removals made to an indexed list to its index.
+     * If an indexed item is removed and another item with the same id remains in the list, the first such item takes its place.
+     * The replacements of all removed items are found in a single pass over the list once the whole change has been applied.
+     *
+     * @param change   change that happened to the indexed list.
+     * @param index    index of that list.
+     * @param counts   number of items of every id in that list.
+     * @param idGetter function that returns the id of an item.
+     * @param <T>      type of the indexed items.
+     */
+    private <T> void onChange(ListChangeListener.Change<? extends T> change, Map<Integer, T> index, Map<Integer, Integer> counts, Function<T, Integer> idGetter) {
+        Set<Integer> replaced = new HashSet<>();
+        while (change.next()) {
+            for (T removed : change.getRemoved()) {
+                Integer id = idGetter.apply(removed);
+                if (counts.merge(id, -1, Integer::sum) <= 0)
+                    counts.remove(id);
+                if (index.get(id) == removed) {
+                    index.remove(id);
+                    if (counts.containsKey(id))
+                        replaced.add(id);
+                }
+            }
+            for (T added : change.getAddedSubList()) {
+                Integer id = idGetter.apply(added);
+                counts.merge(id, 1, Integer::sum);
+                index.putIfAbsent(id, added);
+            }
+        }
+        replaced.removeIf(index::containsKey);
+        if (replaced.isEmpty())
+            return;
+        for (T item : change.getList()) {
+            Integer id = idGetter.apply(item);
+            if (replaced.remove(id))
+                index.put(id, item);
+            if (replaced.isEmpty())
+                break;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+// Copyright 2023 Prokhor Kalinin
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package net.dragondelve.downfall.util;
+
+import jakarta.xml.bind.JAXBException;
+import jakarta.xml.bind.Marshaller;
+import net.dragondelve.downfall.realm.Savegame;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.function.Consumer;
+
+/**
+ * Savegame codec that reads and writes formatted JAXB XML. This is the original savegame format of the program.
+ */
+final class XMLSavegameCodec implements SavegameCodec {
+    private static final XMLSavegameCodec instance = new XMLSavegameCodec();
+
+    /**
+     * Private constructor to make this class non instantiable.
+     */
+    private XMLSavegameCodec() {
+        super();
+    }
+
+    /**
+     * Lightweight Accessor Method
+     *
+     * @return The only instance of this class.
+     */
+    static XMLSavegameCodec getInstance() {
+        return instance;
+    }
+
+    /**
+     * Reads a savegame from a stream. The stream is not closed.
+     *
+     * @param in stream that contains a savegame in XML.
+     * @return Savegame that was read.
+     * @throws IOException if the stream could not be read or does not contain a valid savegame.
+     */
+    @Override
+    public Savegame read(InputStream in) throws IOException {
+        try {
+            return JAXBContextPool.getInstance().unmarshal(in, Savegame.class);
+        } catch (JAXBException e) {
+            throw new IOException("Savegame XML could not be read", e);
+        }
+    }
+
+    /**
+     * Writes a savegame to a stream as XML. The stream is not closed.
+     *
+     * @param savegame        savegame to be written.
+     * @param out             stream that the savegame is written to.
+     * @param elementListener is given every object right before it is marshalled.
+     * @throws IOException if the savegame could not be written.
+     */
+    @Override
+    public void write(Savegame savegame, OutputStream out, Consumer<Object> elementListener) throws IOException {
+        Marshaller marshaller = null;
+        try {
+            marshaller = JAXBContextPool.getInstance().acquireMarshaller(Savegame.class);
+            marshaller.setListener(new Marshaller.Listener() {
+                @Override
+                public void beforeMarshal(Object source) {
+                    elementListener.accept(source);
+                }
+            });
+            marshaller.marshal(savegame, out);
+        } catch (JAXBException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw new IOException("Savegame XML could not be written", e);
+        } finally {
+            if (marshaller != null)
+                JAXBContextPool.getInstance().releaseMarshaller(Savegame.class, marshaller);
+        }
+    }
+}
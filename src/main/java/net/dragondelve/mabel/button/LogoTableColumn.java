@@ -14,10 +14,14 @@
 
 package net.dragondelve.mabel.button;
 
+import javafx.beans.InvalidationListener;
 import javafx.beans.property.DoubleProperty;
 import javafx.beans.property.SimpleDoubleProperty;
+import javafx.beans.property.SimpleStringProperty;
+import javafx.beans.property.StringProperty;
 import javafx.scene.control.TableCell;
 import javafx.scene.control.TableColumn;
+import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
 import net.dragondelve.downfall.util.DownfallUtil;
 
@@ -33,6 +37,7 @@ public class LogoTableColumn<S> extends TableColumn<S, String> {
 
     private final DoubleProperty imageHeightProperty = new SimpleDoubleProperty(DEFAULT_IMAGE_HEIGHT);
     private final DoubleProperty imageWidthProperty = new SimpleDoubleProperty(DEFAULT_IMAGE_WIDTH);
+    private final StringProperty placeholderPathnameProperty = new SimpleStringProperty(DownfallUtil.DEFAULT_MATERIAL_GFX_PATHNAME);
 
     /**
      * Default constructor. does not initialize the column title.
@@ -116,7 +121,36 @@ public class LogoTableColumn<S> extends TableColumn<S, String> {
     }
 
     /**
-     * Initializes the cell factory for this column to display an image that is loaded from pathname of the String value of the column
+     * Lightweight accessor method
+     *
+     * @return placeholder pathname property
+     */
+    StringProperty placeholderPathnameProperty() {
+        return placeholderPathnameProperty;
+    }
+
+    /**
+     * Lightweight accessor method
+     *
+     * @return pathname to an image that is displayed while the image of a cell is loading
+     */
+    public String getPlaceholderPathname() {
+        return placeholderPathnameProperty.get();
+    }
+
+    /**
+     * Lightweight mutator method
+     *
+     * @param pathname pathname to an image that is displayed while the image of a cell is loading, null to display nothing while loading
+     */
+    public void setPlaceholderPathname(String pathname) {
+        placeholderPathnameProperty.setValue(pathname);
+    }
+
+    /**
+     * Initializes the cell factory for this column to display an image that is loaded from pathname of the String value of the column.
+     * Images are decoded in the background at the size of the column's images, so scrolling never waits for an image file and
+     * only the scaled raster is kept in memory. A placeholder is displayed until the image has loaded, and loading is cancelled when the cell is reused for another row before that.
      */
     private void initializeCells() {
         setCellFactory(param -> {
@@ -124,15 +158,71 @@ public class LogoTableColumn<S> extends TableColumn<S, String> {
             view.fitHeightProperty().bind(imageHeightProperty);
             view.fitWidthProperty().bind(imageWidthProperty);
             TableCell<S, String> cell = new TableCell<>() {
-                public void updateItem(String item, boolean empty) {
-                    if (item != null) {
-                        view.setImage(DownfallUtil.getInstance().loadImage(item));
-                    } else
+                private final InvalidationListener loadingListener = observable -> showLoadedImage();
+                private Image loadingImage;
+
+                @Override
+                protected void updateItem(String item, boolean empty) {
+                    super.updateItem(item, empty);
+                    cancelLoading();
+                    if (empty || item == null) {
                         view.setImage(null);
+                        return;
+                    }
+
+                    Image image = DownfallUtil.getInstance().getImageCache().getInBackground(item, getImageWidth(), getImageHeight());
+                    if (isLoaded(image)) {
+                        view.setImage(image.isError() ? null : image);
+                        return;
+                    }
+                    view.setImage(getPlaceholderPathname() == null ? null : DownfallUtil.getInstance().loadImage(getPlaceholderPathname(), getImageWidth(), getImageHeight()));
+                    loadingImage = image;
+                    image.progressProperty().addListener(loadingListener);
+                    image.errorProperty().addListener(loadingListener);
+                }
+
+                /**
+                 * Displays the image that is being loaded for this cell once it has loaded or has failed to load.
+                 */
+                private void showLoadedImage() {
+                    if (loadingImage == null || !isLoaded(loadingImage))
+                        return;
+                    Image image = loadingImage;
+                    stopListening();
+                    view.setImage(image.isError() ? null : image);
+                }
+
+                /**
+                 * Stops loading the image of the previous row of this cell if it has not loaded yet.
+                 */
+                private void cancelLoading() {
+                    if (loadingImage == null)
+                        return;
+                    Image image = loadingImage;
+                    stopListening();
+                    if (!isLoaded(image))
+                        image.cancel();
+                }
+
+                /**
+                 * Detaches this cell from the image that is being loaded.
+                 */
+                private void stopListening() {
+                    loadingImage.progressProperty().removeListener(loadingListener);
+                    loadingImage.errorProperty().removeListener(loadingListener);
+                    loadingImage = null;
                 }
             };
             cell.setGraphic(view);
             return cell;
         });
     }
+
+    /**
+     * @param image image that might be loading in the background.
+     * @return true if the image has finished loading, either successfully or with an error.
+     */
+    private static boolean isLoaded(Image image) {
+        return image.isError() || image.getProgress() >= 1;
+    }
 }
@@ -0,0 +1,120 @@
+// Copyright 2023 Prokhor Kalinin
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package net.dragondelve.downfall.util;
+
+import jakarta.xml.bind.JAXBException;
+import net.dragondelve.downfall.realm.Material;
+import net.dragondelve.downfall.realm.Tag;
+import net.dragondelve.downfall.realm.template.VisualBuildingTemplate;
+import net.dragondelve.downfall.realm.template.VisualMaterialTemplate;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import javax.xml.stream.XMLStreamException;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Checks that StreamingRulesLoader reads the bundled rules exactly like JAXB does, field by field, so that it can replace JAXB for loading rules.
+ * Run from the project directory, which contains the rules folder.
+ */
+class StreamingRulesLoaderTest {
+    @ParameterizedTest
+    @ValueSource(strings = {"rules/default.xml", "rules/secondary.xml", "rules/tretary.xml"})
+    void loadsBundledRulesLikeJAXB(String pathname) throws JAXBException, XMLStreamException, IOException {
+        File file = new File(pathname);
+        Rules expected = JAXBContextPool.getInstance().unmarshal(file, Rules.class);
+        Rules actual = new StreamingRulesLoader().load(file);
+
+        assertEquals(expected.getMaterialTemplates().size(), actual.getMaterialTemplates().size(), "material template count");
+        for (int i = 0; i < expected.getMaterialTemplates().size(); i++)
+            assertMaterialTemplateEquals(expected.getMaterialTemplates().get(i), actual.getMaterialTemplates().get(i), "material template " + i);
+
+        assertEquals(expected.getBuildingTemplates().size(), actual.getBuildingTemplates().size(), "building template count");
+        for (int i = 0; i < expected.getBuildingTemplates().size(); i++)
+            assertBuildingTemplateEquals(expected.getBuildingTemplates().get(i), actual.getBuildingTemplates().get(i), "building template " + i);
+
+        assertEquals(expected.getActorTags().size(), actual.getActorTags().size(), "tag count");
+        for (int i = 0; i < expected.getActorTags().size(); i++)
+            assertTagEquals(expected.getActorTags().get(i), actual.getActorTags().get(i), "tag " + i);
+    }
+
+    /**
+     * Compares every field of two material templates.
+     *
+     * @param expected template read by JAXB.
+     * @param actual   template read by StreamingRulesLoader.
+     * @param message  names the template in failure messages.
+     */
+    private static void assertMaterialTemplateEquals(VisualMaterialTemplate expected, VisualMaterialTemplate actual, String message) {
+        assertEquals(expected.getId(), actual.getId(), message + " id");
+        assertEquals(expected.getName(), actual.getName(), message + " name");
+        assertEquals(expected.getDefExportPrice(), actual.getDefExportPrice(), message + " export price");
+        assertEquals(expected.getDefImportPrice(), actual.getDefImportPrice(), message + " import price");
+        assertEquals(expected.isExportable(), actual.isExportable(), message + " exportable");
+        assertEquals(expected.isEphemeral(), actual.isEphemeral(), message + " ephemeral");
+        assertEquals(expected.getPathToGFX(), actual.getPathToGFX(), message + " path to GFX");
+    }
+
+    /**
+     * Compares every field of two building templates, including their materials.
+     *
+     * @param expected template read by JAXB.
+     * @param actual   template read by StreamingRulesLoader.
+     * @param message  names the template in failure messages.
+     */
+    private static void assertBuildingTemplateEquals(VisualBuildingTemplate expected, VisualBuildingTemplate actual, String message) {
+        assertEquals(expected.getId(), actual.getId(), message + " id");
+        assertEquals(expected.getName(), actual.getName(), message + " name");
+        assertEquals(expected.getDefConstructionCost(), actual.getDefConstructionCost(), message + " construction cost");
+        assertEquals(expected.getDefConstructionTime(), actual.getDefConstructionTime(), message + " construction time");
+        assertEquals(expected.getOperatesImmediately(), actual.getOperatesImmediately(), message + " operates immediately");
+        assertEquals(expected.getPathToGFX(), actual.getPathToGFX(), message + " path to GFX");
+        assertMaterialsEqual(expected.getInputMaterials(), actual.getInputMaterials(), message + " input");
+        assertMaterialsEqual(expected.getOutputMaterials(), actual.getOutputMaterials(), message + " output");
+        assertMaterialsEqual(expected.getConstructionMaterials(), actual.getConstructionMaterials(), message + " construction");
+    }
+
+    /**
+     * Compares two lists of materials in order.
+     *
+     * @param expected materials read by JAXB.
+     * @param actual   materials read by StreamingRulesLoader.
+     * @param message  names the list in failure messages.
+     */
+    private static void assertMaterialsEqual(List<Material> expected, List<Material> actual, String message) {
+        assertEquals(expected.size(), actual.size(), message + " material count");
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getTemplateId(), actual.get(i).getTemplateId(), message + " material " + i + " template id");
+            assertEquals(expected.get(i).getAmount(), actual.get(i).getAmount(), message + " material " + i + " amount");
+        }
+    }
+
+    /**
+     * Compares every field of two tags.
+     *
+     * @param expected tag read by JAXB.
+     * @param actual   tag read by StreamingRulesLoader.
+     * @param message  names the tag in failure messages.
+     */
+    private static void assertTagEquals(Tag expected, Tag actual, String message) {
+        assertEquals(expected.getId(), actual.getId(), message + " id");
+        assertEquals(expected.getTag(), actual.getTag(), message + " tag");
+        assertEquals(expected.isFactional(), actual.isFactional(), message + " factional");
+    }
+}